@@ -0,0 +1,36 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in throughput mode with the GC profiler so each result carries its allocation
+ * rate (gc.alloc.rate.norm is bytes per operation), and writes the results as JSON for comparing
+ * against a previous run, e.g. before and after a dependency upgrade.
+ *
+ * java -cp target/benchmarks.jar digital.toke.tools.bench.BenchmarkRunner [regex] [result.json]
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+		String result = args.length > 1 ? args[1] : "jmh-result.json";
+
+		ChainedOptionsBuilder options = new OptionsBuilder().include(include).addProfiler(GCProfiler.class)
+				.mode(Mode.Throughput).timeUnit(TimeUnit.SECONDS).resultFormat(ResultFormatType.JSON).result(result);
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.tools.CmdLineParser;
+
+/**
+ * Option set up and parsing for a typical mwquery command line.
+ *
+ * java -jar target/benchmarks.jar CmdLineParserBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CmdLineParserBenchmark {
+
+	static final String[] ARGS = { "-r", "POST", "-h", "Content-Type: application/json", "-h",
+			"Accept-API-Version: resource=2.0, protocol=1.0", "-h", "X-Request-Id: 42", "-d", "{}", "-u",
+			"https://localhost:8443/json/realms/root/authenticate?x=1&y=2", "-q", "token=$.tokenId", "-q",
+			"ids=$..id", "--flatten", "--dump", "-c", "cookies.json", "--time" };
+
+	@Benchmark
+	public CmdLineParser parse() throws CmdLineParser.OptionException {
+		CmdLineParser parser = new CmdLineParser();
+		parser.addBooleanOption('x', "help");
+		parser.addStringOption('h', "header");
+		parser.addStringOption('m', "mediaType");
+		parser.addBooleanOption("strictRFC3896");
+		parser.addStringOption('o', "oauth");
+		parser.addStringOption('r', "request");
+		parser.addStringOption('d', "data");
+		parser.addStringOption('u', "url");
+		parser.addStringOption('q', "query");
+		parser.addBooleanOption("dump");
+		parser.addBooleanOption("logging");
+		parser.addBooleanOption('f', "flatten");
+		parser.addBooleanOption('t', "time");
+		parser.addStringOption('c', "cookiePath");
+		parser.parse(ARGS);
+		return parser;
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpServer;
+
+import digital.toke.tools.LoadRunner;
+import digital.toke.tools.MwQuery;
+import digital.toke.tools.Networking;
+import digital.toke.tools.RequestExecutors;
+import digital.toke.tools.RequestSpec;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+/**
+ * Memory and throughput of load mode at high concurrency, platform pool against the default
+ * executor (virtual threads when run on Java 21+ from a multi-release mwquery jar).
+ *
+ * The server is in-process but answers each request after a fixed delay from a scheduler rather
+ * than a thread per request, so the client threads blocked in execute() dominate the numbers.
+ * Peak live threads, peak heap and peak resident set size (Linux) are sampled during each run.
+ *
+ * java -cp target/benchmarks.jar digital.toke.tools.bench.ConcurrencyHarness --concurrency 100,1000,5000
+ * --requests 20000 --delay 50 --out concurrency.json
+ *
+ */
+public class ConcurrencyHarness {
+
+	int[] levels = { 100, 1000, 5000 };
+	int requests = 20000;
+	long delayMillis = 50;
+	String out = "concurrency-result.json";
+
+	public static void main(String[] args) throws Exception {
+		ConcurrencyHarness h = new ConcurrencyHarness();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--concurrency": {
+				String[] parts = args[i + 1].split(",");
+				h.levels = new int[parts.length];
+				for (int j = 0; j < parts.length; j++) h.levels[j] = Integer.parseInt(parts[j].trim());
+				break;
+			}
+			case "--requests": h.requests = Integer.parseInt(args[i + 1]); break;
+			case "--delay": h.delayMillis = Long.parseLong(args[i + 1]); break;
+			case "--out": h.out = args[i + 1]; break;
+			default: throw new RuntimeException("unknown option " + args[i]);
+			}
+		}
+		h.run();
+		System.exit(0);
+	}
+
+	void run() throws Exception {
+		byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+		ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16384);
+		server.createContext("/", exchange -> {
+			// answer later from the timer, the dispatcher thread moves straight on
+			timer.schedule(() -> {
+				try {
+					exchange.getResponseHeaders().set("Content-Type", "application/json");
+					exchange.sendResponseHeaders(200, body.length);
+					try (OutputStream os = exchange.getResponseBody()) {
+						os.write(body);
+					}
+				} catch (IOException x) {
+					exchange.close();
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		});
+		server.start();
+		String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/ok";
+
+		System.out.println("java " + System.getProperty("java.version") + ", default executor " + RequestExecutors.kind()
+				+ ", " + requests + " requests, server delay " + delayMillis + "ms");
+
+		JSONArray results = new JSONArray();
+		try {
+			for (int level : levels) {
+				for (boolean platform : new boolean[] { true, false }) {
+					if (!platform && RequestExecutors.kind().equals("platform")) continue;
+					results.put(measure(url, level, platform));
+				}
+			}
+		} finally {
+			server.stop(0);
+			timer.shutdownNow();
+		}
+
+		JSONObject root = new JSONObject();
+		root.put("java", System.getProperty("java.version"));
+		root.put("requests", requests);
+		root.put("delayMillis", delayMillis);
+		root.put("results", results);
+		Files.write(Paths.get(out), root.toString(2).getBytes(StandardCharsets.UTF_8));
+		System.out.println("results written to " + out);
+	}
+
+	JSONObject measure(String url, int concurrency, boolean platform) throws Exception {
+		// enough pooled connections that every call in flight keeps its own
+		OkHttpClient client = new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(concurrency, 1, TimeUnit.MINUTES))
+				.readTimeout(60, TimeUnit.SECONDS)
+				.build();
+		MwQuery mwq = new MwQuery(Networking.builder().client(client).build());
+		RequestSpec spec = RequestSpec.builder(url).query("ok=$.ok").build();
+		LoadRunner runner = new LoadRunner(concurrency, platform);
+
+		// warm up the code paths and the connection pool
+		runner.load(Math.min(requests, concurrency * 2), () -> mwq.execute(spec));
+		System.gc();
+
+		Sampler sampler = new Sampler();
+		sampler.start();
+		LoadRunner.Stats stats = runner.load(requests, () -> mwq.execute(spec));
+		sampler.halt();
+
+		client.connectionPool().evictAll();
+		client.dispatcher().executorService().shutdown();
+
+		System.out.println(String.format(
+				"%-8s c=%-6d %10.1f req/s  p50=%8.3fms p99=%8.3fms  errors=%d  threads=%-6d heap=%6.1fMB rss=%6.1fMB",
+				stats.executor, concurrency, stats.throughput(), stats.percentile(50) / 1e6, stats.percentile(99) / 1e6,
+				stats.errors, sampler.peakThreads, sampler.peakHeap / 1048576.0, sampler.peakRss / 1048576.0));
+
+		JSONObject r = new JSONObject();
+		r.put("executor", stats.executor);
+		r.put("concurrency", concurrency);
+		r.put("throughput", stats.throughput());
+		r.put("p50Millis", stats.percentile(50) / 1e6);
+		r.put("p99Millis", stats.percentile(99) / 1e6);
+		r.put("errors", stats.errors);
+		r.put("peakThreads", sampler.peakThreads);
+		r.put("peakHeapBytes", sampler.peakHeap);
+		r.put("peakRssBytes", sampler.peakRss);
+		return r;
+	}
+
+	/**
+	 * Samples live threads, heap and resident set size every 10ms
+	 */
+	static class Sampler extends Thread {
+
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		volatile boolean running = true;
+		int peakThreads;
+		long peakHeap;
+		long peakRss;
+
+		Sampler() {
+			super("sampler");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				peakThreads = Math.max(peakThreads, threads.getThreadCount());
+				peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+				peakRss = Math.max(peakRss, rss());
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException x) {
+					return;
+				}
+			}
+		}
+
+		void halt() throws InterruptedException {
+			running = false;
+			join();
+		}
+
+		// VmRSS from /proc, 0 where there is no such thing
+		static long rss() {
+			try {
+				List<String> lines = new ArrayList<String>(Files.readAllLines(Paths.get("/proc/self/status")));
+				for (String line : lines) {
+					if (line.startsWith("VmRSS:")) {
+						return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+					}
+				}
+			} catch (IOException | RuntimeException x) {
+				// not Linux
+			}
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpServer;
+
+import digital.toke.tools.MwQuery;
+import digital.toke.tools.Networking;
+import digital.toke.tools.QueryResult;
+import digital.toke.tools.RequestSpec;
+import okhttp3.OkHttpClient;
+
+/**
+ * A generated CSV export of millions of rows, served from a local file, read with a column query
+ * and a row filter. Streamed (values handed on as rows are read) against buffered (body kept as a
+ * String and values collected in the result), with throughput and peak heap for each.
+ *
+ * java -Xmx2g -cp target/benchmarks.jar digital.toke.tools.bench.CsvHarness --rows 2000000 --out csv.json
+ *
+ */
+public class CsvHarness {
+
+	int rows = 2000000;
+	String out = "csv-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CsvHarness h = new CsvHarness();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--rows": h.rows = Integer.parseInt(args[i + 1]); break;
+			case "--out": h.out = args[i + 1]; break;
+			default: throw new RuntimeException("unknown option " + args[i]);
+			}
+		}
+		h.run();
+		System.exit(0);
+	}
+
+	void run() throws Exception {
+		File file = File.createTempFile("mwq-export", ".csv");
+		file.deleteOnExit();
+		generate(file, rows);
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16);
+		server.createContext("/", exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", "text/csv");
+			exchange.sendResponseHeaders(200, file.length());
+			try (OutputStream os = exchange.getResponseBody()) {
+				Files.copy(file.toPath(), os);
+			}
+		});
+		server.start();
+		String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/export.csv";
+
+		System.out.println("java " + System.getProperty("java.version") + ", " + rows + " rows, "
+				+ String.format("%.1fMB", file.length() / 1048576.0) + ", max heap "
+				+ Runtime.getRuntime().maxMemory() / 1048576 + "MB");
+
+		JSONArray results = new JSONArray();
+		try {
+			for (boolean streamed : new boolean[] { true, false }) {
+				results.put(measure(url, streamed, file.length()));
+			}
+		} finally {
+			server.stop(0);
+		}
+
+		JSONObject root = new JSONObject();
+		root.put("java", System.getProperty("java.version"));
+		root.put("rows", rows);
+		root.put("bytes", file.length());
+		root.put("results", results);
+		Files.write(Paths.get(out), root.toString(2).getBytes(StandardCharsets.UTF_8));
+		System.out.println("results written to " + out);
+	}
+
+	// id,email,status,region,total,created
+	static void generate(File file, int rows) throws Exception {
+		String[] statuses = { "active", "closed", "pending", "suspended" };
+		String[] regions = { "NSW", "VIC", "QLD", "WA", "SA", "TAS", "ACT", "NT" };
+		Random r = new Random(5);
+		try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8), 1 << 16)) {
+			w.write("id,email,status,region,total,created\r\n");
+			for (int i = 0; i < rows; i++) {
+				w.write(Integer.toString(i));
+				w.write(",\"");
+				w.write(Payloads.text("plain", 10, r));
+				w.write("@example.org\",");
+				w.write(statuses[r.nextInt(statuses.length)]);
+				w.write(',');
+				w.write(regions[r.nextInt(regions.length)]);
+				w.write(',');
+				w.write(Integer.toString(r.nextInt(100000)));
+				w.write(".");
+				w.write(Integer.toString(r.nextInt(100)));
+				w.write(",2019-0");
+				w.write(Integer.toString(1 + r.nextInt(9)));
+				w.write("-1");
+				w.write(Integer.toString(r.nextInt(10)));
+				w.write("\r\n");
+			}
+		}
+	}
+
+	JSONObject measure(String url, boolean streamed, long bytes) throws Exception {
+		OkHttpClient client = new OkHttpClient.Builder().readTimeout(5, TimeUnit.MINUTES).build();
+		MwQuery mwq = new MwQuery(Networking.builder().client(client).build());
+		RequestSpec spec = RequestSpec.builder(url).keepBody(!streamed)
+				.query("email=[email]").where("status=active").where("total>=50000").build();
+
+		System.gc();
+		ConcurrencyHarness.Sampler sampler = new ConcurrencyHarness.Sampler();
+		sampler.start();
+		long start = System.nanoTime();
+		long values;
+		if (streamed) {
+			AtomicLong count = new AtomicLong();
+			mwq.execute(spec, (name, value) -> count.incrementAndGet());
+			values = count.get();
+		} else {
+			QueryResult r = mwq.execute(spec);
+			values = r.size();
+		}
+		long elapsed = System.nanoTime() - start;
+		sampler.halt();
+		client.dispatcher().executorService().shutdown();
+
+		double seconds = elapsed / 1e9;
+		String mode = streamed ? "streamed" : "buffered";
+		System.out.println(String.format("%-9s %8.3fs %10.0f rows/s %7.1f MB/s  values=%d  heap=%7.1fMB rss=%7.1fMB", mode,
+				seconds, rows / seconds, bytes / 1048576.0 / seconds, values, sampler.peakHeap / 1048576.0,
+				sampler.peakRss / 1048576.0));
+
+		JSONObject r = new JSONObject();
+		r.put("mode", mode);
+		r.put("seconds", seconds);
+		r.put("rowsPerSecond", rows / seconds);
+		r.put("values", values);
+		r.put("peakHeapBytes", sampler.peakHeap);
+		r.put("peakRssBytes", sampler.peakRss);
+		return r;
+	}
+
+}
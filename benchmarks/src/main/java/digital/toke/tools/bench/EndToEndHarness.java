@@ -0,0 +1,271 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.net.ServerSocketFactory;
+
+import org.json.JSONObject;
+
+import digital.toke.tools.Main;
+import digital.toke.tools.Networking;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * End to end timings against an in-process MockWebServer serving canned JSON, so mwquery can be
+ * measured without touching a real service. Drives Networking directly and Main as the command
+ * line would, covering GET/POST/HEAD, cookies, OAuth, --flatten and -q.
+ *
+ * Latency percentiles and throughput per scenario are written to a JSON file. Given a baseline
+ * file (a previous output) each scenario's p50 and throughput are compared with it, and the exit
+ * code is 1 if any is worse by more than the tolerance.
+ *
+ * java -cp target/benchmarks.jar digital.toke.tools.bench.EndToEndHarness --records 100 --latency 0
+ * --iterations 500 --out e2e.json [--baseline e2e-baseline.json --tolerance 0.25]
+ *
+ */
+public class EndToEndHarness {
+
+	interface Scenario {
+		void run() throws Exception;
+	}
+
+	int records = 100;
+	long latencyMillis = 0;
+	int warmup = 100;
+	int iterations = 500;
+	String out = "e2e-result.json";
+	String baseline;
+	double tolerance = 0.25;
+
+	final Map<String, Scenario> scenarios = new LinkedHashMap<String, Scenario>();
+
+	public static void main(String[] args) throws Exception {
+		EndToEndHarness h = new EndToEndHarness();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--records": h.records = Integer.parseInt(args[i + 1]); break;
+			case "--latency": h.latencyMillis = Long.parseLong(args[i + 1]); break;
+			case "--warmup": h.warmup = Integer.parseInt(args[i + 1]); break;
+			case "--iterations": h.iterations = Integer.parseInt(args[i + 1]); break;
+			case "--out": h.out = args[i + 1]; break;
+			case "--baseline": h.baseline = args[i + 1]; break;
+			case "--tolerance": h.tolerance = Double.parseDouble(args[i + 1]); break;
+			default: throw new RuntimeException("unknown option " + args[i]);
+			}
+		}
+		System.exit(h.run() ? 0 : 1);
+	}
+
+	/**
+	 * @return false if a baseline was given and a scenario regressed
+	 * @throws Exception
+	 */
+	boolean run() throws Exception {
+		String json = Payloads.json(records, new Random(1));
+		// MockWebServer logs every exchange at INFO
+		Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+
+		try (MockWebServer server = new MockWebServer()) {
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) {
+					MockResponse response = new MockResponse().setHeader("Content-Type", "application/json");
+					if (latencyMillis > 0) response.setHeadersDelay(latencyMillis, TimeUnit.MILLISECONDS);
+					if (request.getPath().startsWith("/cookie")) {
+						response.addHeader("Set-Cookie", "session=" + request.getSequenceNumber() + "; Path=/");
+					}
+					if (request.getMethod().equals("HEAD")) {
+						return response.setHeader("Content-Length", json.length());
+					}
+					return response.setBody(json);
+				}
+			});
+			server.setServerSocketFactory(new NoDelayServerSocketFactory());
+			server.start();
+			defineScenarios(server);
+
+			JSONObject results = new JSONObject();
+			results.put("records", records);
+			results.put("bodyBytes", json.getBytes(StandardCharsets.UTF_8).length);
+			results.put("latencyMillis", latencyMillis);
+			results.put("iterations", iterations);
+			JSONObject byScenario = new JSONObject();
+			results.put("scenarios", byScenario);
+
+			PrintStream stdout = System.out, stderr = System.err;
+			PrintStream discard = new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			});
+
+			for (Map.Entry<String, Scenario> e : scenarios.entrySet()) {
+				long[] nanos = new long[iterations];
+				long wall;
+				// Main writes results to stdout and the cookie jar echoes to stderr
+				System.setOut(discard);
+				System.setErr(discard);
+				try {
+					for (int i = 0; i < warmup; i++) e.getValue().run();
+					long start = System.nanoTime();
+					for (int i = 0; i < iterations; i++) {
+						long t0 = System.nanoTime();
+						e.getValue().run();
+						nanos[i] = System.nanoTime() - t0;
+					}
+					wall = System.nanoTime() - start;
+				} finally {
+					System.setOut(stdout);
+					System.setErr(stderr);
+				}
+				JSONObject stats = stats(nanos, wall);
+				byScenario.put(e.getKey(), stats);
+				System.out.println(String.format("%-22s p50=%8.3fms p99=%8.3fms %10.1f ops/s", e.getKey(),
+						stats.getDouble("p50Millis"), stats.getDouble("p99Millis"), stats.getDouble("opsPerSecond")));
+			}
+
+			Files.write(new File(out).toPath(), results.toString(2).getBytes(StandardCharsets.UTF_8));
+			System.out.println("results written to " + out);
+
+			return baseline == null || compare(byScenario);
+		}
+	}
+
+	private void defineScenarios(MockWebServer server) throws IOException {
+		String data = server.url("/data").toString();
+		String cookie = server.url("/cookie").toString();
+		Headers json = Headers.of("Content-Type", "application/json");
+
+		Networking net = new Networking();
+		Networking cookieNet = new Networking();
+		File cookies = File.createTempFile("e2e-cookies", ".json");
+		cookies.delete(); // the jar reads it if it exists
+		cookies.deleteOnExit();
+		cookieNet.setCookiePath(cookies);
+
+		File oauth = File.createTempFile("e2e-oauth", ".properties");
+		oauth.deleteOnExit();
+		Files.write(oauth.toPath(), Arrays.asList("consumer_key=key", "consumer_secret=secret", "token=token",
+				"token_secret=tokenSecret"), StandardCharsets.UTF_8);
+
+		scenarios.put("networking.get", () -> net.get(data, null));
+		scenarios.put("networking.post", () -> net.post(Networking.JSON, data, json, "{\"a\":1}"));
+		scenarios.put("networking.head", () -> net.head(data, null));
+		scenarios.put("networking.cookies", () -> cookieNet.get(cookie, null));
+		scenarios.put("main.get", () -> Main.main(new String[] { "-u", data }));
+		scenarios.put("main.flatten", () -> Main.main(new String[] { "-u", data, "-f" }));
+		scenarios.put("main.query", () -> Main.main(new String[] { "-u", data, "-q", "ids=$..id", "-q",
+				"cities=$[*].user.location.city" }));
+		scenarios.put("main.head", () -> Main.main(new String[] { "-r", "HEAD", "-u", data, "--dump" }));
+		scenarios.put("main.oauth.post", () -> Main.main(new String[] { "-r", "POST", "--oauth", oauth.getPath(),
+				"--strictRFC3896", "-u", data + "?include_entities=true", "-d", "status=hello world" }));
+		scenarios.put("main.cookies", () -> Main.main(new String[] { "-u", cookie, "-c", cookies.getPath() }));
+	}
+
+	/**
+	 * MockWebServer leaves Nagle on, which with delayed ACKs adds ~40ms to every exchange on loopback
+	 */
+	static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			return new ServerSocket() {
+				@Override
+				public Socket accept() throws IOException {
+					Socket s = super.accept();
+					s.setTcpNoDelay(true);
+					return s;
+				}
+			};
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, 0, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress ifAddress) throws IOException {
+			// as new ServerSocket(port, backlog, ifAddress) does, a null address is any, a backlog below 1 the default
+			ServerSocket socket = createServerSocket();
+			try {
+				socket.bind(new InetSocketAddress(ifAddress, port), backlog);
+			} catch (IOException x) {
+				socket.close();
+				throw x;
+			}
+			return socket;
+		}
+	}
+
+	private static JSONObject stats(long[] nanos, long wallNanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		double sum = 0;
+		for (long n : sorted) sum += n;
+		JSONObject stats = new JSONObject();
+		stats.put("meanMillis", sum / sorted.length / 1e6);
+		stats.put("p50Millis", percentile(sorted, 0.50));
+		stats.put("p90Millis", percentile(sorted, 0.90));
+		stats.put("p99Millis", percentile(sorted, 0.99));
+		stats.put("maxMillis", sorted[sorted.length - 1] / 1e6);
+		stats.put("opsPerSecond", sorted.length / (wallNanos / 1e9));
+		return stats;
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+	}
+
+	private boolean compare(JSONObject current) throws IOException {
+		JSONObject base = new JSONObject(new String(Files.readAllBytes(new File(baseline).toPath()),
+				StandardCharsets.UTF_8)).getJSONObject("scenarios");
+		boolean ok = true;
+		for (String name : scenarios.keySet()) {
+			if (!base.has(name) || !current.has(name)) continue;
+			JSONObject b = base.getJSONObject(name), c = current.getJSONObject(name);
+			double p50 = c.getDouble("p50Millis") / b.getDouble("p50Millis") - 1;
+			double ops = 1 - c.getDouble("opsPerSecond") / b.getDouble("opsPerSecond");
+			boolean regressed = p50 > tolerance || ops > tolerance;
+			if (regressed) ok = false;
+			System.out.println(String.format("%-22s p50 %+6.1f%%  ops/s %+6.1f%%  %s", name, p50 * 100, -ops * 100,
+					regressed ? "REGRESSED" : "ok"));
+		}
+		return ok;
+	}
+
+}
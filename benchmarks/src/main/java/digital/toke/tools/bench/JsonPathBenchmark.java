@@ -0,0 +1,71 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * -q: parsing the body with the json-path provider, and the queries themselves on a parsed
+ * document, the same calls Main makes.
+ *
+ * java -jar target/benchmarks.jar JsonPathBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPathBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	int records;
+
+	@Param({ "$[0].id", "$..text", "$[*].user.location.city", "$[?(@.retweet_count > 5000)].id" })
+	String query;
+
+	String json;
+	Object document;
+	JsonPath compiled;
+
+	@Setup
+	public void setup() {
+		json = Payloads.json(records, new Random(5));
+		document = Configuration.defaultConfiguration().jsonProvider().parse(json);
+		compiled = JsonPath.compile(query);
+	}
+
+	@Benchmark
+	public Object parse() {
+		return Configuration.defaultConfiguration().jsonProvider().parse(json);
+	}
+
+	@Benchmark
+	public Object read() {
+		return JsonPath.read(document, query);
+	}
+
+	@Benchmark
+	public Object readCompiled() {
+		return compiled.read(document);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.tools.QueryParams;
+import digital.toke.tools.twitter.HmacSHA1;
+import digital.toke.tools.twitter.OAuthCompute;
+import digital.toke.tools.twitter.OAuthSigner;
+
+/**
+ * Signatures per second, the one-shot OAuthCompute.Builder against a shared OAuthSigner.
+ *
+ * java -jar target/benchmarks.jar OAuthSignBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OAuthSignBenchmark {
+
+	static final String consumerKey = "xvz1evFS4wEEPTGEFPHBog";
+	static final String token = "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb";
+	static final String consumerSecret = "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+	static final String tokenSecret = "LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+	static final String url = "https://api.twitter.com/1.1/statuses/update.json";
+
+	QueryParams params;
+	OAuthSigner signer;
+
+	@Setup
+	public void setup() {
+		params = new QueryParams().add("include_entities", "true").add("status",
+				"Hello Ladies + Gentlemen, a signed OAuth request!");
+		signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+	}
+
+	@Benchmark
+	public String builder() {
+		return OAuthCompute.builder(consumerKey, token).addParameters(params).consumerSecret(consumerSecret)
+				.oauthTokenSecret(tokenSecret).method("POST").url(url).nonce().timestamp().signatureMethod()
+				.version().build().getHeader();
+	}
+
+	@Benchmark
+	public String hmacSHA1() {
+		return HmacSHA1.calculateRFC2104HMAC(url, consumerSecret + "&" + tokenSecret);
+	}
+
+	@Benchmark
+	public String signer() {
+		return signer.sign("POST", url, params);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String builder4Threads() {
+		return builder();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String signer4Threads() {
+		return signer();
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.Random;
+
+/**
+ * Generated inputs for the benchmarks, deterministic for a given seed.
+ *
+ */
+public final class Payloads {
+
+	private static final String PLAIN = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._~";
+	private static final String ASCII = PLAIN + "     !*'();:@&=+$,/?#[]%\"";
+	private static final String UNICODE = "äöüßéèçñøåæ日本語中文한국어Ωπσ€" + "  ab";
+
+	private Payloads() {
+	}
+
+	/**
+	 * @param kind plain, ascii or unicode
+	 * @param length in chars
+	 * @param r
+	 * @return
+	 */
+	public static String text(String kind, int length, Random r) {
+		String alphabet;
+		switch (kind) {
+		case "plain":
+			alphabet = PLAIN;
+			break;
+		case "unicode":
+			alphabet = UNICODE;
+			break;
+		default:
+			alphabet = ASCII;
+		}
+		StringBuilder buf = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			buf.append(alphabet.charAt(r.nextInt(alphabet.length())));
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * A name=value&amp;name=value string with count parameters. Values are ascii text without '='
+	 * or '&amp;' so the legacy split based code can handle them.
+	 *
+	 * @param count
+	 * @param r
+	 * @return
+	 */
+	public static String query(int count, Random r) {
+		StringBuilder buf = new StringBuilder(count * 24);
+		for (int i = 0; i < count; i++) {
+			if (i > 0) buf.append('&');
+			buf.append("param").append(i).append('=');
+			buf.append(text("plain", 8, r)).append(' ').append(text("plain", 8, r));
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * A JSON array of records objects, each with nested objects, arrays, strings and numbers, a
+	 * shape similar to the timeline and directory responses we query
+	 *
+	 * @param records
+	 * @param r
+	 * @return
+	 */
+	public static String json(int records, Random r) {
+		StringBuilder buf = new StringBuilder(records * 320);
+		buf.append('[');
+		for (int i = 0; i < records; i++) {
+			if (i > 0) buf.append(',');
+			buf.append("{\"id\":").append(i);
+			buf.append(",\"text\":\"").append(text("plain", 40, r)).append('"');
+			buf.append(",\"retweet_count\":").append(r.nextInt(10000));
+			buf.append(",\"favorited\":").append(r.nextBoolean());
+			buf.append(",\"user\":{\"screen_name\":\"").append(text("plain", 12, r)).append('"');
+			buf.append(",\"followers_count\":").append(r.nextInt(1000000));
+			buf.append(",\"location\":{\"city\":\"").append(text("plain", 10, r)).append("\",\"lat\":")
+					.append(r.nextDouble() * 90).append("}}");
+			buf.append(",\"hashtags\":[");
+			int tags = r.nextInt(4);
+			for (int j = 0; j < tags; j++) {
+				if (j > 0) buf.append(',');
+				buf.append('"').append(text("plain", 8, r)).append('"');
+			}
+			buf.append("]}");
+		}
+		buf.append(']');
+		return buf.toString();
+	}
+
+	/**
+	 * An Atom feed of records entries, each with text, attributes and a nested author, the shape
+	 * of the feeds and SOAP responses we query
+	 *
+	 * @param records
+	 * @param r
+	 * @return
+	 */
+	public static String xml(int records, Random r) {
+		StringBuilder buf = new StringBuilder(records * 400);
+		buf.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<feed xmlns=\"http://www.w3.org/2005/Atom\">");
+		buf.append("<title>").append(text("plain", 20, r)).append("</title>");
+		for (int i = 0; i < records; i++) {
+			buf.append("<entry><id>urn:").append(i).append("</id>");
+			buf.append("<title>").append(text("plain", 40, r)).append("</title>");
+			buf.append("<link rel=\"alternate\" href=\"http://example.org/").append(i).append("\"/>");
+			buf.append("<author><name>").append(text("plain", 12, r)).append("</name><count>")
+					.append(r.nextInt(10000)).append("</count></author>");
+			buf.append("<summary>").append(text("plain", 120, r)).append("</summary></entry>");
+		}
+		buf.append("</feed>");
+		return buf.toString();
+	}
+
+}
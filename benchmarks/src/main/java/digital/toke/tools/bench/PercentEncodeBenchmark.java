@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.tools.PercentCodec;
+
+/**
+ * Legacy URLEncoder + rescan percent encoding against the table driven PercentCodec.
+ *
+ * java -jar target/benchmarks.jar PercentEncodeBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PercentEncodeBenchmark {
+
+	/**
+	 * plain - nothing to escape, ascii - typical status text, unicode - mostly multi-byte chars
+	 */
+	@Param({ "plain", "ascii", "unicode" })
+	String input;
+
+	@Param({ "16", "256" })
+	int length;
+
+	String value;
+	String encoded;
+	StringBuilder buf;
+
+	@Setup
+	public void setup() {
+		value = Payloads.text(input, length, new Random(7));
+		encoded = PercentCodec.encode(value);
+		buf = new StringBuilder(length * 9);
+	}
+
+	@Benchmark
+	public String legacyEncode() {
+		return Legacy.percentEncode(value);
+	}
+
+	@Benchmark
+	public String codecEncode() {
+		return PercentCodec.encode(value);
+	}
+
+	@Benchmark
+	public int codecEncodeReusedBuffer() {
+		buf.setLength(0);
+		return PercentCodec.encode(value, buf).length();
+	}
+
+	@Benchmark
+	public String codecDecode() {
+		return PercentCodec.decode(encoded);
+	}
+
+}
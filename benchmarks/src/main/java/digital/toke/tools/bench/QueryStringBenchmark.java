@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.tools.QueryParams;
+import digital.toke.tools.URLUtil;
+
+/**
+ * The HashSet/String.split based query handling against QueryParams.
+ *
+ * java -jar target/benchmarks.jar QueryStringBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryStringBenchmark {
+
+	@Param({ "2", "10", "50" })
+	int params;
+
+	String query;
+	StringBuilder buf;
+
+	@Setup
+	public void setup() {
+		query = Payloads.query(params, new Random(11));
+		buf = new StringBuilder(query.length() * 2);
+	}
+
+	@Benchmark
+	public Collection<String> legacySplitParams() {
+		return Legacy.splitParams(query);
+	}
+
+	@Benchmark
+	public QueryParams queryParamsParse() {
+		return QueryParams.parse(query);
+	}
+
+	@Benchmark
+	public String legacyUrlEncodeData() {
+		return Legacy.urlEncodeData(query);
+	}
+
+	@Benchmark
+	public String urlEncodeData() {
+		return URLUtil.urlEncodeData(query);
+	}
+
+	@Benchmark
+	public String legacyUrlEncodeDataRFC3896() {
+		return Legacy.urlEncodeDataRFC3896(query);
+	}
+
+	@Benchmark
+	public String urlEncodeDataRFC3896() {
+		return URLUtil.urlEncodeDataRFC3896(query);
+	}
+
+	@Benchmark
+	public int queryParamsEncodeReusedBuffer() {
+		buf.setLength(0);
+		return QueryParams.parse(query).encode(buf, true).length();
+	}
+
+}
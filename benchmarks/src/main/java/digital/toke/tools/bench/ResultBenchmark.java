@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import digital.toke.tools.Result;
+import okhttp3.Headers;
+
+/**
+ * --flatten: Result.walk (parse and emit) and emitToSTDOut on an already parsed document.
+ * System.out is swapped for a discarding stream while the benchmark runs.
+ *
+ * java -jar target/benchmarks.jar ResultBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	int records;
+
+	Headers headers;
+	String json;
+	JSONArray parsed;
+	PrintStream stdout;
+
+	@Setup
+	public void setup() {
+		headers = new Headers.Builder().add("Content-Type", "application/json").build();
+		json = Payloads.json(records, new Random(3));
+		parsed = new JSONArray(json);
+
+		stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public Result walk() {
+		Result r = new Result(headers, 200, true, json);
+		r.walk();
+		return r;
+	}
+
+	@Benchmark
+	public Result emitToSTDOut() {
+		Result r = new Result(headers, 200, true, "");
+		r.walk(); // sets up the key buffer, there is no body to parse
+		r.emitToSTDOut(parsed);
+		return r;
+	}
+
+}
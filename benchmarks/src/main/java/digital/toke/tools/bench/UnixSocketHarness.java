@@ -0,0 +1,174 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import digital.toke.tools.LoadRunner;
+import digital.toke.tools.MwQuery;
+import digital.toke.tools.Networking;
+import digital.toke.tools.RequestSpec;
+import digital.toke.tools.UnixDomainSocketFactory;
+
+/**
+ * Latency and throughput of mwquery against a local service over a Unix domain socket and over
+ * loopback TCP. Both servers are the same minimal HTTP/1.1 responder on a ServerSocketChannel, so
+ * the transport is the only difference. Needs Java 16+.
+ *
+ * java -cp target/benchmarks.jar digital.toke.tools.bench.UnixSocketHarness --requests 20000 --concurrency 1,8
+ * --out unix-socket.json
+ *
+ */
+public class UnixSocketHarness {
+
+	int[] levels = { 1, 8 };
+	int requests = 20000;
+	String out = "unix-socket-result.json";
+
+	public static void main(String[] args) throws Exception {
+		UnixSocketHarness h = new UnixSocketHarness();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--concurrency": {
+				String[] parts = args[i + 1].split(",");
+				h.levels = new int[parts.length];
+				for (int j = 0; j < parts.length; j++) h.levels[j] = Integer.parseInt(parts[j].trim());
+				break;
+			}
+			case "--requests": h.requests = Integer.parseInt(args[i + 1]); break;
+			case "--out": h.out = args[i + 1]; break;
+			default: throw new RuntimeException("unknown option " + args[i]);
+			}
+		}
+		if (!UnixDomainSocketFactory.isSupported()) {
+			System.err.println("Unix domain sockets need Java 16 or later");
+			System.exit(1);
+		}
+		h.run();
+		System.exit(0);
+	}
+
+	void run() throws Exception {
+		File dir = Files.createTempDirectory("mwq-bench").toFile();
+		File path = new File(dir, "svc.sock");
+		ServerSocketChannel unix = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+				.invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+		unix.bind((SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class)
+				.invoke(null, path.getPath()));
+		ServerSocketChannel tcp = ServerSocketChannel.open();
+		tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		serve(unix);
+		serve(tcp);
+		String tcpUrl = "http://127.0.0.1:" + ((InetSocketAddress) tcp.getLocalAddress()).getPort() + "/ok";
+
+		System.out.println("java " + System.getProperty("java.version") + ", " + requests + " requests");
+
+		JSONArray results = new JSONArray();
+		try {
+			for (int level : levels) {
+				results.put(measure("tcp", Networking.builder().maxIdleConnections(level).build(), tcpUrl, level));
+				results.put(measure("unix", Networking.builder().maxIdleConnections(level).unixSocket(path).build(),
+						"http://svc/ok", level));
+			}
+		} finally {
+			unix.close();
+			tcp.close();
+			path.delete();
+			dir.delete();
+		}
+
+		JSONObject root = new JSONObject();
+		root.put("java", System.getProperty("java.version"));
+		root.put("requests", requests);
+		root.put("results", results);
+		Files.write(Paths.get(out), root.toString(2).getBytes(StandardCharsets.UTF_8));
+		System.out.println("results written to " + out);
+	}
+
+	JSONObject measure(String transport, Networking net, String url, int concurrency) throws Exception {
+		MwQuery mwq = new MwQuery(net);
+		RequestSpec spec = RequestSpec.builder(url).query("ok=$.ok").build();
+		LoadRunner runner = new LoadRunner(concurrency);
+
+		// warm up the code paths and the connection pool
+		runner.load(Math.min(requests, 2000), () -> mwq.execute(spec));
+		System.gc();
+		LoadRunner.Stats stats = runner.load(requests, () -> mwq.execute(spec));
+
+		System.out.println(String.format("%-5s c=%-4d %10.1f req/s  p50=%7.3fms p99=%7.3fms  errors=%d", transport,
+				concurrency, stats.throughput(), stats.percentile(50) / 1e6, stats.percentile(99) / 1e6, stats.errors));
+
+		JSONObject r = new JSONObject();
+		r.put("transport", transport);
+		r.put("concurrency", concurrency);
+		r.put("throughput", stats.throughput());
+		r.put("p50Millis", stats.percentile(50) / 1e6);
+		r.put("p99Millis", stats.percentile(99) / 1e6);
+		r.put("errors", stats.errors);
+		return r;
+	}
+
+	// accept forever, a thread per connection
+	static void serve(ServerSocketChannel server) {
+		Thread t = new Thread(() -> {
+			try {
+				while (true) {
+					SocketChannel ch = server.accept();
+					Thread c = new Thread(() -> answer(ch));
+					c.setDaemon(true);
+					c.start();
+				}
+			} catch (IOException x) {
+				// closed
+			}
+		}, "accept");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	static final byte[] RESPONSE = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 11\r\n\r\n"
+			+ "{\"ok\":true}").getBytes(StandardCharsets.UTF_8);
+
+	// GETs only, each request ends at a blank line
+	static void answer(SocketChannel ch) {
+		ByteBuffer in = ByteBuffer.allocate(8192);
+		ByteBuffer response = ByteBuffer.wrap(RESPONSE);
+		try {
+			int matched = 0;
+			while (ch.read(in) != -1) {
+				in.flip();
+				while (in.hasRemaining()) {
+					byte b = in.get();
+					matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+					if (matched == 4) {
+						response.rewind();
+						while (response.hasRemaining()) ch.write(response);
+						matched = 0;
+					}
+				}
+				in.clear();
+			}
+			ch.close();
+		} catch (IOException x) {
+			// client went away
+		}
+	}
+
+}
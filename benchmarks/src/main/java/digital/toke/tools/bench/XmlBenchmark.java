@@ -0,0 +1,99 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import digital.toke.tools.XmlExtractor;
+import digital.toke.tools.XmlPath;
+
+/**
+ * -q and --flatten on XML: the streaming extractor against a DOM and javax.xml.xpath, the usual
+ * way. Run with -prof gc, the allocation per op is the memory story; the DOM costs several times
+ * the document.
+ *
+ * java -jar target/benchmarks.jar XmlBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlBenchmark {
+
+	// about 0.3KB per record
+	@Param({ "100", "10000" })
+	int records;
+
+	String xml;
+	XmlExtractor query;
+	XmlExtractor flatten;
+	DocumentBuilderFactory dbf;
+	XPathExpression xpath;
+
+	@Setup
+	public void setup() throws Exception {
+		xml = Payloads.xml(records, new Random(5));
+		query = new XmlExtractor(false, Arrays.asList("link"), Arrays.asList(XmlPath.compile("//entry/link[@rel='alternate']/@href")));
+		flatten = new XmlExtractor(true, Collections.<String>emptyList(), Collections.<XmlPath>emptyList());
+		dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(false);
+		xpath = XPathFactory.newInstance().newXPath().compile("//entry/link[@rel='alternate']/@href");
+	}
+
+	@Benchmark
+	public List<String> streamQuery() throws IOException {
+		List<String> out = new ArrayList<String>();
+		query.extract(new StringReader(xml), (name, value) -> out.add(value));
+		return out;
+	}
+
+	@Benchmark
+	public List<String> streamFlatten() throws IOException {
+		List<String> out = new ArrayList<String>();
+		flatten.extract(new StringReader(xml), (name, value) -> out.add(value));
+		return out;
+	}
+
+	@Benchmark
+	public List<String> domQuery() throws Exception {
+		DocumentBuilder db = dbf.newDocumentBuilder();
+		Document doc = db.parse(new InputSource(new StringReader(xml)));
+		NodeList nodes = (NodeList) xpath.evaluate(doc, XPathConstants.NODESET);
+		List<String> out = new ArrayList<String>(nodes.getLength());
+		for (int i = 0; i < nodes.getLength(); i++) out.add(nodes.item(i).getNodeValue());
+		return out;
+	}
+
+}
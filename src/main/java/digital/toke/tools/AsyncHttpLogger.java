@@ -0,0 +1,316 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.JSONObject;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Logs each call as a line of JSON, written by a background thread so the calling thread only
+ * takes the timings and hands them on. The line is written when the response body is closed:
+ *
+ * <pre>
+ * {"id":7,"start":1571200000000,"method":"GET","url":"https://...","protocol":"h2","status":200,
+ *  "headers.ms":12.5,"total.ms":14.1,"request.bytes":0,"response.bytes":5120}
+ * </pre>
+ *
+ * with "error" instead of a status when the call failed. Events wait in a bounded queue that takes
+ * no locks; when it is full, as when the writer cannot keep up, events are dropped and counted
+ * rather than holding up calls.
+ *
+ * Sampling keeps the volume down in loops: every nth call, calls that failed or were answered
+ * 4xx/5xx, calls slower than a threshold, or any mix of these.
+ *
+ * @author David R. Smith
+ *
+ */
+public class AsyncHttpLogger implements Interceptor, Closeable {
+
+	static final class Event {
+		long id;
+		long startMillis;
+		String method;
+		String url;
+		String protocol;
+		int status;
+		String error;
+		long headersNanos;
+		long totalNanos;
+		long requestBytes;
+		long responseBytes;
+
+		// in this order, which a JSONObject would not keep
+		String toJson() {
+			StringBuilder buf = new StringBuilder(256);
+			buf.append("{\"id\":").append(id);
+			buf.append(",\"start\":").append(startMillis);
+			buf.append(",\"method\":").append(JSONObject.quote(method));
+			buf.append(",\"url\":").append(JSONObject.quote(url));
+			if (protocol != null) buf.append(",\"protocol\":").append(JSONObject.quote(protocol));
+			if (error != null) buf.append(",\"error\":").append(JSONObject.quote(error));
+			else buf.append(",\"status\":").append(status);
+			buf.append(",\"headers.ms\":").append(String.format(Locale.ROOT, "%.2f", headersNanos / 1e6));
+			buf.append(",\"total.ms\":").append(String.format(Locale.ROOT, "%.2f", totalNanos / 1e6));
+			buf.append(",\"request.bytes\":").append(requestBytes);
+			buf.append(",\"response.bytes\":").append(responseBytes);
+			return buf.append('}').toString();
+		}
+	}
+
+	final int every;
+	final boolean errors;
+	final long slowNanos;
+	final int capacity;
+
+	private final Writer out;
+	private final AtomicLong ids = new AtomicLong();
+	private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<Event>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final Thread writer;
+	private volatile boolean idle; // the writer is parked, or about to be
+	private volatile boolean closed;
+
+	private AsyncHttpLogger(Builder b, Writer out) {
+		this.every = b.every >= 0 ? b.every : (b.errors || b.slowMillis > 0 ? 0 : 1);
+		this.errors = b.errors;
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(b.slowMillis);
+		this.capacity = b.capacity;
+		this.out = out;
+		this.writer = new Thread(this::drain, "mwquery-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		Event e = new Event();
+		e.id = ids.incrementAndGet();
+		e.startMillis = System.currentTimeMillis();
+		e.method = request.method();
+		e.url = request.url().toString();
+		e.requestBytes = request.body() == null ? 0 : request.body().contentLength();
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed(request);
+		} catch (IOException | RuntimeException x) {
+			e.totalNanos = e.headersNanos = System.nanoTime() - start;
+			e.error = x.toString();
+			offer(e);
+			throw x;
+		}
+		e.headersNanos = System.nanoTime() - start;
+		e.status = response.code();
+		e.protocol = response.protocol().toString();
+		if (response.body() == null) {
+			e.totalNanos = e.headersNanos;
+			offer(e);
+			return response;
+		}
+		return response.newBuilder().body(new CountingBody(response.body(), e, start)).build();
+	}
+
+	// sampled, then queued if there is room
+	void offer(Event e) {
+		boolean keep = (every > 0 && e.id % every == 0) || (errors && (e.error != null || e.status >= 400))
+				|| (slowNanos > 0 && e.totalNanos >= slowNanos);
+		if (!keep) return;
+		if (queued.incrementAndGet() > capacity) {
+			queued.decrementAndGet();
+			dropped.incrementAndGet();
+			return;
+		}
+		queue.offer(e);
+		if (idle) LockSupport.unpark(writer);
+	}
+
+	private void drain() {
+		boolean failed = false;
+		while (true) {
+			Event e = queue.poll();
+			if (e == null) {
+				try {
+					if (!failed) out.flush();
+				} catch (IOException x) {
+					failed = true;
+				}
+				if (closed && queue.isEmpty()) return;
+				idle = true;
+				// an event offered before idle was set would not unpark us
+				if (queue.isEmpty() && !closed) LockSupport.park(this);
+				idle = false;
+				continue;
+			}
+			queued.decrementAndGet();
+			if (failed) continue;
+			try {
+				out.write(e.toJson());
+				out.write('\n');
+				written.incrementAndGet();
+			} catch (IOException x) {
+				// logging must not fail the calls
+				failed = true;
+			}
+		}
+	}
+
+	/**
+	 * Events written so far
+	 */
+	public long written() {
+		return written.get();
+	}
+
+	/**
+	 * Events dropped because the queue was full
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Write what is queued and stop. The writer given to build is flushed, not closed
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException x) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Counts the body's bytes as they are read, and logs the call when it is closed or read to the
+	 * end
+	 */
+	final class CountingBody extends ResponseBody {
+
+		final ResponseBody delegate;
+		final Event event;
+		final long start;
+		BufferedSource source;
+		boolean done;
+
+		CountingBody(ResponseBody delegate, Event event, long start) {
+			this.delegate = delegate;
+			this.event = event;
+			this.start = start;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			if (source == null) {
+				source = Okio.buffer(new ForwardingSource(delegate.source()) {
+					@Override
+					public long read(Buffer sink, long byteCount) throws IOException {
+						long n = super.read(sink, byteCount);
+						if (n == -1) done();
+						else event.responseBytes += n;
+						return n;
+					}
+
+					@Override
+					public void close() throws IOException {
+						done();
+						super.close();
+					}
+				});
+			}
+			return source;
+		}
+
+		private void done() {
+			if (done) return;
+			done = true;
+			event.totalNanos = System.nanoTime() - start;
+			offer(event);
+		}
+	}
+
+	public static class Builder {
+
+		int every = -1;
+		boolean errors;
+		long slowMillis;
+		int capacity = 8192;
+
+		/**
+		 * Log one call in n. With errors or slowerThan and no every, only those are logged;
+		 * otherwise every call is
+		 */
+		public Builder every(int n) {
+			this.every = n;
+			return this;
+		}
+
+		/**
+		 * Log calls that failed or were answered with 4xx or 5xx
+		 */
+		public Builder errors(boolean errors) {
+			this.errors = errors;
+			return this;
+		}
+
+		/**
+		 * Log calls that took at least this long, body included
+		 */
+		public Builder slowerThan(long millis) {
+			this.slowMillis = millis;
+			return this;
+		}
+
+		/**
+		 * Events that can wait to be written, beyond that they are dropped. Default 8192
+		 */
+		public Builder queueSize(int capacity) {
+			this.capacity = capacity;
+			return this;
+		}
+
+		public AsyncHttpLogger build(Writer out) {
+			return new AsyncHttpLogger(this, out);
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds name/value pairs in a response body of some type in one pass, so the body can be read
+ * as it arrives rather than kept. Implementations are immutable and can be shared by threads.
+ *
+ * @author David R. Smith
+ *
+ */
+public interface BodyExtractor {
+
+	/**
+	 * Read the body to its end, handing each name/value pair found to the sink
+	 *
+	 * @param in
+	 * @param sink
+	 * @throws IOException if the body could not be read or is not well-formed
+	 */
+	void extract(Reader in, BiConsumer<String, String> sink) throws IOException;
+
+}
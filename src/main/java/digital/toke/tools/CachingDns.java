@@ -0,0 +1,72 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dns;
+
+/**
+ * Keeps lookups for a fixed time so new connections to a host already seen skip DNS. Failed
+ * lookups are not kept. Safe for concurrent use.
+ *
+ * @author David R. Smith
+ *
+ */
+public class CachingDns implements Dns {
+
+	static final class Entry {
+		final List<InetAddress> addresses;
+		final long expires;
+
+		Entry(List<InetAddress> addresses, long expires) {
+			this.addresses = addresses;
+			this.expires = expires;
+		}
+	}
+
+	private final Dns delegate;
+	private final long ttlNanos;
+	private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	public CachingDns(long ttl, TimeUnit unit) {
+		this(Dns.SYSTEM, ttl, unit);
+	}
+
+	public CachingDns(Dns delegate, long ttl, TimeUnit unit) {
+		this.delegate = delegate;
+		this.ttlNanos = unit.toNanos(ttl);
+	}
+
+	@Override
+	public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+		long now = System.nanoTime();
+		Entry e = cache.get(hostname);
+		if (e != null && now - e.expires < 0) {
+			hits.incrementAndGet();
+			return e.addresses;
+		}
+		misses.incrementAndGet();
+		List<InetAddress> addresses = delegate.lookup(hostname);
+		cache.put(hostname, new Entry(addresses, now + ttlNanos));
+		return addresses;
+	}
+
+	public int hits() {
+		return hits.get();
+	}
+
+	public int misses() {
+		return misses.get();
+	}
+
+}
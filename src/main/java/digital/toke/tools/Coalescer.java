@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight: while a call for a key is in progress, further calls for the same key wait for it
+ * and get its value (or its failure) rather than making their own. Nothing is kept once the call
+ * completes, so the next call for the key after that goes ahead; this is not a cache.
+ *
+ * Safe for concurrent use.
+ *
+ * @author David R. Smith
+ *
+ * @param <K> the key, with equals and hashCode
+ * @param <V> the value
+ */
+public class Coalescer<K, V> {
+
+	public interface Call<V> {
+		V call() throws IOException;
+	}
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<K, CompletableFuture<V>>();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicInteger shared = new AtomicInteger();
+
+	/**
+	 * Make the call, unless one for this key is already in flight, then wait for that one
+	 */
+	public V execute(K key, Call<V> call) throws IOException {
+		CompletableFuture<V> future = new CompletableFuture<V>();
+		CompletableFuture<V> leader = inFlight.putIfAbsent(key, future);
+		if (leader != null) {
+			shared.incrementAndGet();
+			return await(leader);
+		}
+
+		calls.incrementAndGet();
+		try {
+			V value = call.call();
+			future.complete(value);
+			return value;
+		} catch (IOException | RuntimeException | Error x) {
+			future.completeExceptionally(x);
+			throw x;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	private static <V> V await(CompletableFuture<V> leader) throws IOException {
+		try {
+			return leader.get();
+		} catch (InterruptedException x) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a shared call");
+		} catch (ExecutionException x) {
+			// a new exception, so each waiter has a stack of its own
+			Throwable cause = x.getCause();
+			if (cause instanceof IOException) throw new IOException(cause.getMessage(), cause);
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Calls actually made
+	 */
+	public int calls() {
+		return calls.get();
+	}
+
+	/**
+	 * Calls that waited for one already in flight instead
+	 */
+	public int shared() {
+		return shared.get();
+	}
+
+}
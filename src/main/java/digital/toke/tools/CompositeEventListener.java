@@ -0,0 +1,143 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * OkHttp takes one EventListener per client; this hands each event to several, in order.
+ *
+ * @author David R. Smith
+ *
+ */
+final class CompositeEventListener extends EventListener {
+
+	final EventListener[] listeners;
+
+	CompositeEventListener(List<EventListener> listeners) {
+		this.listeners = new ArrayList<EventListener>(listeners).toArray(new EventListener[listeners.size()]);
+	}
+
+	/**
+	 * The one listener, or a composite of them
+	 */
+	static EventListener of(List<EventListener> listeners) {
+		return listeners.size() == 1 ? listeners.get(0) : new CompositeEventListener(listeners);
+	}
+
+	@Override
+	public void callStart(Call call) {
+		for (EventListener l : listeners) l.callStart(call);
+	}
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		for (EventListener l : listeners) l.dnsStart(call, domainName);
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		for (EventListener l : listeners) l.dnsEnd(call, domainName, inetAddressList);
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		for (EventListener l : listeners) l.connectStart(call, inetSocketAddress, proxy);
+	}
+
+	@Override
+	public void secureConnectStart(Call call) {
+		for (EventListener l : listeners) l.secureConnectStart(call);
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake) {
+		for (EventListener l : listeners) l.secureConnectEnd(call, handshake);
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		for (EventListener l : listeners) l.connectEnd(call, inetSocketAddress, proxy, protocol);
+	}
+
+	@Override
+	public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+		for (EventListener l : listeners) l.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection) {
+		for (EventListener l : listeners) l.connectionAcquired(call, connection);
+	}
+
+	@Override
+	public void connectionReleased(Call call, Connection connection) {
+		for (EventListener l : listeners) l.connectionReleased(call, connection);
+	}
+
+	@Override
+	public void requestHeadersStart(Call call) {
+		for (EventListener l : listeners) l.requestHeadersStart(call);
+	}
+
+	@Override
+	public void requestHeadersEnd(Call call, Request request) {
+		for (EventListener l : listeners) l.requestHeadersEnd(call, request);
+	}
+
+	@Override
+	public void requestBodyStart(Call call) {
+		for (EventListener l : listeners) l.requestBodyStart(call);
+	}
+
+	@Override
+	public void requestBodyEnd(Call call, long byteCount) {
+		for (EventListener l : listeners) l.requestBodyEnd(call, byteCount);
+	}
+
+	@Override
+	public void responseHeadersStart(Call call) {
+		for (EventListener l : listeners) l.responseHeadersStart(call);
+	}
+
+	@Override
+	public void responseHeadersEnd(Call call, Response response) {
+		for (EventListener l : listeners) l.responseHeadersEnd(call, response);
+	}
+
+	@Override
+	public void responseBodyStart(Call call) {
+		for (EventListener l : listeners) l.responseBodyStart(call);
+	}
+
+	@Override
+	public void responseBodyEnd(Call call, long byteCount) {
+		for (EventListener l : listeners) l.responseBodyEnd(call, byteCount);
+	}
+
+	@Override
+	public void callEnd(Call call) {
+		for (EventListener l : listeners) l.callEnd(call);
+	}
+
+	@Override
+	public void callFailed(Call call, IOException ioe) {
+		for (EventListener l : listeners) l.callFailed(call, ioe);
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Counts the connections a client opens and the protocol each call ran over, so a run can report
+ * whether calls were multiplexed or reused connections, and the time spent setting connections
+ * up. One instance serves every call.
+ *
+ * @author David R. Smith
+ *
+ */
+public class ConnectionStats extends EventListener {
+
+	private final AtomicInteger opened = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger acquired = new AtomicInteger();
+	private final ConcurrentHashMap<String, AtomicInteger> protocols = new ConcurrentHashMap<String, AtomicInteger>();
+
+	// DNS and connect (with TLS) phases in progress, by call
+	private final ConcurrentHashMap<Call, Long> started = new ConcurrentHashMap<Call, Long>();
+	private final LongAdder setupNanos = new LongAdder();
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		started.put(call, System.nanoTime());
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		phaseEnd(call);
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		started.put(call, System.nanoTime());
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		phaseEnd(call);
+		opened.incrementAndGet();
+	}
+
+	@Override
+	public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+			java.io.IOException ioe) {
+		phaseEnd(call);
+		failed.incrementAndGet();
+	}
+
+	// a failed DNS lookup gets neither dnsEnd nor a connect event, only the end of the call
+	@Override
+	public void callEnd(Call call) {
+		phaseEnd(call);
+	}
+
+	@Override
+	public void callFailed(Call call, java.io.IOException ioe) {
+		phaseEnd(call);
+	}
+
+	/**
+	 * @return DNS and connect phases started and not yet ended
+	 */
+	int inProgress() {
+		return started.size();
+	}
+
+	private void phaseEnd(Call call) {
+		Long start = started.remove(call);
+		if (start != null) setupNanos.add(System.nanoTime() - start);
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection) {
+		acquired.incrementAndGet();
+		protocols.computeIfAbsent(connection.protocol().toString(), p -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/**
+	 * @return connections established
+	 */
+	public int opened() {
+		return opened.get();
+	}
+
+	/**
+	 * @return connection attempts that failed
+	 */
+	public int failed() {
+		return failed.get();
+	}
+
+	/**
+	 * @return times a call took a connection, new or pooled. Redirects and retries count again
+	 */
+	public int acquired() {
+		return acquired.get();
+	}
+
+	/**
+	 * @return total time spent in DNS lookups and connecting, including TLS handshakes
+	 */
+	public long setupNanos() {
+		return setupNanos.sum();
+	}
+
+	/**
+	 * @return calls by protocol, e.g. h2=20
+	 */
+	public Map<String, Integer> protocols() {
+		Map<String, Integer> map = new TreeMap<String, Integer>();
+		for (Map.Entry<String, AtomicInteger> e : protocols.entrySet()) map.put(e.getKey(), e.getValue().get());
+		return map;
+	}
+
+	/**
+	 * Write as name="value" lines
+	 */
+	public void print(PrintStream out) {
+		StringBuilder protocol = new StringBuilder();
+		Map<String, Integer> byProtocol = protocols();
+		for (Map.Entry<String, Integer> e : byProtocol.entrySet()) {
+			if (protocol.length() > 0) protocol.append(',');
+			protocol.append(e.getKey());
+			if (byProtocol.size() > 1) protocol.append(':').append(e.getValue());
+		}
+		StringBuilder buf = new StringBuilder();
+		buf.append("connections.opened=\"").append(opened()).append("\"\n");
+		buf.append("connections.reused=\"").append(Math.max(0, acquired() - opened())).append("\"\n");
+		if (failed() > 0) buf.append("connections.failed=\"").append(failed()).append("\"\n");
+		buf.append("connections.setup.ms=\"").append(String.format("%.3f", setupNanos() / 1e6)).append("\"\n");
+		if (protocol.length() > 0) buf.append("connections.protocol=\"").append(protocol).append("\"\n");
+		out.print(buf);
+	}
+
+}
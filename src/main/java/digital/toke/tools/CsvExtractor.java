@@ -0,0 +1,303 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+import okhttp3.MediaType;
+
+/**
+ * Column extraction for text/csv and text/tab-separated-values responses, a row at a time, so an
+ * export of millions of rows passes through in the memory of one row.
+ *
+ * The first row is the header unless the type says header=absent. A query selects a column by
+ * header name or by index from 0, written in brackets: [email] or [3]. Filters, as in
+ * --where status=active, keep only the rows that pass all of them.
+ *
+ * Output is per kept row, numbered from 0 like a json array: a query gives name.0, name.1 and so
+ * on, and flattening gives 0.email, 0.total, 1.email... (or 0.0, 0.1 without a header). Values are
+ * handed on as each row is read.
+ *
+ * CSV follows RFC 4180: fields may be quoted, with "" for a quote, and quoted fields may hold the
+ * separator and line breaks. TSV fields are taken as they are.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class CsvExtractor implements BodyExtractor {
+
+	/**
+	 * A row filter: column=value, column!=value, column~regex, or a numeric column&gt;n,
+	 * column&gt;=n, column&lt;n, column&lt;=n. The column is a header name or [index]
+	 */
+	public static final class Filter {
+
+		final String column;
+		final String op;
+		final String value;
+		final Pattern pattern; // for ~
+		final double number; // for the comparisons
+
+		private Filter(String column, String op, String value) {
+			this.column = column;
+			this.op = op;
+			this.value = value;
+			this.pattern = op.equals("~") ? Pattern.compile(value) : null;
+			double n = Double.NaN;
+			if (op.startsWith("<") || op.startsWith(">")) {
+				try {
+					n = Double.parseDouble(value);
+				} catch (NumberFormatException x) {
+					throw new IllegalArgumentException("a number is required after " + op + " - " + column + op + value);
+				}
+			}
+			this.number = n;
+		}
+
+		public static Filter parse(String expression) {
+			int i = 0, n = expression.length();
+			while (i < n && "=!~<>".indexOf(expression.charAt(i)) == -1) i++;
+			if (i == 0 || i == n) throw new IllegalArgumentException("a filter is column=value, != ~ < <= > or >= - " + expression);
+			int j = i + 1;
+			if (j < n && expression.charAt(j) == '=' && expression.charAt(i) != '=' && expression.charAt(i) != '~') j++;
+			String op = expression.substring(i, j);
+			if (op.equals("!")) throw new IllegalArgumentException("a filter is column=value, != ~ < <= > or >= - " + expression);
+			return new Filter(expression.substring(0, i).trim(), op, expression.substring(j).trim());
+		}
+
+		boolean test(String field) {
+			switch (op) {
+			case "=":
+				return value.equals(field);
+			case "!=":
+				return !value.equals(field);
+			case "~":
+				return pattern.matcher(field).find();
+			default:
+				double d;
+				try {
+					d = Double.parseDouble(field.trim());
+				} catch (NumberFormatException x) {
+					return false;
+				}
+				switch (op) {
+				case "<":
+					return d < number;
+				case "<=":
+					return d <= number;
+				case ">":
+					return d > number;
+				default:
+					return d >= number;
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return column + op + value;
+		}
+	}
+
+	final boolean flatten;
+	final List<String> names;
+	final List<String> columns; // header name or index, as in [name] or [3]
+	final List<Filter> filters;
+	final char separator;
+	final boolean header;
+
+	public CsvExtractor(boolean flatten, List<String> names, List<String> columns, List<Filter> filters) {
+		this(flatten, names, columns, filters, ',', true);
+	}
+
+	private CsvExtractor(boolean flatten, List<String> names, List<String> columns, List<Filter> filters, char separator,
+			boolean header) {
+		if (names.size() != columns.size()) throw new IllegalArgumentException("a name is required for each query");
+		this.flatten = flatten;
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.columns = Collections.unmodifiableList(new ArrayList<String>(columns));
+		this.filters = Collections.unmodifiableList(new ArrayList<Filter>(filters));
+		this.separator = separator;
+		this.header = header;
+	}
+
+	/**
+	 * text/csv, text/tab-separated-values and the like
+	 */
+	public static boolean isCsv(MediaType type) {
+		if (type == null) return false;
+		String subtype = type.subtype();
+		return subtype.equals("csv") || subtype.equals("tab-separated-values");
+	}
+
+	/**
+	 * @return a query's column if it is one, [name] or [index], else null
+	 */
+	static String column(String query) {
+		if (query.length() > 2 && query.charAt(0) == '[' && query.indexOf(']') == query.length() - 1) {
+			return query.substring(1, query.length() - 1).trim();
+		}
+		return null;
+	}
+
+	/**
+	 * This extractor for a body of the type: tab separated or not, with a header row or not
+	 */
+	CsvExtractor of(MediaType type) {
+		char sep = type.subtype().equals("tab-separated-values") ? '\t' : ',';
+		boolean hdr = !type.toString().toLowerCase().replace(" ", "").contains("header=absent");
+		if (sep == separator && hdr == header) return this;
+		return new CsvExtractor(flatten, names, columns, filters, sep, hdr);
+	}
+
+	@Override
+	public void extract(Reader in, BiConsumer<String, String> sink) throws IOException {
+		Rows rows = new Rows(in, separator, separator == ',');
+		List<String> row = new ArrayList<String>();
+		List<String> headings = Collections.emptyList();
+		if (header) {
+			if (!rows.next(row)) return;
+			headings = new ArrayList<String>(row);
+		}
+
+		// resolved once against the header
+		int[] queryColumns = new int[columns.size()];
+		for (int q = 0; q < queryColumns.length; q++) queryColumns[q] = index(columns.get(q), headings);
+		int[] filterColumns = new int[filters.size()];
+		for (int f = 0; f < filterColumns.length; f++) {
+			String c = filters.get(f).column;
+			String bracketed = column(c);
+			filterColumns[f] = index(bracketed != null ? bracketed : c, headings);
+		}
+
+		int kept = 0;
+		while (rows.next(row)) {
+			if (!keep(row, filterColumns)) continue;
+			String prefix = String.valueOf(kept++);
+			if (flatten) {
+				for (int i = 0; i < row.size(); i++) {
+					String name = i < headings.size() ? headings.get(i) : String.valueOf(i);
+					sink.accept(prefix + "." + name, row.get(i));
+				}
+			}
+			for (int q = 0; q < queryColumns.length; q++) {
+				int c = queryColumns[q];
+				if (c < row.size()) sink.accept(names.get(q) + "." + prefix, row.get(c));
+			}
+		}
+	}
+
+	private boolean keep(List<String> row, int[] filterColumns) {
+		for (int f = 0; f < filterColumns.length; f++) {
+			int c = filterColumns[f];
+			if (c >= row.size() || !filters.get(f).test(row.get(c))) return false;
+		}
+		return true;
+	}
+
+	// a header name, else an index
+	private static int index(String column, List<String> headings) throws IOException {
+		int i = headings.indexOf(column);
+		if (i != -1) return i;
+		try {
+			i = Integer.parseInt(column);
+		} catch (NumberFormatException x) {
+			throw new IOException("No column " + column + " in the header " + headings);
+		}
+		if (i < 0) throw new IOException("No column " + column);
+		return i;
+	}
+
+	/**
+	 * Reads rows from the body through a fixed buffer
+	 */
+	static final class Rows {
+
+		final Reader in;
+		final char separator;
+		final boolean quotes;
+		final char[] buf = new char[8192];
+		int pos, len;
+		final StringBuilder field = new StringBuilder();
+
+		Rows(Reader in, char separator, boolean quotes) {
+			this.in = in;
+			this.separator = separator;
+			this.quotes = quotes;
+		}
+
+		// -1 at the end
+		private int read() throws IOException {
+			if (pos == len) {
+				len = in.read(buf, 0, buf.length);
+				pos = 0;
+				if (len <= 0) {
+					len = 0;
+					return -1;
+				}
+			}
+			return buf[pos++];
+		}
+
+		private int peek() throws IOException {
+			int c = read();
+			if (c != -1) pos--;
+			return c;
+		}
+
+		/**
+		 * Fill row with the next row's fields, skipping blank lines
+		 *
+		 * @return false at the end of the body
+		 */
+		boolean next(List<String> row) throws IOException {
+			while (true) {
+				row.clear();
+				field.setLength(0);
+				boolean quoted = false, any = false;
+				int c;
+				while ((c = read()) != -1) {
+					any = true;
+					if (quoted) {
+						if (c == '"') {
+							if (peek() == '"') {
+								read();
+								field.append('"');
+							} else {
+								quoted = false;
+							}
+						} else {
+							field.append((char) c);
+						}
+					} else if (c == '"' && quotes && field.length() == 0) {
+						quoted = true;
+					} else if (c == separator) {
+						row.add(field.toString());
+						field.setLength(0);
+					} else if (c == '\n' || c == '\r') {
+						if (c == '\r' && peek() == '\n') read();
+						break;
+					} else {
+						field.append((char) c);
+					}
+				}
+				if (!any) return false;
+				row.add(field.toString());
+				if (row.size() == 1 && row.get(0).isEmpty()) {
+					if (c == -1) return false;
+					continue; // blank line
+				}
+				return true;
+			}
+		}
+	}
+
+}
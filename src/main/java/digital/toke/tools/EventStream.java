@@ -0,0 +1,126 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiConsumer;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+
+/**
+ * Reads Server-Sent Events or NDJSON lines as they arrive for MwQuery.watch(), keeping what a
+ * reconnect needs: the event count, the last event id and the retry delay. One per watch.
+ *
+ * @author David R. Smith
+ *
+ */
+final class EventStream implements Networking.BodyReader {
+
+	static final Headers JSON_HEADERS = Headers.of("Content-Type", "application/json");
+
+	final RequestSpec spec;
+	final long maxEvents;
+	final BiConsumer<String, String> sink;
+	long count;
+	String lastEventId;
+	long retryMillis = 3000;
+
+	EventStream(RequestSpec spec, long maxEvents, BiConsumer<String, String> sink) {
+		this.spec = spec;
+		this.maxEvents = maxEvents;
+		this.sink = sink;
+	}
+
+	static boolean isEventStream(MediaType type) {
+		return type != null && type.type().equals("text") && type.subtype().equals("event-stream");
+	}
+
+	static boolean isNdjson(MediaType type) {
+		if (type == null) return false;
+		String subtype = type.subtype();
+		return subtype.equals("x-ndjson") || subtype.equals("ndjson") || subtype.equals("jsonl");
+	}
+
+	boolean done() {
+		return maxEvents > 0 && count >= maxEvents;
+	}
+
+	@Override
+	public boolean reads(MediaType type) {
+		return isEventStream(type) || isNdjson(type);
+	}
+
+	@Override
+	public void read(MediaType type, Reader body) throws IOException {
+		BufferedReader lines = new BufferedReader(body);
+		if (isNdjson(type)) {
+			String line;
+			while (!done() && (line = lines.readLine()) != null) {
+				if (!line.trim().isEmpty()) dispatch(line);
+			}
+			return;
+		}
+
+		// see the HTML Living Standard, 9.2 Server-sent events
+		StringBuilder data = new StringBuilder();
+		boolean hasData = false;
+		String id = lastEventId;
+		String line;
+		while (!done() && (line = lines.readLine()) != null) {
+			if (line.isEmpty()) {
+				// the event is complete
+				lastEventId = id;
+				if (hasData) dispatch(data.toString());
+				data.setLength(0);
+				hasData = false;
+				continue;
+			}
+			if (line.startsWith(":")) continue;
+			int colon = line.indexOf(':');
+			String field = colon == -1 ? line : line.substring(0, colon);
+			String value = colon == -1 ? "" : line.substring(colon + 1);
+			if (value.startsWith(" ")) value = value.substring(1);
+			switch (field) {
+			case "data":
+				if (hasData) data.append('\n');
+				data.append(value);
+				hasData = true;
+				break;
+			case "id":
+				if (value.indexOf('\0') == -1) id = value;
+				break;
+			case "retry":
+				try {
+					retryMillis = Long.parseLong(value);
+				} catch (NumberFormatException x) {
+					// ignored, as the standard says
+				}
+				break;
+			default:
+				// event names and anything else are not used
+			}
+		}
+	}
+
+	// apply the queries to the event's data, naming the values for the event
+	private void dispatch(String data) {
+		String prefix = count + ".";
+		BiConsumer<String, String> named = (name, value) -> sink.accept(prefix + name, value);
+		String trimmed = data.trim();
+		boolean json = trimmed.startsWith("{") || trimmed.startsWith("[");
+		if (json && (spec.flatten || !spec.queries.isEmpty())) {
+			Result r = new Result(JSON_HEADERS, 200, true, trimmed);
+			if (spec.flatten) r.flatten(named);
+			if (!spec.queries.isEmpty()) MwQuery.query(spec, r, named);
+		} else {
+			named.accept("data", data);
+		}
+		count++;
+	}
+
+}
@@ -0,0 +1,309 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only archive of HTTP exchanges used by record (--record) and replay (--replay).
+ *
+ * The file starts with the magic "MWQA" and a format version, followed by records each prefixed
+ * with its length:
+ *
+ * <pre>
+ * int length
+ * long startMillis, long durationNanos
+ * utf method, utf url, headers, bytes requestBody
+ * int code, utf message, utf protocol, headers, bytes responseBody
+ * </pre>
+ *
+ * where headers is an int count followed by name/value pairs and bytes is an int length (-1 for
+ * none) followed by the data. Each record is written with a single append under a FileLock so
+ * several processes can record into the same archive. A record torn by a crash is ignored on read.
+ *
+ * Reading memory-maps the file so replaying a large archive does not copy it onto the heap.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class ExchangeArchive {
+
+	static final int MAGIC = 0x4D575141; // "MWQA"
+	static final int VERSION = 1;
+	static final int HEADER_LENGTH = 8;
+
+	// a single mapping cannot exceed Integer.MAX_VALUE, keep well under it
+	static final long MAX_SEGMENT = 1L << 30;
+
+	private ExchangeArchive() {
+	}
+
+	/**
+	 * One recorded exchange. Headers are flattened name/value pairs.
+	 */
+	public static final class Exchange {
+
+		public long startMillis;
+		public long durationNanos;
+		public String method;
+		public String url;
+		public String[] requestHeaders = new String[0];
+		public byte[] requestBody;
+		public int code;
+		public String message = "";
+		public String protocol = "http/1.1";
+		public String[] responseHeaders = new String[0];
+		public byte[] responseBody;
+
+		public String key() {
+			return ExchangeArchive.key(method, url);
+		}
+	}
+
+	static String key(String method, String url) {
+		return method + " " + url;
+	}
+
+	/**
+	 * Append one exchange to the archive, creating it if required.
+	 *
+	 * @param archive
+	 * @param e
+	 * @throws IOException
+	 */
+	public static void append(File archive, Exchange e) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + length(e.responseBody) + length(e.requestBody));
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0); // length, filled in below
+		out.writeLong(e.startMillis);
+		out.writeLong(e.durationNanos);
+		out.writeUTF(e.method);
+		out.writeUTF(e.url);
+		writeHeaders(out, e.requestHeaders);
+		writeBytes(out, e.requestBody);
+		out.writeInt(e.code);
+		out.writeUTF(e.message);
+		out.writeUTF(e.protocol);
+		writeHeaders(out, e.responseHeaders);
+		writeBytes(out, e.responseBody);
+		out.flush();
+
+		ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+		record.putInt(0, record.remaining() - 4);
+
+		try (FileChannel ch = FileChannel.open(archive.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock lock = ch.lock()) {
+			long end = ch.size();
+			if (end == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+				header.putInt(MAGIC).putInt(VERSION).flip();
+				while (header.hasRemaining()) end += ch.write(header, end);
+			}
+			while (record.hasRemaining()) end += ch.write(record, end);
+		}
+	}
+
+	private static int length(byte[] b) {
+		return b == null ? 0 : b.length;
+	}
+
+	private static void writeHeaders(DataOutputStream out, String[] headers) throws IOException {
+		out.writeInt(headers.length / 2);
+		for (String s : headers) out.writeUTF(s);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+		if (b == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
+
+	/**
+	 * Open an archive for replay.
+	 *
+	 * @param archive
+	 * @return
+	 * @throws IOException
+	 */
+	public static Reader open(File archive) throws IOException {
+		return new Reader(archive);
+	}
+
+	/**
+	 * Memory-mapped view of an archive. Records are indexed by method and URL on open and decoded
+	 * when matched. Repeated requests for the same key get the recorded responses in order,
+	 * wrapping around when the recording runs out. Safe for concurrent use.
+	 */
+	public static final class Reader {
+
+		private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+		private final Map<String, Slot> index = new HashMap<String, Slot>();
+		private int count;
+
+		private static final class Slot {
+			// packed (segment << 32 | offset within segment)
+			long[] records = new long[1];
+			int size;
+			final AtomicInteger next = new AtomicInteger();
+
+			void add(long rec) {
+				if (size == records.length) {
+					long[] grown = new long[size * 2];
+					System.arraycopy(records, 0, grown, 0, size);
+					records = grown;
+				}
+				records[size++] = rec;
+			}
+		}
+
+		Reader(File archive) throws IOException {
+			try (FileChannel ch = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+				long size = ch.size();
+				if (size < HEADER_LENGTH) throw new IOException("Not an exchange archive: " + archive);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+				while (header.hasRemaining() && ch.read(header, header.position()) > 0);
+				header.flip();
+				if (header.getInt() != MAGIC) throw new IOException("Not an exchange archive: " + archive);
+				int version = header.getInt();
+				if (version != VERSION) throw new IOException("Unsupported archive version " + version + ": " + archive);
+
+				long start = HEADER_LENGTH;
+				while (start < size) {
+					MappedByteBuffer seg = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_SEGMENT, size - start));
+					int segNo = segments.size();
+					segments.add(seg);
+					int pos = 0;
+					while (pos + 4 <= seg.limit()) {
+						int len = seg.getInt(pos);
+						if (len < 0 || (long) len + 4 > MAX_SEGMENT) throw new IOException("Corrupt record at " + (start + pos) + ": " + archive);
+						if (pos + 4 + len > seg.limit()) break;
+						String key = readKey(seg, pos + 4 + 16);
+						Slot slot = index.get(key);
+						if (slot == null) index.put(key, slot = new Slot());
+						slot.add(((long) segNo << 32) | pos);
+						count++;
+						pos += 4 + len;
+					}
+					if (start + seg.limit() == size || pos == 0) {
+						// mapped to the end so whatever is left is a torn tail from an interrupted append
+						break;
+					}
+					// the next record straddles the end of this mapping, start a new one there
+					start += pos;
+				}
+			}
+		}
+
+		private static String readKey(ByteBuffer buf, int pos) {
+			ByteBuffer b = buf.duplicate();
+			b.position(pos);
+			String method = readUTF(b);
+			String url = readUTF(b);
+			return ExchangeArchive.key(method, url);
+		}
+
+		/**
+		 * @return the number of exchanges in the archive
+		 */
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * Find the next recorded exchange for this request
+		 *
+		 * @param method
+		 * @param url
+		 * @return the exchange, or null if nothing was recorded for it
+		 */
+		public Exchange next(String method, String url) {
+			Slot slot = index.get(key(method, url));
+			if (slot == null) return null;
+			int i = (slot.next.getAndIncrement() & Integer.MAX_VALUE) % slot.size;
+			long rec = slot.records[i];
+			ByteBuffer b = segments.get((int) (rec >>> 32)).duplicate();
+			b.position((int) rec + 4);
+			return read(b);
+		}
+
+		private static Exchange read(ByteBuffer b) {
+			Exchange e = new Exchange();
+			e.startMillis = b.getLong();
+			e.durationNanos = b.getLong();
+			e.method = readUTF(b);
+			e.url = readUTF(b);
+			e.requestHeaders = readHeaders(b);
+			e.requestBody = readBytes(b);
+			e.code = b.getInt();
+			e.message = readUTF(b);
+			e.protocol = readUTF(b);
+			e.responseHeaders = readHeaders(b);
+			e.responseBody = readBytes(b);
+			return e;
+		}
+
+		private static String[] readHeaders(ByteBuffer b) {
+			int n = b.getInt();
+			String[] headers = new String[n * 2];
+			for (int i = 0; i < headers.length; i++) headers[i] = readUTF(b);
+			return headers;
+		}
+
+		private static byte[] readBytes(ByteBuffer b) {
+			int n = b.getInt();
+			if (n < 0) return null;
+			byte[] bytes = new byte[n];
+			b.get(bytes);
+			return bytes;
+		}
+
+		// counterpart of DataOutputStream.writeUTF, plain ASCII is the fast path
+		private static String readUTF(ByteBuffer b) {
+			int len = b.getShort() & 0xFFFF;
+			byte[] bytes = new byte[len];
+			b.get(bytes);
+			boolean ascii = true;
+			for (byte x : bytes) {
+				if (x <= 0) {
+					ascii = false;
+					break;
+				}
+			}
+			if (ascii) return new String(bytes, StandardCharsets.US_ASCII);
+			// modified UTF-8, decode it the same way DataInputStream does
+			char[] chars = new char[len];
+			int n = 0;
+			for (int i = 0; i < len; i++) {
+				int c = bytes[i] & 0xFF;
+				if (c < 0x80) {
+					chars[n++] = (char) c;
+				} else if ((c & 0xE0) == 0xC0) {
+					chars[n++] = (char) (((c & 0x1F) << 6) | (bytes[++i] & 0x3F));
+				} else {
+					chars[n++] = (char) (((c & 0x0F) << 12) | ((bytes[++i] & 0x3F) << 6) | (bytes[++i] & 0x3F));
+				}
+			}
+			return new String(chars, 0, n);
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+
+/**
+ * Java Flight Recorder events for calls, flattening, JsonPath queries and cookie file I/O, so
+ * mwquery's latency shows up next to GC and I/O in the same recording.
+ *
+ * This is the Java 8 version, which records nothing; the methods are empty and compile away. The
+ * multi-release jar carries a Java 11 version under META-INF/versions/11 that emits the events.
+ * Each begin method returns an event to hand to its end method, or null when the event is not
+ * being recorded.
+ *
+ * @author David R. Smith
+ *
+ */
+final class FlightEvents {
+
+	/**
+	 * @return true where this JVM's version of the class can record events. A method, as a
+	 *         constant would be compiled into its callers
+	 */
+	static boolean supported() {
+		return false;
+	}
+
+	private FlightEvents() {
+	}
+
+	static Object request(String method, String url) {
+		return null;
+	}
+
+	static void requestEnd(Object event, int status, long requestBytes, long responseBytes, String error) {
+	}
+
+	static Object flatten() {
+		return null;
+	}
+
+	static void flattenEnd(Object event, int chars) {
+	}
+
+	static Object query(String path) {
+		return null;
+	}
+
+	static void queryEnd(Object event) {
+	}
+
+	static Object cookies(String operation, File file) {
+		return null;
+	}
+
+	static void cookiesEnd(Object event, int cookies) {
+	}
+
+}
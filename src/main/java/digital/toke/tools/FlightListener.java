@@ -0,0 +1,76 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+/**
+ * Records each call as a request event in Java Flight Recorder: method, url, status and the bytes
+ * sent and received. Calls made while the event is not being recorded are not tracked at all.
+ * Only added to clients where FlightEvents is supported.
+ *
+ * @author David R. Smith
+ *
+ */
+final class FlightListener extends EventListener {
+
+	// a call's event and what has been seen of it so far
+	static final class Recording {
+		final Object event;
+		int status;
+		long requestBytes;
+		long responseBytes;
+
+		Recording(Object event) {
+			this.event = event;
+		}
+	}
+
+	private final ConcurrentHashMap<Call, Recording> calls = new ConcurrentHashMap<Call, Recording>();
+
+	@Override
+	public void callStart(Call call) {
+		Object event = FlightEvents.request(call.request().method(), call.request().url().toString());
+		if (event != null) calls.put(call, new Recording(event));
+	}
+
+	@Override
+	public void requestBodyEnd(Call call, long byteCount) {
+		Recording r = calls.get(call);
+		if (r != null) r.requestBytes += byteCount;
+	}
+
+	@Override
+	public void responseHeadersEnd(Call call, Response response) {
+		Recording r = calls.get(call);
+		if (r != null) r.status = response.code();
+	}
+
+	@Override
+	public void responseBodyEnd(Call call, long byteCount) {
+		Recording r = calls.get(call);
+		if (r != null) r.responseBytes += byteCount;
+	}
+
+	@Override
+	public void callEnd(Call call) {
+		if (calls.isEmpty()) return;
+		Recording r = calls.remove(call);
+		if (r != null) FlightEvents.requestEnd(r.event, r.status, r.requestBytes, r.responseBytes, null);
+	}
+
+	@Override
+	public void callFailed(Call call, IOException ioe) {
+		if (calls.isEmpty()) return;
+		Recording r = calls.remove(call);
+		if (r != null) FlightEvents.requestEnd(r.event, r.status, r.requestBytes, r.responseBytes, String.valueOf(ioe));
+	}
+
+}
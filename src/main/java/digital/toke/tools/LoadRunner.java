@@ -0,0 +1,222 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs many blocking calls at once for batch, scenario and load modes. At most concurrency calls
+ * are in flight; the threads come from RequestExecutors, virtual on Java 21+.
+ *
+ * @author David R. Smith
+ *
+ */
+public class LoadRunner {
+
+	final int concurrency;
+	final boolean platformThreads;
+
+	public LoadRunner(int concurrency) {
+		this(concurrency, false);
+	}
+
+	/**
+	 * @param concurrency     calls in flight at once
+	 * @param platformThreads true to use a platform pool even where virtual threads are available
+	 */
+	public LoadRunner(int concurrency, boolean platformThreads) {
+		if (concurrency < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+		this.concurrency = concurrency;
+		this.platformThreads = platformThreads;
+	}
+
+	/**
+	 * @return "platform" or "virtual"
+	 */
+	public String kind() {
+		return platformThreads ? "platform" : RequestExecutors.kind();
+	}
+
+	private ExecutorService executor() {
+		return platformThreads ? RequestExecutors.newPlatformExecutor(concurrency) : RequestExecutors.newExecutor(concurrency);
+	}
+
+	/**
+	 * Told of each batch result, in the order the specs were given, on the calling thread
+	 */
+	public interface Listener {
+		void completed(int index, QueryResult result);
+
+		void failed(int index, Exception x);
+	}
+
+	/**
+	 * Execute each spec. Results are reported as soon as they and all before them are done.
+	 *
+	 * @param mwq
+	 * @param specs
+	 * @param listener
+	 * @throws InterruptedException
+	 */
+	public void batch(MwQuery mwq, List<RequestSpec> specs, Listener listener) throws InterruptedException {
+		ExecutorService exec = executor();
+		Semaphore permits = new Semaphore(concurrency);
+		Deque<Future<QueryResult>> pending = new ArrayDeque<Future<QueryResult>>();
+		int reported = 0;
+		try {
+			for (RequestSpec spec : specs) {
+				permits.acquire();
+				pending.add(exec.submit(() -> {
+					try {
+						return mwq.execute(spec);
+					} finally {
+						permits.release();
+					}
+				}));
+				while (!pending.isEmpty() && pending.peek().isDone()) {
+					report(reported++, pending.poll(), listener);
+				}
+			}
+			while (!pending.isEmpty()) {
+				report(reported++, pending.poll(), listener);
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	private static void report(int index, Future<QueryResult> f, Listener listener) throws InterruptedException {
+		try {
+			listener.completed(index, f.get());
+		} catch (ExecutionException x) {
+			Throwable cause = x.getCause();
+			listener.failed(index, cause instanceof Exception ? (Exception) cause : x);
+		}
+	}
+
+	/**
+	 * Run the task count times and measure it
+	 *
+	 * @param count
+	 * @param task  e.g. () -&gt; mwq.execute(spec), any exception counts as an error
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public Stats load(int count, Callable<?> task) throws InterruptedException {
+		ExecutorService exec = executor();
+		Semaphore permits = new Semaphore(concurrency);
+		CountDownLatch done = new CountDownLatch(count);
+		long[] latencies = new long[count];
+		AtomicInteger errors = new AtomicInteger();
+		AtomicReference<Exception> firstError = new AtomicReference<Exception>();
+
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < count; i++) {
+				permits.acquire();
+				final int index = i;
+				exec.execute(() -> {
+					long t0 = System.nanoTime();
+					try {
+						task.call();
+					} catch (Exception x) {
+						errors.incrementAndGet();
+						firstError.compareAndSet(null, x);
+					} finally {
+						latencies[index] = System.nanoTime() - t0;
+						permits.release();
+						done.countDown();
+					}
+				});
+			}
+			done.await();
+		} finally {
+			exec.shutdownNow();
+		}
+		return new Stats(count, errors.get(), firstError.get(), System.nanoTime() - start, latencies, concurrency, kind());
+	}
+
+	/**
+	 * Timings from a load run
+	 */
+	public static class Stats {
+
+		public final int count;
+		public final int errors;
+		public final Exception firstError;
+		public final long elapsedNanos;
+		public final int concurrency;
+		public final String executor;
+		final long[] latencies; // sorted
+
+		Stats(int count, int errors, Exception firstError, long elapsedNanos, long[] latencies, int concurrency, String executor) {
+			this.count = count;
+			this.errors = errors;
+			this.firstError = firstError;
+			this.elapsedNanos = elapsedNanos;
+			this.concurrency = concurrency;
+			this.executor = executor;
+			this.latencies = latencies;
+			Arrays.sort(latencies);
+		}
+
+		/**
+		 * @param p between 0 and 100
+		 * @return the latency at that percentile in nanos
+		 */
+		public long percentile(double p) {
+			if (latencies.length == 0) return 0;
+			int i = (int) Math.ceil(p / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(i, latencies.length - 1))];
+		}
+
+		/**
+		 * @return completed tasks per second
+		 */
+		public double throughput() {
+			return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * Write as name="value" lines, like any other result
+		 */
+		public void print(PrintStream out) {
+			StringBuilder buf = new StringBuilder();
+			line(buf, "load.requests", String.valueOf(count));
+			line(buf, "load.errors", String.valueOf(errors));
+			if (firstError != null) line(buf, "load.error", String.valueOf(firstError));
+			line(buf, "load.concurrency", String.valueOf(concurrency));
+			line(buf, "load.executor", executor);
+			line(buf, "load.elapsed.ms", ms(elapsedNanos));
+			line(buf, "load.throughput", String.format("%.1f", throughput()));
+			line(buf, "load.latency.p50.ms", ms(percentile(50)));
+			line(buf, "load.latency.p90.ms", ms(percentile(90)));
+			line(buf, "load.latency.p99.ms", ms(percentile(99)));
+			line(buf, "load.latency.max.ms", ms(percentile(100)));
+			out.print(buf);
+		}
+
+		private static String ms(long nanos) {
+			return String.format("%.3f", nanos / 1e6);
+		}
+
+		private static void line(StringBuilder buf, String name, String value) {
+			buf.append(name).append("=\"").append(value).append("\"\n");
+		}
+	}
+
+}
@@ -12,6 +12,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -21,7 +23,7 @@ import okhttp3.CookieJar;
 import okhttp3.HttpUrl;
 
 /**
- * Implement a cookie jar that can serialize its contents to a file
+ * Implement a cookie jar that can serialize its contents to a file. Safe for use by concurrent calls
  * 
  * @author David R. Smith
  *
@@ -29,16 +31,32 @@ import okhttp3.HttpUrl;
 public class MWQCookieJar implements CookieJar {
 	
     private final HashMap<String, List<Cookie>> cookieStore = new HashMap<>();
+    
+    // a Lock rather than synchronized, so a virtual thread waiting here does not pin its carrier
+    private final Lock lock = new ReentrantLock();
 
     @Override
     public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
-        cookieStore.put(url.host(), cookies);
+        // copy, the list we are given is unmodifiable and readCookies may add to it
+        List<Cookie> copy = new ArrayList<Cookie>(cookies);
+        lock.lock();
+        try {
+            cookieStore.put(url.host(), copy);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public List<Cookie> loadForRequest(HttpUrl url) {
-        List<Cookie> cookies = cookieStore.get(url.host());
-        return cookies != null ? cookies : new ArrayList<Cookie>();
+        lock.lock();
+        try {
+            List<Cookie> cookies = cookieStore.get(url.host());
+            // a copy, readCookies may add to the stored list while the caller iterates
+            return cookies != null ? new ArrayList<Cookie>(cookies) : new ArrayList<Cookie>();
+        } finally {
+            lock.unlock();
+        }
     }
 
 	public HashMap<String, List<Cookie>> getCookieStore() {
@@ -46,26 +64,34 @@ public class MWQCookieJar implements CookieJar {
 	}
     
 	public void writeCookies(File file) {
-		Iterator<String> iter = cookieStore.keySet().iterator();
+		Object event = FlightEvents.cookies("write", file);
+		int count = 0;
 		JSONObject root = new JSONObject();
-		while(iter.hasNext()) {
-			String host = iter.next();
-			JSONArray cookieList = new JSONArray();
-			List<Cookie> list = cookieStore.get(host);
-			for(Cookie c: list) {
-				JSONObject cookie = new JSONObject();
-				cookie.put("name", c.name());
-				cookie.put("value", c.value());
-				cookie.put("expiresAt", c.expiresAt());
-				cookie.put("domain", c.domain());
-				cookie.put("path", c.path());
-				cookie.put("secure", c.secure());
-				cookie.put("httpOnly", c.httpOnly());
-				cookie.put("hostOnly", c.hostOnly());
-				cookie.put("persistent", c.persistent());
-				cookieList.put(cookie);
+		lock.lock();
+		try {
+			Iterator<String> iter = cookieStore.keySet().iterator();
+			while(iter.hasNext()) {
+				String host = iter.next();
+				JSONArray cookieList = new JSONArray();
+				List<Cookie> list = cookieStore.get(host);
+				for(Cookie c: list) {
+					JSONObject cookie = new JSONObject();
+					cookie.put("name", c.name());
+					cookie.put("value", c.value());
+					cookie.put("expiresAt", c.expiresAt());
+					cookie.put("domain", c.domain());
+					cookie.put("path", c.path());
+					cookie.put("secure", c.secure());
+					cookie.put("httpOnly", c.httpOnly());
+					cookie.put("hostOnly", c.hostOnly());
+					cookie.put("persistent", c.persistent());
+					cookieList.put(cookie);
+					count++;
+				}
+				root.put(host, cookieList);
 			}
-			root.put(host, cookieList);
+		} finally {
+			lock.unlock();
 		}
 		
 		String json = root.toString(2);
@@ -75,9 +101,12 @@ public class MWQCookieJar implements CookieJar {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		FlightEvents.cookiesEnd(event, count);
 	}
 	
 	public void readCookies(File file) {
+		Object event = FlightEvents.cookies("read", file);
+		int count = 0;
 		try {
 			String json = new String(Files.readAllBytes(file.toPath()),"UTF-8");
 			JSONObject root = new JSONObject(json);
@@ -99,15 +128,21 @@ public class MWQCookieJar implements CookieJar {
 						if(cookieRep.getBoolean("secure")) b.secure();
 						if(cookieRep.getBoolean("secure")) b.secure();
 						Cookie c = b.build();
-						if(cookieStore.containsKey(host)) {
-							// assume we have a list, just add our cookie
-							List<Cookie> list = cookieStore.get(host);
-							if(!list.contains(c)) {
-								list.add(c);
+						count++;
+						lock.lock();
+						try {
+							if(cookieStore.containsKey(host)) {
+								// assume we have a list, just add our cookie
+								List<Cookie> list = cookieStore.get(host);
+								if(!list.contains(c)) {
+									list.add(c);
+								}
+							}else {
+								cookieStore.put(host, new ArrayList<Cookie>());
+								cookieStore.get(host).add(c);
 							}
-						}else {
-							cookieStore.put(host, new ArrayList<Cookie>());
-							cookieStore.get(host).add(c);
+						} finally {
+							lock.unlock();
 						}
 				}
 				
@@ -115,6 +150,7 @@ public class MWQCookieJar implements CookieJar {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		FlightEvents.cookiesEnd(event, count);
 	}
     
 };
\ No newline at end of file
@@ -4,41 +4,29 @@
  */
 package digital.toke.tools;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.file.Files;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
-
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import digital.toke.tools.CmdLineParser.OptionException;
-import digital.toke.tools.twitter.OAuthCompute;
-import net.minidev.json.JSONArray;
-import okhttp3.Headers;
-import okhttp3.MediaType;
 
 /**
- * Kind of like curl + jq
+ * Kind of like curl + jq. The command line front end to MwQuery
  * 
  * @author dave
  *
  */
 public class Main {
-	
-	public static HashMap<String,String> results;
-
-	private static String consumerKey, token, consumerSecret, tokenSecret;
 
 	public static void main(String[] args) {
 
@@ -47,344 +35,262 @@ public class Main {
 			System.exit(1);
 		}
 
-		CmdLineParser parser = new CmdLineParser();
-		CmdLineParser.Option<Boolean> helpOption = parser.addBooleanOption('x', "help");
-
-		// can be used multiple times
-		CmdLineParser.Option<String> headerOption = parser.addStringOption('h', "header");
-
-		CmdLineParser.Option<String> mediaTypeOption = parser.addStringOption('m', "mediaType");
-
-		// causes URL-encoding to be done in a way that OAuth likes
-		CmdLineParser.Option<Boolean> strictRFC3896Option = parser.addBooleanOption("strictRFC3896");
-
-		// pass in location of OAuth configuration file.
-		CmdLineParser.Option<String> oauthOption = parser.addStringOption('o', "oauth");
-
-		// default is POST
-		CmdLineParser.Option<String> reqOption = parser.addStringOption('r', "request");
-
-		// use @file in that case of a file
-		CmdLineParser.Option<String> dataOption = parser.addStringOption('d', "data");
-
-		CmdLineParser.Option<String> urlOption = parser.addStringOption('u', "url");
-
-		// can be used multiple times, these are the queries to extract results from out
-		// of the response
-		CmdLineParser.Option<String> queryOption = parser.addStringOption('q', "query");
-
-		CmdLineParser.Option<Boolean> dumpOption = parser.addBooleanOption("dump");
-		
-		CmdLineParser.Option<Boolean> loggingOption = parser.addBooleanOption("logging");
-
-		CmdLineParser.Option<Boolean> flattenOption = parser.addBooleanOption('f', "flatten");
-		CmdLineParser.Option<Boolean> timeOption = parser.addBooleanOption('t', "time");
-
-		/**
-		 * If set, attempt will be made to serialize cookies, allows for sticky sessions
-		 */
-		CmdLineParser.Option<String> cookiePathOption = parser.addStringOption('c', "cookiePath");
-
+		Options options;
 		try {
-			parser.parse(args);
+			options = new Options(args);
 		} catch (OptionException e) {
 			e.printStackTrace();
 			return;
 		}
 
-		if (parser.getOptionValue(helpOption, Boolean.FALSE)) {
+		if (options.help) {
 			help();
 			return;
 		}
-		
-		final boolean time = parser.getOptionValue(timeOption, false);
-	
-
-		final String req = parser.getOptionValue(reqOption, "GET");
-
-		// path to oath config if required
-		String oauthConfig = parser.getOptionValue(oauthOption, null);
-
-		// if using oauth, the default here is URLENCODED
-		String mediaTypeString = parser.getOptionValue(mediaTypeOption, oauthConfig == null ? "JSON" : "URLENCODED");
-
-		MediaType mediaType = null;
-		switch (mediaTypeString) {
-		case "JSON":
-			mediaType = Networking.JSON;
-			break;
-		case "URLENCODED":
-			mediaType = Networking.URLENCODED;
-			break;
-		}
-
-		boolean strictRFC3896 = parser.getOptionValue(strictRFC3896Option, Boolean.FALSE);
-
-		String url = parser.getOptionValue(urlOption, null);
 
-		// url is required
-		if (url == null) {
-			return;
-		}
-
-		// construct a base url and collect query params if found
-		URL urlObj = null;
-		try {
-			urlObj = new URL(url);
-		} catch (MalformedURLException e1) {
-			e1.printStackTrace();
-			return;
-		}
-		StringBuffer urlbuf = new StringBuffer();
-		urlbuf.append(urlObj.getProtocol());
-		urlbuf.append("://");
-
-		// handle explicit/implicit port value
-		int port = urlObj.getPort();
-		if (url.contains(String.valueOf(port))) {
-			// if the port is explicit in the url string, keep it explicit
-			urlbuf.append(urlObj.getAuthority());
-		} else {
-			urlbuf.append(urlObj.getHost());
-		}
-
-		urlbuf.append(urlObj.getPath());
-		String baseUrl = urlbuf.toString(); // should be protocol://host[:port]/path but have no params
-
-		// parameters found in the url are collected here, as we need this analysis for
-		// OAuth
-		// don't mix this with the data flag contents
-		Collection<String> parameters = URLUtil.splitParams(urlObj.getQuery());
-
-		final boolean dump = parser.getOptionValue(dumpOption, false);
-		final boolean logging = parser.getOptionValue(loggingOption, false);
-		final boolean flatten = parser.getOptionValue(flattenOption, false);
-
-		// our collection of headers from the command line
-		Collection<String> headers = parser.getOptionValues(headerOption);
-		headers = variableSubstitution(headers,results);
-
-		// parameters from file or the string which is going to be our body
-		String data = parser.getOptionValue(dataOption, null);
-		Collection<String> dataParams = new HashSet<String>();
+		boolean exceeded = false;
+		try (Options.Credentials credentials = new Options.Credentials();
+				VarStore store = options.vars == null ? null : VarStore.open(new File(options.vars))) {
+			// values kept by earlier runs, for ${name} here. Only what this run finds is written back, so
+			// a value another run stored meanwhile is not put back to what it was when we read it
+			Map<String, String> vars = store == null ? new LinkedHashMap<String, String>() : store.read();
+			Map<String, String> found = new LinkedHashMap<String, String>();
+			if (!vars.isEmpty()) {
+				String[] substituted = new String[args.length];
+				for (int i = 0; i < args.length; i++) substituted[i] = Scenario.substitute(args[i], vars);
+				options = new Options(substituted);
+			}
 
-		if (data != null) {
-			// load if required
-			if (data.startsWith("@")) {
-				File f = new File(data.substring(1));
-				if (!f.exists()) {
+			MwQuery mwq = new MwQuery(options.networking());
+			Timer deadline = options.deadline > 0 ? cancelAfter(mwq.getNetworking(), options.deadline) : null;
+			try {
+				if (options.batch != null) {
+					batch(mwq, options, credentials, vars, found);
+				} else if (options.scenario != null) {
+					scenario(mwq, options, credentials, vars, found);
+				} else {
 					try {
-						throw new RuntimeException("data file does not exist: " + f.getCanonicalPath());
+						single(mwq, options, credentials, found);
 					} catch (IOException x) {
+						// past the deadline, deadline.exceeded follows
+						if (!mwq.getNetworking().isCancelled()) throw x;
+						System.out.println("error=\"Canceled\"");
 					}
 				}
-
-				try {
-					data = new String(Files.readAllBytes(f.toPath()), "UTF-8");
-				} catch (Exception e) {
-					e.printStackTrace();
+				if (store != null) {
+					store.putAll(found);
+				}
+			} finally {
+				if (deadline != null) {
+					deadline.cancel();
+				}
+				exceeded = mwq.getNetworking().isCancelled();
+				if (exceeded) {
+					System.out.println("deadline.exceeded=\"true\"");
+				}
+				// write out what is still queued, and give up the cache
+				if (mwq.getNetworking().getLogger() != null) {
+					mwq.getNetworking().getLogger().close();
+				}
+				if (mwq.getNetworking().getCache() != null) {
+					mwq.getNetworking().getCache().close();
+				}
+				if (mwq.getNetworking().getTracer() != null) {
+					mwq.getNetworking().getTracer().export(new File(options.trace));
 				}
 			}
-
-			// so now data is loaded, if we are URLENCODED media type (for POST), assume it
-			// is name=value&name=value params. Collect and escape as required
-			// NOTE we are not yet handling multi-part mime encoded params!!!
-
-			if (mediaType == Networking.URLENCODED) {
-
-				// collect the params for analysis (for example, OAuth)
-				if (data != null) {
-					if (data.contains("&")) {
-						String[] paramItems = data.split("&");
-						for (String p : paramItems)
-							parameters.add(p);
-					} else {
-						// apparently just one
-						dataParams.add(data);
-					}
+			if (options.time) {
+				mwq.getNetworking().getConnectionStats().print(System.out);
+				if (mwq.getNetworking().getCache() != null) {
+					mwq.getNetworking().getCache().print(System.out);
 				}
-
-				if (strictRFC3896) {
-					// for OAuth compliance
-					data = URLUtil.urlEncodeDataRFC3896(data);
-				} else {
-					// more typical encoding
-					data = URLUtil.urlEncodeData(data);
+				if (mwq.getNetworking().getCoalescer() != null) {
+					System.out.println("coalesce.calls=\"" + mwq.getNetworking().getCoalescer().calls() + '"');
+					System.out.println("coalesce.shared=\"" + mwq.getNetworking().getCoalescer().shared() + '"');
 				}
 			}
+		} catch (IOException | OptionException x) {
+			x.printStackTrace();
+		} catch (InterruptedException x) {
+			Thread.currentThread().interrupt();
 		}
-
-		String cookiePath = parser.getOptionValue(cookiePathOption);
-
-		Networking net = null;
-		if(logging) {
-			net = new Networking(true);
-		}else {
-		    net = new Networking();
-		}
-		if (cookiePath != null)
-			net.setCookiePath(new File(cookiePath));
-		Map<String, String> headerMap = new HashMap<String, String>();
-
-		// get the headers out of the command line
-		Iterator<String> iter = headers.iterator();
-		while (iter.hasNext()) {
-			String item = iter.next();
-			String[] items = item.split("\\:");
-			headerMap.put(items[0].trim(), items[1].trim());
+		if (exceeded) {
+			// a scheduled job can tell a cut off run from a complete one
+			System.exit(1);
 		}
+	}
 
-		// See if we are doing oauth
-
-		if (oauthConfig != null) {
-			InputStream in = null;
-			Properties props = new Properties();
-
-			try {
-				File config = new File(oauthConfig);
-				if (config.exists()) {
-					// external config file
-					in = new FileInputStream(config);
-				} else {
-					throw new RuntimeException("oauth config path does not appear to exist!");
-				}
-
-				props.load(in);
-			} catch (Exception x) {
-				x.printStackTrace();
-				return;
+	// past the deadline the calls in flight are cancelled, and any made after fail at once
+	private static Timer cancelAfter(Networking net, double seconds) {
+		Timer timer = new Timer("mwquery-deadline", true);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				net.cancel();
 			}
+		}, (long) (seconds * 1000));
+		return timer;
+	}
 
-			// these oauth tokens are now in scope
-			consumerKey = props.getProperty("consumer_key", null);
-			consumerSecret = props.getProperty("consumer_secret", null);
-			token = props.getProperty("token", null);
-			tokenSecret = props.getProperty("token_secret", null);
+	private static void single(MwQuery mwq, Options options, Options.Credentials credentials, Map<String, String> found) throws IOException, InterruptedException {
+		RequestSpec spec = options.spec(credentials);
 
-			if (consumerKey == null || consumerSecret == null || token == null || tokenSecret == null)
-				throw new RuntimeException("OAuth config failed, at least one required property is not set");
+		// url is required
+		if (spec == null) {
+			return;
+		}
 
-			OAuthCompute oac = OAuthCompute.builder(consumerKey, token).addParameters(parameters)
-					.addParameters(dataParams).consumerSecret(consumerSecret).oauthTokenSecret(tokenSecret).method(req)
-					.url(baseUrl).nonce().timestamp().signatureMethod().version().build();
+		warmup(mwq, options, Collections.singletonList(spec.getUrl()));
 
-			headerMap.put("Authorization", oac.getHeader());
+		if (options.load > 0) {
+			new LoadRunner(options.concurrency).load(options.load, () -> mwq.execute(spec)).print(System.out);
+			return;
+		}
 
+		if (options.watch) {
+			// System.out flushes each line, so each event shows as it arrives
+			mwq.watch(spec, options.maxEvents, (name, value) -> System.out.println(name + "=\"" + value + '"'));
+			return;
 		}
 
-		Headers _headers = Headers.of(headerMap);
+		if (options.poll > 0) {
+			poll(mwq, spec, options);
+			return;
+		}
 
-		Result result = null;
+		if (options.dump) {
+			QueryResult result = mwq.execute(spec);
+			for (int i = 0; i < result.size(); i++) found.put(result.name(i), result.value(i));
+			print("", result, options);
+			return;
+		}
 
+		// values are printed as found, so a large response is never held
+		PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+		QueryResult result;
 		try {
-			switch (req) {
-			case "POST": {
-				result = net.post(mediaType, url, _headers, data);
-				break;
-			}
+			result = mwq.execute(spec, (name, value) -> {
+				out.append(name).append("=\"").append(value).append("\"\n");
+				if (options.vars != null) found.put(name, value);
+			});
+		} finally {
+			out.flush();
+		}
+		print("", result, options);
+	}
 
-			case "PUT": {
-				result = net.put(mediaType, url, _headers, data);
-				break;
+	// until interrupted or cancelled; a failed poll is reported and the next one goes ahead
+	static void poll(MwQuery mwq, RequestSpec spec, Options options) throws InterruptedException {
+		Poller poller = new Poller(mwq, spec);
+		long interval = (long) (options.poll * 1000);
+		while (!mwq.getNetworking().isCancelled()) {
+			long start = System.nanoTime();
+			try {
+				poller.poll().print(System.out);
+			} catch (IOException | RuntimeException x) {
+				// past the deadline
+				if (mwq.getNetworking().isCancelled()) return;
+				System.err.println("poll failed: " + x);
 			}
-
-			case "GET": {
-				result = net.get(url, _headers);
-				break;
+			long elapsed = System.nanoTime() - start;
+			if (options.time) {
+				System.out.println(String.format("poll.ms=\"%.3f\"", elapsed / 1e6));
+				System.out.println("poll.notModified=\"" + poller.notModified() + '"');
+				System.out.println("poll.unchanged=\"" + poller.unchanged() + '"');
 			}
+			mwq.getNetworking().awaitCancel(Math.max(0, interval - elapsed / 1000000));
+		}
+	}
+
+	// each line is its own request, run concurrently and reported in order
+	private static void batch(MwQuery mwq, Options options, Options.Credentials credentials, Map<String, String> vars,
+			Map<String, String> found) throws IOException, OptionException, InterruptedException {
+		if (options.load > 0) {
+			throw new RuntimeException("--load repeats a single request or a --scenario, not a --batch");
+		}
+		List<RequestSpec> specs = new ArrayList<RequestSpec>();
+		for (String line : Scenario.lines(new File(options.batch))) {
+			RequestSpec spec = Options.parse(Scenario.substitute(line, vars)).spec(credentials);
+			if (spec == null) throw new RuntimeException("batch line has no --url: " + line);
+			specs.add(spec);
+		}
 
-			case "HEAD": {
+		List<String> urls = new ArrayList<String>();
+		for (RequestSpec spec : specs) urls.add(spec.getUrl());
+		warmup(mwq, options, urls);
 
-				try {
-					result = net.head(url, _headers);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				break;
+		new LoadRunner(options.concurrency).batch(mwq, specs, new LoadRunner.Listener() {
+			@Override
+			public void completed(int index, QueryResult result) {
+				for (int i = 0; i < result.size(); i++) found.put(index + "." + result.name(i), result.value(i));
+				print(index + ".", result, options);
 			}
+
+			@Override
+			public void failed(int index, Exception x) {
+				System.out.println(index + ".error=\"" + x + '"');
 			}
-		} catch (IOException x) {
-			x.printStackTrace();
-			return;
-		}
+		});
+	}
 
-		// process Result
+	// the steps run in order, values from one are available to the next as ${name}
+	private static void scenario(MwQuery mwq, Options options, Options.Credentials credentials, Map<String, String> vars,
+			Map<String, String> found) throws IOException, OptionException, InterruptedException {
+		Scenario scenario = Scenario.read(new File(options.scenario), credentials);
+		warmup(mwq, options, scenario.urls);
 
-		if (dump) {
-			System.out.println(result);
+		if (options.load > 0) {
+			new LoadRunner(options.concurrency).load(options.load, () -> scenario.run(mwq, new HashMap<String, String>(vars))).print(System.out);
+			return;
 		}
 
-		// check for flatten option for json and if requested, output flattened set of
-		// data
-		if (flatten) {
-			result.walk();
+		List<QueryResult> results = new ArrayList<QueryResult>(scenario.size());
+		IOException cutOff = null;
+		try {
+			scenario.run(mwq, vars, results);
+		} catch (IOException x) {
+			// past the deadline, report the steps that were done
+			if (!mwq.getNetworking().isCancelled()) throw x;
+			cutOff = x;
 		}
-
-		MediaType resultType = result.getContentType();
-		if (resultType == null) {
-			throw new RuntimeException("Content-Type header was empty on the response?");
+		for (int i = 0; i < results.size(); i++) {
+			QueryResult r = results.get(i);
+			for (int j = 0; j < r.size(); j++) found.put(r.name(j), r.value(j));
+			print(i + ".", r, options);
+		}
+		if (cutOff != null) {
+			System.out.println(results.size() + ".error=\"" + cutOff + '"');
 		}
+	}
 
-		if (resultType.subtype().contentEquals("json")) {
-			// now do json queries or bail if none required
-			Collection<String> queries = parser.getOptionValues(queryOption);
-			if (queries.size() == 0) {
-				return;
-			}
+	// resolve and connect to the hosts ahead of the first request
+	private static void warmup(MwQuery mwq, Options options, Collection<String> urls) throws InterruptedException {
+		if (!options.warmup) {
+			return;
+		}
+		Networking net = mwq.getNetworking();
+		// no more than the pool will keep
+		int perHost = Math.max(1, Math.min(options.concurrency, options.maxIdleConnections > 0 ? options.maxIdleConnections : 5));
+		long start = System.nanoTime();
+		int opened = net.warmup(urls, perHost);
+		if (options.time) {
+			// setup.ms is the DNS, connect and TLS time the first requests no longer pay
+			System.out.println(String.format("warmup.ms=\"%.3f\"", (System.nanoTime() - start) / 1e6));
+			System.out.println("warmup.connections=\"" + opened + '"');
+			System.out.println(String.format("warmup.setup.ms=\"%.3f\"", net.getConnectionStats().setupNanos() / 1e6));
+		}
+	}
 
-			// if queries, assume json is in the result.data
-			Object document = Configuration.defaultConfiguration().jsonProvider().parse(result.data);
-
-			iter = queries.iterator();
-			while (iter.hasNext()) {
-				String item = iter.next();
-				if (!item.contains("="))
-					throw new RuntimeException("a query is specified as name=<some jsonpath>");
-
-				String[] items = item.split("=");
-				String token = items[0].trim();
-				String query = items[1].trim();
-
-				Object res = JsonPath.read(document, query);
-				switch (res.getClass().getSimpleName()) {
-					case "JSONArray": {
-						JSONArray array = (JSONArray) res;
-	
-						int sz = array.size();
-						if (sz == 1) {
-							System.out.println(String.format("%s=\"%s\"", token, String.valueOf(array.get(0))));
-						} else {
-							for (int i = 0; i < sz; i++) {
-								Object str = array.get(i);
-								System.out.println(
-										String.format("%s.%s=\"%s\"", token, String.valueOf(i), String.valueOf(str)));
-							}
-						}
-						break;
-					}
-					case "String": {
-						System.out.println(String.format("%s=\"%s\"", token, String.valueOf(res)));
-						break;
-					}
-	
-					default: {
-						System.out.println(String.format("%s=\"%s\"", token, String.valueOf(res)));
-					}
-				}
-			} // end if json
+	private static void print(String prefix, QueryResult result, Options options) {
+		if (options.dump) {
+			System.out.println(result.getResult());
+		}
 
-			if (resultType.subtype().contentEquals("xml")) {
-				
-				System.out.println("TODO - XML");
-			}
-			
-	       if (resultType.subtype().contentEquals("plain")) {
-				
-				System.out.println("TODO - plain, assume it is properties?");
-			}
+		result.print(System.out, prefix);
 
+		if (options.time) {
+			System.out.println(String.format("%stime.ms=\"%.3f\"", prefix, result.getElapsedNanos() / 1e6));
 		}
-
 	}
 
 	private static void help() {
@@ -398,47 +304,49 @@ public class Main {
 		System.out.println("-m --mediaType <val>       | Add appropriate header for POST and PUT media type - values are JSON or URLENCODED, default is JSON");
 		System.out.println("--strictRFC3896            | Use with URLENCODED mediaType if required to control the url encoding");
 		System.out.println("-o --oauth <path>          | enable OAuth, <path> is properties file with consumer_key, token, consumer_secret, and token_secret defined");
+		System.out.println("--oauth2 <path>            | enable OAuth 2.0, <path> is properties file with token_url, client_id, and optionally client_secret, scope, refresh_token and cache_file");
 		System.out.println("-d --data <json> or @file  | data for the rest call");
 		System.out.println("-u --url <url>             | required, the url for the REST call");
-		System.out.println("-q --query <token=query>   | query is a jsonpath expression like 'token=$.token'");
+		System.out.println("-q --query <token=query>   | query is a jsonpath expression like 'token=$.token', for XML an XPath subset like 'title=/feed/entry[1]/title', else a regex for text/plain like 'up=^status: (\\w+)', or a CSV column 'email=[email]'");
+		System.out.println("--where <filter>           | CSV rows must pass this, column=value, != ~regex < <= > or >=, can be used multiple times");
 		System.out.println("--dump                     | dump the response to stdout (useful for debugging)");
-		System.out.println("-f --flatten               | flatten the json response and output it as name=value pairs");
+		System.out.println("-f --flatten               | flatten the json, XML, CSV or text/plain (properties) response and output it as name=value pairs");
+		System.out.println("-t --time                  | output the time taken by the call as time.ms=\"...\", then the connections opened and protocol used");
 		System.out.println("-c --cookiePath <path>     | optional path to serialize cookies. If set, client is cookie-aware (for stickyness)");
 		
-		System.out.println("--logging                  | turns on body level http logging");
+		System.out.println("--logging                  | log each call as a line of JSON (id, timings, status, sizes) on stderr, written in the background");
+		System.out.println("--logSample <n>            | log one call in n");
+		System.out.println("--logErrors                | log calls that failed or got 4xx/5xx, alone or with --logSample");
+		System.out.println("--logSlow <ms>             | log calls that took at least this long, alone or with the above");
+		System.out.println("--logFile <path>           | append the log lines to this file instead");
+		System.out.println("--record <path>            | append each request and response to an archive for later replay");
+		System.out.println("--replay <path>            | answer requests from an archive made with --record, the network is not used");
+		System.out.println("--replaySpeed <factor>     | with --replay, 1 replays at the recorded timing, 10 at ten times speed. Default 0, no delay");
+		System.out.println("--protocol <val>           | h2 (HTTP/2 over TLS if the server agrees, the default), h2c (HTTP/2 cleartext, prior knowledge) or http1");
+		System.out.println("--maxIdleConnections <n>   | connections kept for reuse, default 5. With http1 make this about --concurrency");
+		System.out.println("--warmup                   | resolve and connect to the hosts before the first request, with --time reports the setup time saved");
+		System.out.println("--dnsTtl <seconds>         | keep DNS lookups this long, default 60 with --warmup, else the JVM's own caching");
+		System.out.println("--unixSocket <path>        | send the requests over this Unix domain socket, the url gives path and Host header (Java 16+)");
+		System.out.println("--cache <dir>              | keep responses on disk and answer from them as Cache-Control and ETag allow, --time reports hits. One run at a time uses it");
+		System.out.println("--cacheSize <MB>           | the most the cache keeps, least recently used first out, default 50");
+		System.out.println("--cacheTtl <seconds>       | cache responses that have no Cache-Control or Expires for this long");
+		System.out.println("--coalesce                 | identical GETs in flight at the same time (method, url, Accept, Authorization) share one call");
+		System.out.println("--coalesceHeader <name>    | a further request header that must match for calls to be shared, can be used multiple times");
+		System.out.println("--watch                    | follow a text/event-stream or NDJSON response, -q and --flatten apply to each event, reconnects with Last-Event-ID");
+		System.out.println("--maxEvents <n>            | stop watching after n events");
+		System.out.println("--poll <seconds>           | repeat the request, conditional on ETag or Last-Modified, and print only added, removed or changed values");
+		System.out.println("--vars <path>              | a file of values kept between runs: used as ${name} in the options, and the values found are added");
+		System.out.println("--trace <path>             | write spans for each call (DNS, connect, TLS, body) and parse, query, flatten and cookie steps as OTLP JSON. Sends traceparent, continues $TRACEPARENT");
+		System.out.println("--callTimeout <seconds>    | limit on each call from DNS to the end of the response body. None by default");
+		System.out.println("--deadline <seconds>       | limit on the whole run: calls still out are cancelled, what completed is printed, then deadline.exceeded and exit status 1");
+		System.out.println("--batch <path>             | file of requests, one per line written as options like these, run concurrently");
+		System.out.println("--scenario <path>          | file of steps run in order, a value found by one is available to later steps as ${name}");
+		System.out.println("--load <n>                 | run the request, or the --scenario, n times and report throughput and latency");
+		System.out.println("--concurrency <n>          | with --batch or --load, calls in flight at once. Default 1. Java 21+ uses virtual threads");
 		
 		System.out.println("-x --help                  | Show this help");
 		System.out.println("");
 
 	}
-	
-	private static Collection<String> variableSubstitution(Collection<String> headers, HashMap<String,String> results) {
-		
-		if(results == null || results.isEmpty()) return headers;
-		
-		Collection<String> retVal = new ArrayList<String>();
-		
-		Iterator<String> iter = headers.iterator();
-		while(iter.hasNext()) {
-			String header = iter.next();
-			boolean found = false;
-			for(Object key: results.keySet()) {
-				String k = String.valueOf(key);
-				if(header.contains(k)) {
-					String val = results.get(k);
-					if(val.startsWith("\"")) val = val.substring(1,val.length()-1);
-					retVal.add(header.replaceAll(k, val));
-					found = true;
-				}
-			}
-			if(!found) {
-				retVal.add(header);
-			}
-			found = false;
-			
-		}
-		
-		return retVal;
-	}
 
 }
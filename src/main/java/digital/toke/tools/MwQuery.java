@@ -0,0 +1,305 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+
+import net.minidev.json.JSONArray;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * The engine behind the command line, as a library. Holds no per-call state, so one instance (and
+ * its one Networking client) can be shared by any number of threads:
+ *
+ * <pre>
+ * MwQuery mwq = new MwQuery(Networking.builder().build());
+ * QueryResult r = mwq.execute(spec);
+ * String name = r.get("name");
+ * </pre>
+ *
+ * @author David R. Smith
+ *
+ */
+public class MwQuery {
+
+	private static final Configuration JSON_CONFIG = Configuration.defaultConfiguration();
+
+	final Networking net;
+
+	public MwQuery() {
+		this(new Networking());
+	}
+
+	public MwQuery(Networking net) {
+		this.net = net;
+	}
+
+	public Networking getNetworking() {
+		return net;
+	}
+
+	/**
+	 * Make the call and extract the requested values
+	 *
+	 * @param spec
+	 * @return
+	 * @throws IOException if the call failed
+	 */
+	public QueryResult execute(RequestSpec spec) throws IOException {
+		List<String> found = new ArrayList<String>(); // name, value, name, value...
+		QueryResult qr = execute(spec, (name, value) -> {
+			found.add(name);
+			found.add(value);
+		});
+		for (int i = 0; i < found.size(); i += 2) qr.add(found.get(i), found.get(i + 1));
+		return qr;
+	}
+
+	/**
+	 * Make the call and hand the values to the sink as they are found, on this thread. They are
+	 * not kept in the result, so with keepBody(false) a large XML, text or CSV response passes
+	 * through in bounded memory.
+	 *
+	 * @param spec
+	 * @param sink
+	 * @return the result, without values
+	 * @throws IOException if the call failed
+	 */
+	public QueryResult execute(RequestSpec spec, BiConsumer<String, String> sink) throws IOException {
+
+		// XML, text and CSV that need not be kept are extracted from as they arrive
+		Networking.BodyReader reader = null;
+		if ((spec.xml != null || spec.text != null || spec.csv != null) && !spec.keepBody) {
+			reader = new Networking.BodyReader() {
+				@Override
+				public boolean reads(MediaType type) {
+					return spec.extractor(type) != null;
+				}
+
+				@Override
+				public void read(MediaType type, Reader body) throws IOException {
+					spec.extractor(type).extract(body, sink);
+				}
+			};
+		}
+
+		try (Span span = Tracer.start(net.getTracer(), "mwquery").set("http.method", spec.method).set("http.url", spec.url)) {
+			long start = System.nanoTime();
+			Result result;
+			try {
+				result = call(spec, null, reader);
+			} catch (IOException | RuntimeException x) {
+				span.error(x);
+				throw x;
+			}
+			span.set("http.status_code", result.getCode());
+			QueryResult qr = new QueryResult(result, System.nanoTime() - start);
+			extract(spec, result, sink);
+			return qr;
+		}
+	}
+
+	/**
+	 * Follow a text/event-stream (Server-Sent Events) or NDJSON response, applying the flatten and
+	 * jsonpath queries to each event's data as it arrives. Values go to the sink named for the event,
+	 * 0.name, 1.name and so on; an event with no queries to apply gives n.data.
+	 *
+	 * When the stream ends or breaks the request is made again, after the delay the server asked for
+	 * (SSE retry) or 3 seconds, with Last-Event-ID from the last event that had an id. The delay
+	 * doubles while reconnects fail, up to a minute. A 204 ends the watch, as does any other
+	 * response that is not a stream, once its values are handed on, and so does
+	 * Networking.cancel().
+	 *
+	 * The client should have no read timeout (Networking.Builder.readTimeout(0)), as a feed can be
+	 * quiet for a long time.
+	 *
+	 * @param spec
+	 * @param maxEvents stop after this many, 0 for no limit
+	 * @param sink
+	 * @return the number of events
+	 * @throws IOException          if a response was an error
+	 * @throws InterruptedException
+	 */
+	public long watch(RequestSpec spec, long maxEvents, BiConsumer<String, String> sink) throws IOException, InterruptedException {
+		EventStream events = new EventStream(spec, maxEvents, sink);
+		long backoff = 0;
+		while (true) {
+			Headers extra = events.lastEventId == null ? null : Headers.of("Last-Event-ID", events.lastEventId);
+			long before = events.count;
+			Result result = null;
+			try {
+				result = call(spec, extra, events);
+			} catch (IOException x) {
+				// broken off, reconnect, unless it was cancelled
+				if (net.isCancelled()) {
+					return events.count;
+				}
+			}
+			if (result != null) {
+				if (result.getCode() == 204) {
+					return events.count;
+				}
+				if (!result.isSuccess()) {
+					throw new IOException("watch of " + spec.url + " failed with HTTP " + result.getCode());
+				}
+				if (result.getData() != null) {
+					// not a stream after all
+					extract(spec, result, sink);
+					return events.count;
+				}
+			}
+			if (events.done()) {
+				return events.count;
+			}
+			backoff = events.count > before ? events.retryMillis : Math.min(Math.max(backoff * 2, events.retryMillis), 60000);
+			if (net.awaitCancel(backoff)) {
+				return events.count;
+			}
+		}
+	}
+
+	// the flatten and queries for a response that was not streamed
+	static void extract(RequestSpec spec, Result result, BiConsumer<String, String> sink) throws IOException {
+		BodyExtractor extractor = "HEAD".equals(spec.method) ? null : spec.extractor(result.getContentType());
+		if (extractor != null) {
+			// null data means it was streamed
+			if (result.getData() != null) {
+				try (Span span = Tracer.child("extract").set("content_type", String.valueOf(result.getContentType()))) {
+					extractor.extract(new StringReader(result.getData()), sink);
+				}
+			}
+		} else {
+			// check for flatten option for json and if requested, collect flattened set of data
+			if (spec.flatten) {
+				try (Span span = Tracer.child("flatten")) {
+					result.flatten(sink);
+				}
+			}
+
+			if (!spec.queries.isEmpty()) {
+				query(spec, result, sink);
+			}
+		}
+	}
+
+	/**
+	 * Make the call. With no extra headers and no reader it goes through the Networking get, post,
+	 * put and head methods, as it always has
+	 */
+	Result call(RequestSpec spec, Headers extra, Networking.BodyReader reader) throws IOException {
+
+		// parameters found in the url are collected here, as we need this analysis for
+		// OAuth. The query is already encoded in the url so decode it before signing
+		QueryParams parameters = spec.oauth == null ? null : QueryParams.parse(spec.urlObj.getQuery(), true);
+
+		String data = spec.data;
+		if (data != null && Networking.URLENCODED.equals(spec.mediaType)) {
+			// assume it is name=value&name=value params. Collect and escape as required
+			// NOTE we are not yet handling multi-part mime encoded params!!!
+			QueryParams dataParams = QueryParams.parse(data);
+			if (parameters != null) parameters.addAll(dataParams);
+
+			// strictRFC3896 for OAuth compliance, else more typical encoding
+			data = dataParams.encode(spec.strictRFC3896);
+		}
+
+		Headers headers = spec.headers;
+		if (spec.oauth != null) {
+			headers = headers.newBuilder().set("Authorization", spec.oauth.sign(spec.method, spec.baseUrl, parameters)).build();
+		}
+		if (spec.oauth2 != null) {
+			headers = headers.newBuilder().set("Authorization", spec.oauth2.getHeader()).build();
+		}
+		if (extra != null) {
+			Headers.Builder b = headers.newBuilder();
+			for (int i = 0; i < extra.size(); i++) b.set(extra.name(i), extra.value(i));
+			headers = b.build();
+		}
+
+		return reader == null && extra == null ? call(spec, headers, data) : stream(spec, headers, data, reader);
+	}
+
+	private Result stream(RequestSpec spec, Headers headers, String data, Networking.BodyReader reader) throws IOException {
+		Request.Builder request = new Request.Builder().url(spec.url).headers(headers);
+		switch (spec.method) {
+		case "POST":
+			request.post(RequestBody.create(spec.mediaType, data == null ? "" : data));
+			break;
+		case "PUT":
+			request.put(RequestBody.create(spec.mediaType, data == null ? "" : data));
+			break;
+		case "HEAD":
+			request.head();
+			break;
+		default:
+		}
+		return net.execute(request.build(), reader);
+	}
+
+	private Result call(RequestSpec spec, Headers headers, String data) throws IOException {
+		switch (spec.method) {
+		case "POST":
+			return net.post(spec.mediaType, spec.url, headers, data == null ? "" : data);
+		case "PUT":
+			return net.put(spec.mediaType, spec.url, headers, data == null ? "" : data);
+		case "HEAD":
+			return net.head(spec.url, headers);
+		default:
+			return net.get(spec.url, headers);
+		}
+	}
+
+	static void query(RequestSpec spec, Result result, BiConsumer<String, String> sink) {
+		MediaType resultType = result.getContentType();
+		if (resultType == null) {
+			throw new RuntimeException("Content-Type header was empty on the response?");
+		}
+		if (!resultType.subtype().contentEquals("json")) {
+			return;
+		}
+
+		// if queries, assume json is in the result.data
+		Object document;
+		try (Span span = Tracer.child("parse")) {
+			document = JSON_CONFIG.jsonProvider().parse(result.getData());
+		}
+
+		for (int q = 0; q < spec.queries.size(); q++) {
+			String token = spec.queryNames.get(q);
+			JsonPath path = spec.queries.get(q);
+			Object res;
+			Object event = FlightEvents.query(path.getPath());
+			try (Span span = Tracer.child("jsonpath").set("query", path.getPath())) {
+				res = path.read(document, JSON_CONFIG);
+			}
+			FlightEvents.queryEnd(event);
+			if (res instanceof JSONArray) {
+				JSONArray array = (JSONArray) res;
+				int sz = array.size();
+				if (sz == 1) {
+					sink.accept(token, String.valueOf(array.get(0)));
+				} else {
+					for (int i = 0; i < sz; i++) {
+						sink.accept(token + "." + i, String.valueOf(array.get(i)));
+					}
+				}
+			} else {
+				sink.accept(token, String.valueOf(res));
+			}
+		}
+	}
+
+}
@@ -6,22 +6,42 @@ package digital.toke.tools;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.Proxy;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.CookieJar;
+import okhttp3.EventListener;
 import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.logging.HttpLoggingInterceptor;
-import okhttp3.logging.HttpLoggingInterceptor.Level;
 
 /**
  * Our networking functions. Cookies will be serialized and re-applied in requests if cookiePath is non-null. 
@@ -40,23 +60,207 @@ public class Networking {
 	protected final OkHttpClient client;
 	protected MWQCookieJar cookieJar;
 	protected File cookiePath;
+	protected final ConnectionStats connectionStats = new ConnectionStats();
+	protected CachingDns dns; // can be null
+	protected ResponseCache cache; // can be null
+	protected Coalescer<String, Result> coalescer; // can be null
+	protected AsyncHttpLogger logger; // can be null
+	protected Tracer tracer; // can be null
+	protected List<String> coalesceHeaders; // with the method and url, the key for sharing a call
+	protected boolean replaying; // answered from an archive, never the network
+	private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+	private final CountDownLatch cancelled = new CountDownLatch(1);
 
 	public Networking() {
-		cookieJar = new MWQCookieJar();
-		client = new OkHttpClient().newBuilder().cookieJar(cookieJar).build();
-		
+		this(builder());
 	}
 	
 	public Networking(boolean loggingOn) {
+		this(builder().logging(loggingOn));
+	}
+	
+	protected Networking(Builder b) {
 		cookieJar = new MWQCookieJar();
-		if(loggingOn) {
-			HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-			logging.setLevel(Level.BASIC);
-			client = new OkHttpClient().newBuilder().cookieJar(cookieJar).addInterceptor(logging).build();
-		}else {
-			client = new OkHttpClient().newBuilder().cookieJar(cookieJar).build();
+		// a shared client keeps its connection pool and dispatcher, the cookie jar is ours alone
+		List<EventListener> listeners = new ArrayList<EventListener>();
+		listeners.add(connectionStats);
+		if(b.tracer != null) {
+			tracer = b.tracer;
+			listeners.add(new TracingListener(tracer));
+		}
+		if(FlightEvents.supported()) {
+			listeners.add(new FlightListener());
+		}
+		OkHttpClient.Builder clientBuilder = (b.client != null ? b.client : new OkHttpClient()).newBuilder().cookieJar(cookieJar)
+				.eventListener(CompositeEventListener.of(listeners));
+		for(EventListener l: listeners) {
+			if(l instanceof Interceptor) {
+				clientBuilder.addNetworkInterceptor((Interceptor) l);
+			}
+		}
+		if(b.protocols != null) {
+			clientBuilder.protocols(b.protocols);
+		}
+		if(b.unixSocket != null) {
+			// any host resolves and every connection goes to the socket file
+			clientBuilder.socketFactory(new UnixDomainSocketFactory(b.unixSocket))
+					.dns(hostname -> Collections.singletonList(InetAddress.getByAddress(hostname, new byte[] {127, 0, 0, 1})))
+					.proxy(Proxy.NO_PROXY);
+		} else if(b.dnsTtlSeconds > 0) {
+			dns = new CachingDns(b.dnsTtlSeconds, TimeUnit.SECONDS);
+			clientBuilder.dns(dns);
+		}
+		if(b.readTimeoutMillis >= 0) {
+			clientBuilder.readTimeout(b.readTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		if(b.callTimeoutMillis > 0) {
+			clientBuilder.callTimeout(b.callTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		if(b.maxIdleConnections > 0) {
+			clientBuilder.connectionPool(new ConnectionPool(b.maxIdleConnections, 5, TimeUnit.MINUTES));
+		}
+		if(b.logger != null) {
+			logger = b.logger;
+		} else if(b.loggingOn) {
+			logger = AsyncHttpLogger.builder().build(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+		}
+		if(logger != null) {
+			clientBuilder.addInterceptor(logger);
+		}
+		if(b.coalesceHeaders != null) {
+			coalescer = new Coalescer<String, Result>();
+			coalesceHeaders = new ArrayList<String>(b.coalesceHeaders);
+		}
+		if(b.cache != null) {
+			cache = b.cache;
+			clientBuilder.cache(cache.cache).addInterceptor(cache.counter());
+			if(cache.ttlSeconds > 0) {
+				clientBuilder.addNetworkInterceptor(cache.forcedTtl());
+			}
+		}
+		for(Interceptor i: b.interceptors) {
+			clientBuilder.addInterceptor(i);
+		}
+		if(b.replay != null) {
+			// last, so it stands in for the network
+			clientBuilder.addInterceptor(new ReplayInterceptor(b.replay, b.replaySpeed, cookieJar));
+			replaying = true;
+		}
+		client = clientBuilder.build();
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Resolve each distinct origin (scheme, host and port) among the urls and open pooled
+	 * connections to it, TLS handshake included, so the first real requests do not wait for that.
+	 * A HEAD request to the origin root does the work; its response is ignored, as is an origin
+	 * that cannot be reached (the real request will report that).
+	 * 
+	 * Where the first connection turns out to be HTTP/1.1, more are opened concurrently up to
+	 * connectionsPerHost, as each call in flight needs its own. HTTP/2 multiplexes on one.
+	 * 
+	 * Nothing is done when replaying, which never uses the network. The warm-up calls are cancelled
+	 * along with the rest by cancel(), and none are made after it.
+	 * 
+	 * @param urls
+	 * @param connectionsPerHost
+	 * @return the number of connections opened
+	 * @throws InterruptedException
+	 */
+	public int warmup(Collection<String> urls, int connectionsPerHost) throws InterruptedException {
+		if(replaying) {
+			return 0;
 		}
+		Set<String> origins = new LinkedHashSet<String>();
+		for(String url: urls) {
+			HttpUrl u = url == null ? null : HttpUrl.parse(url);
+			if(u != null) origins.add(u.scheme() + "://" + u.host() + ":" + u.port() + "/");
+		}
+		
+		// same pool, dns and listener, but no recording or logging of the warm-up calls, and their
+		// cookies do not reach the jar
+		OkHttpClient.Builder b = client.newBuilder().cookieJar(CookieJar.NO_COOKIES);
+		b.interceptors().clear();
+		OkHttpClient bare = b.build();
 		
+		int before = connectionStats.opened();
+		ExecutorService exec = RequestExecutors.newExecutor(Math.max(1, connectionsPerHost));
+		try {
+			for(String origin: origins) {
+				if(isCancelled()) break;
+				Protocol protocol = preconnect(bare, origin);
+				if(protocol != Protocol.HTTP_1_1 || connectionsPerHost < 2) continue;
+				CountDownLatch done = new CountDownLatch(connectionsPerHost);
+				for(int i = 0; i < connectionsPerHost; i++) {
+					exec.execute(() -> {
+						try {
+							preconnect(bare, origin);
+						} finally {
+							done.countDown();
+						}
+					});
+				}
+				done.await();
+			}
+		} finally {
+			exec.shutdownNow();
+		}
+		return connectionStats.opened() - before;
+	}
+	
+	// the protocol of the connection used, null if the origin could not be reached
+	private Protocol preconnect(OkHttpClient client, String origin) {
+		Request request = new Request.Builder().head().url(origin).build();
+		Call call = client.newCall(request);
+		inFlight.add(call);
+		if(isCancelled()) {
+			call.cancel();
+		}
+		try (Response response = call.execute()) {
+			return response.protocol();
+		} catch (IOException x) {
+			return null;
+		} finally {
+			inFlight.remove(call);
+		}
+	}
+	
+	/**
+	 * @return the caching resolver, null unless a dnsTtl was given
+	 */
+	public CachingDns getDns() {
+		return dns;
+	}
+	
+	/**
+	 * @return the response cache, null unless one was given
+	 */
+	public ResponseCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * @return the coalescer, null unless coalescing was asked for
+	 */
+	public Coalescer<String, Result> getCoalescer() {
+		return coalescer;
+	}
+	
+	/**
+	 * @return the call logger, null unless logging is on
+	 */
+	public AsyncHttpLogger getLogger() {
+		return logger;
+	}
+	
+	/**
+	 * @return the tracer, null unless tracing
+	 */
+	public Tracer getTracer() {
+		return tracer;
 	}
 	
 	public boolean pingHost(String host, int port, int timeout) {
@@ -78,166 +282,192 @@ public class Networking {
 	}
 	
 	public Result get(String url, Headers requestHeaders) throws IOException {
-		lock.lock();
-		
-		if(cookiePath != null) {
-			// attempt to load cookies
-			if(cookiePath.exists()) {
-				cookieJar.readCookies(cookiePath);
-			}
-		}
-		
-		try {
-			
-			Request request = null;
-			
-			if(requestHeaders == null || requestHeaders.size() == 0) {
-				request = new Request.Builder()
-						.url(url)
-						.build();
-			}else {
-				request = new Request.Builder()
-						.url(url)
-						.headers(requestHeaders)
-						.build();
-			}
-			
-			int code; boolean success; String result; Headers responseHeaders;
-			try (Response response = client.newCall(request).execute()){
-				responseHeaders = response.headers();
-				result = response.body().string();
-				code = response.code();
-				success = response.isSuccessful();
-			}
-			
-			if(cookiePath != null) {
-				cookieJar.writeCookies(cookiePath);
-			}
-			
-			return new Result(responseHeaders, code, success, result);
-			
-		} finally {
-			lock.unlock();
+		Request.Builder request = new Request.Builder().url(url);
+		if(requestHeaders != null && requestHeaders.size() > 0) {
+			request.headers(requestHeaders);
 		}
+		return execute(request.build());
 	}
 	
+	/**
+	 * The Result data is the response headers as name="value" lines
+	 */
 	public Result head(String url, Headers headers) throws IOException {
-		lock.lock();
-		
-		if(cookiePath != null) {
-			// attempt to load cookies
-			if(cookiePath.exists()) {
-				cookieJar.readCookies(cookiePath);
-			}
-		}
-		
-		try {
-			
-			Request request = null;
-			
-			if(headers == null || headers.size() == 0) {
-				request = new Request.Builder()
-						.head()
-						.url(url)
-						.build();
-			}else {
-				request = new Request.Builder()
-						.head()
-						.url(url)
-						.headers(headers)
-						.build();
-			}
-			
-			int code; boolean success; Headers responseHeaders;
-			StringBuffer buf = new StringBuffer();
-			try (Response response = client.newCall(request).execute()){
-				
-				 code = response.code();
-				 success = response.isSuccessful();
-				
-				responseHeaders = response.headers();
-				Iterator<String> iter = responseHeaders.names().iterator();
-				while(iter.hasNext()) {
-					String name = iter.next();
-					String value = response.header(name);
-					buf.append(name);
-					buf.append("=");
-					buf.append("\"");
-					buf.append(value);
-					buf.append("\"");
-					buf.append("\n");
-				}
-			
-			}
-			
-			if(cookiePath != null) {
-				cookieJar.writeCookies(cookiePath);
-			}
-			
-			return new Result(responseHeaders, code, success, buf.toString());
-			
-		} finally {
-			lock.unlock();
+		Request.Builder request = new Request.Builder().head().url(url);
+		if(headers != null && headers.size() > 0) {
+			request.headers(headers);
 		}
+		return execute(request.build());
 	}
 	
 	
 	public Result post(MediaType type, String url, Headers headers, String json) throws IOException {
-		lock.lock();
-		
-		if(cookiePath != null) {
-			// attempt to load cookies
-			if(cookiePath.exists()) {
-				cookieJar.readCookies(cookiePath);
-			}
+		RequestBody body = RequestBody.create(type, json);
+		Request request = new Request.Builder()
+				.url(url)
+				.post(body)
+				.headers(headers)
+				.build();
+		return execute(request);
+	}
+	
+	public Result put(MediaType type, String url, Headers headers, String json) throws IOException {
+		RequestBody body = RequestBody.create(type, json);
+		Request request = new Request.Builder()
+				.url(url)
+				.put(body)
+				.headers(headers)
+				.build();
+		return execute(request);
+	}
+	
+	/**
+	 * Make the call. The lock only guards the round trip through the cookie file, without one
+	 * calls on a shared instance run concurrently.
+	 * 
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	protected Result execute(Request request) throws IOException {
+		return execute(request, null);
+	}
+	
+	/**
+	 * As execute(request), but a body the reader accepts is handed to it as it arrives and is not
+	 * kept, the Result's data is then null.
+	 * 
+	 * @param request
+	 * @param reader can be null
+	 * @return
+	 * @throws IOException
+	 */
+	protected Result execute(Request request, BodyReader reader) throws IOException {
+		if(coalescer != null && reader == null && (request.method().equals("GET") || request.method().equals("HEAD"))) {
+			// each caller gets a Result of its own, as flattening one is not thread-safe
+			return coalescer.execute(coalesceKey(request), () -> send(request, null)).copy();
+		}
+		return send(request, reader);
+	}
+	
+	// the method, url and the selected headers' values
+	private String coalesceKey(Request request) {
+		StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+		for(String name: coalesceHeaders) {
+			key.append('\n').append(name).append(':').append(request.headers(name));
+		}
+		return key.toString();
+	}
+	
+	private Result send(Request request, BodyReader reader) throws IOException {
+		File cookies = cookiePath;
+		if(cookies == null) {
+			return call(request, reader);
 		}
 		
+		lock.lock();
 		try {
-			RequestBody body = RequestBody.create(type, json);
-			Request request = new Request.Builder()
-					.url(url)
-					.post(body)
-					.headers(headers)
-					.build();
-			try (Response response = client.newCall(request).execute()) {
-				if(cookiePath != null) {
-					cookieJar.writeCookies(cookiePath);
+			// attempt to load cookies
+			if(cookies.exists()) {
+				try (Span span = Tracer.child("cookies.read")) {
+					cookieJar.readCookies(cookies);
 				}
-				return new Result(response.headers(), response.code(), response.isSuccessful(), response.body().string());
 			}
+			Result result = call(request, reader);
+			try (Span span = Tracer.child("cookies.write")) {
+				cookieJar.writeCookies(cookies);
+			}
+			return result;
 		} finally {
 			lock.unlock();
 		}
 	}
 	
-	public Result put(MediaType type, String url, Headers headers, String json) throws IOException {
-		lock.lock();
-		
-		if(cookiePath != null) {
-			// attempt to load cookies
-			if(cookiePath.exists()) {
-				cookieJar.readCookies(cookiePath);
-			}
+	private Result call(Request request, BodyReader reader) throws IOException {
+		Call call = client.newCall(request);
+		inFlight.add(call);
+		// checked after adding, so a cancel() at the same moment does not miss this call
+		if(isCancelled()) {
+			call.cancel();
 		}
-		
-		try {
-			RequestBody body = RequestBody.create(type, json);
-			Request request = new Request.Builder()
-					.url(url)
-					.put(body)
-					.headers(headers)
-					.build();
-			try (Response response = client.newCall(request).execute()) {
-				if(cookiePath != null) {
-					cookieJar.writeCookies(cookiePath);
-				}
-				return new Result(response.headers(), response.code(), response.isSuccessful(), response.body().string());
+		try (Response response = call.execute()) {
+			Headers responseHeaders = response.headers();
+			if(reader != null && !"HEAD".equals(request.method()) && reader.reads(response.body().contentType())) {
+				reader.read(response.body().contentType(), response.body().charStream());
+				return new Result(responseHeaders, response.code(), response.isSuccessful(), null);
+			}
+			if(!"HEAD".equals(request.method())) {
+				return new Result(responseHeaders, response.code(), response.isSuccessful(), response.body().string());
 			}
+			
+			StringBuffer buf = new StringBuffer();
+			Iterator<String> iter = responseHeaders.names().iterator();
+			while(iter.hasNext()) {
+				String name = iter.next();
+				String value = response.header(name);
+				buf.append(name);
+				buf.append("=");
+				buf.append("\"");
+				buf.append(value);
+				buf.append("\"");
+				buf.append("\n");
+			}
+			return new Result(responseHeaders, response.code(), response.isSuccessful(), buf.toString());
 		} finally {
-			lock.unlock();
+			inFlight.remove(call);
+		}
+	}
+	
+	/**
+	 * Cancel the calls in flight and fail any made from now on, as when a run's deadline has passed.
+	 * Their callers get an IOException, "Canceled"
+	 */
+	public void cancel() {
+		cancelled.countDown();
+		for(Call call: inFlight) {
+			call.cancel();
 		}
 	}
 	
+	/**
+	 * @return true once cancel() has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled.getCount() == 0;
+	}
+	
+	/**
+	 * Wait between calls, as a watch or poll does, but no longer than until cancel()
+	 * 
+	 * @param millis
+	 * @return true if cancelled
+	 * @throws InterruptedException
+	 */
+	public boolean awaitCancel(long millis) throws InterruptedException {
+		return cancelled.await(millis, TimeUnit.MILLISECONDS);
+	}
+	
+
+	/**
+	 * Takes response bodies of some types as they arrive, rather than as a String afterwards
+	 */
+	public interface BodyReader {
+		
+		/**
+		 * @param type can be null
+		 * @return true to read bodies of this type
+		 */
+		boolean reads(MediaType type);
+		
+		void read(MediaType type, Reader body) throws IOException;
+	}
+
+	/**
+	 * Connections opened and protocols used by this instance's calls so far
+	 */
+	public ConnectionStats getConnectionStats() {
+		return connectionStats;
+	}
 
 	public File getCookiePath() {
 		return cookiePath;
@@ -246,6 +476,185 @@ public class Networking {
 	public void setCookiePath(File cookiePath) {
 		this.cookiePath = cookiePath;
 	}
+	
+	public static class Builder {
+		
+		boolean loggingOn;
+		AsyncHttpLogger logger;
+		Tracer tracer;
+		OkHttpClient client;
+		List<Protocol> protocols;
+		int maxIdleConnections;
+		long dnsTtlSeconds;
+		long readTimeoutMillis = -1;
+		long callTimeoutMillis;
+		File unixSocket;
+		ResponseCache cache;
+		List<String> coalesceHeaders;
+		List<Interceptor> interceptors = new ArrayList<Interceptor>();
+		ExchangeArchive.Reader replay;
+		double replaySpeed;
+		
+		/**
+		 * Log every call as a line of JSON on stderr
+		 */
+		public Builder logging(boolean loggingOn) {
+			this.loggingOn = loggingOn;
+			return this;
+		}
+		
+		/**
+		 * Log calls with this logger, for sampling or another destination
+		 */
+		public Builder logging(AsyncHttpLogger logger) {
+			this.logger = logger;
+			return this;
+		}
+		
+		/**
+		 * Build on this client, sharing its connection pool and threads
+		 */
+		public Builder client(OkHttpClient client) {
+			this.client = client;
+			return this;
+		}
+		
+		/**
+		 * Select the protocols offered:
+		 * 
+		 * <ul>
+		 * <li>h2 - HTTP/2 over TLS where the server agrees to it (ALPN), else HTTP/1.1. OkHttp's default</li>
+		 * <li>h2c - HTTP/2 in cleartext with prior knowledge, for plain http internal endpoints that speak it</li>
+		 * <li>http1 - HTTP/1.1 only</li>
+		 * </ul>
+		 * 
+		 * Over HTTP/2 concurrent calls to one host are multiplexed on one connection.
+		 */
+		public Builder protocol(String name) {
+			switch(name) {
+			case "h2":
+				protocols = Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1);
+				break;
+			case "h2c":
+				protocols = Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE);
+				break;
+			case "http1":
+				protocols = Collections.singletonList(Protocol.HTTP_1_1);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown protocol, expected h2, h2c or http1: " + name);
+			}
+			return this;
+		}
+		
+		/**
+		 * Idle connections kept for reuse, OkHttp keeps 5 by default. With HTTP/1.1 a concurrent
+		 * batch needs about one per call in flight or it keeps reconnecting
+		 */
+		public Builder maxIdleConnections(int maxIdleConnections) {
+			this.maxIdleConnections = maxIdleConnections;
+			return this;
+		}
+		
+		/**
+		 * How long a read may wait for data, 0 for no limit as a watch needs. OkHttp's default is 10
+		 * seconds
+		 */
+		public Builder readTimeout(long millis) {
+			this.readTimeoutMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * How long a call may take in all, from DNS through to the end of the response body. None by
+		 * default, a call that keeps getting data is only limited by this
+		 */
+		public Builder callTimeout(long millis) {
+			this.callTimeoutMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * Cache DNS lookups for this long, so new connections to a host already seen skip them
+		 */
+		public Builder dnsTtl(long seconds) {
+			this.dnsTtlSeconds = seconds;
+			return this;
+		}
+		
+		/**
+		 * Send every request over the Unix domain socket at this path, e.g. to a sidecar on
+		 * /run/svc.sock. The url's host and port are then only what goes in the Host header.
+		 * Needs Java 16 or later
+		 */
+		public Builder unixSocket(File path) {
+			this.unixSocket = path;
+			return this;
+		}
+		
+		/**
+		 * Keep responses in this on-disk cache and answer from it where their headers allow
+		 */
+		public Builder cache(ResponseCache cache) {
+			this.cache = cache;
+			return this;
+		}
+		
+		/**
+		 * Concurrent identical GET and HEAD calls share one network call and its Result. Calls are
+		 * identical when the method, url and the values of these request headers match; Accept and
+		 * Authorization are always among them, so different credentials never share a response
+		 */
+		public Builder coalesce(Collection<String> keyHeaders) {
+			Set<String> names = new LinkedHashSet<String>(Arrays.asList("Accept", "Authorization"));
+			for(String name: keyHeaders) {
+				boolean seen = false;
+				for(String n: names) seen |= n.equalsIgnoreCase(name);
+				if(!seen) names.add(name);
+			}
+			this.coalesceHeaders = new ArrayList<String>(names);
+			return this;
+		}
+		
+		/**
+		 * Record spans for the calls in this trace, and send traceparent headers
+		 */
+		public Builder trace(Tracer tracer) {
+			this.tracer = tracer;
+			return this;
+		}
+		
+		/**
+		 * Add an application interceptor
+		 */
+		public Builder addInterceptor(Interceptor interceptor) {
+			interceptors.add(interceptor);
+			return this;
+		}
+		
+		/**
+		 * Append each exchange to the archive
+		 */
+		public Builder record(File archive) {
+			return addInterceptor(new RecordingInterceptor(archive));
+		}
+		
+		/**
+		 * Serve responses from the archive instead of the network.
+		 * 
+		 * @param archive
+		 * @param speed 0 to respond immediately, 1 for the recorded timing, 10 for ten times faster, etc.
+		 */
+		public Builder replay(ExchangeArchive.Reader archive, double speed) {
+			this.replay = archive;
+			this.replaySpeed = speed;
+			return this;
+		}
+		
+		public Networking build() {
+			return new Networking(this);
+		}
+	}
 
 }
 
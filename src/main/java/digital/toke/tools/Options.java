@@ -0,0 +1,452 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import digital.toke.tools.CmdLineParser.OptionException;
+import digital.toke.tools.oauth2.OAuth2TokenManager;
+import digital.toke.tools.twitter.OAuthSigner;
+
+/**
+ * The command line options, read once on parse (CmdLineParser hands each value out only once).
+ * Batch and scenario lines are parsed with these too, so a line reads just like a command line.
+ *
+ * @author David R. Smith
+ *
+ */
+final class Options {
+
+	final boolean help;
+	final Collection<String> headers;
+	final String mediaType;
+	final boolean strictRFC3896;
+	final String oauth;
+	final String oauth2;
+	final String method;
+	final String data;
+	final String url;
+	final Collection<String> queries;
+	final boolean dump;
+	final boolean logging;
+	final int logSample;
+	final boolean logErrors;
+	final int logSlow;
+	final String logFile;
+	final boolean flatten;
+	final boolean time;
+	final String cookiePath;
+	final String record;
+	final String replay;
+	final double replaySpeed;
+	final String batch;
+	final String scenario;
+	final int load;
+	final int concurrency;
+	final String protocol;
+	final int maxIdleConnections;
+	final boolean warmup;
+	final int dnsTtl;
+	final String unixSocket;
+	final Collection<String> where;
+	final boolean watch;
+	final long maxEvents;
+	final double poll;
+	final String cache;
+	final int cacheSize;
+	final int cacheTtl;
+	final boolean coalesce;
+	final Collection<String> coalesceHeaders;
+	final String vars;
+	final String trace;
+	final double callTimeout;
+	final double deadline;
+
+	Options(String[] args) throws OptionException {
+		CmdLineParser parser = new CmdLineParser();
+		CmdLineParser.Option<Boolean> helpOption = parser.addBooleanOption('x', "help");
+
+		// can be used multiple times
+		CmdLineParser.Option<String> headerOption = parser.addStringOption('h', "header");
+
+		CmdLineParser.Option<String> mediaTypeOption = parser.addStringOption('m', "mediaType");
+
+		// causes URL-encoding to be done in a way that OAuth likes
+		CmdLineParser.Option<Boolean> strictRFC3896Option = parser.addBooleanOption("strictRFC3896");
+
+		// pass in location of OAuth configuration file.
+		CmdLineParser.Option<String> oauthOption = parser.addStringOption('o', "oauth");
+
+		// pass in location of OAuth 2.0 configuration file, a bearer token is obtained (or reused) for the call
+		CmdLineParser.Option<String> oauth2Option = parser.addStringOption("oauth2");
+
+		// default is GET
+		CmdLineParser.Option<String> reqOption = parser.addStringOption('r', "request");
+
+		// use @file in that case of a file
+		CmdLineParser.Option<String> dataOption = parser.addStringOption('d', "data");
+
+		CmdLineParser.Option<String> urlOption = parser.addStringOption('u', "url");
+
+		// can be used multiple times, these are the queries to extract results from out
+		// of the response
+		CmdLineParser.Option<String> queryOption = parser.addStringOption('q', "query");
+
+		// can be used multiple times, CSV rows must pass all of these
+		CmdLineParser.Option<String> whereOption = parser.addStringOption("where");
+
+		CmdLineParser.Option<Boolean> dumpOption = parser.addBooleanOption("dump");
+
+		CmdLineParser.Option<Boolean> loggingOption = parser.addBooleanOption("logging");
+		// which calls to log, and where
+		CmdLineParser.Option<Integer> logSampleOption = parser.addIntegerOption("logSample");
+		CmdLineParser.Option<Boolean> logErrorsOption = parser.addBooleanOption("logErrors");
+		CmdLineParser.Option<Integer> logSlowOption = parser.addIntegerOption("logSlow");
+		CmdLineParser.Option<String> logFileOption = parser.addStringOption("logFile");
+
+		CmdLineParser.Option<Boolean> flattenOption = parser.addBooleanOption('f', "flatten");
+		CmdLineParser.Option<Boolean> timeOption = parser.addBooleanOption('t', "time");
+
+		/**
+		 * If set, attempt will be made to serialize cookies, allows for sticky sessions
+		 */
+		CmdLineParser.Option<String> cookiePathOption = parser.addStringOption('c', "cookiePath");
+
+		// append each exchange to an archive, or answer from one instead of the network
+		CmdLineParser.Option<String> recordOption = parser.addStringOption("record");
+		CmdLineParser.Option<String> replayOption = parser.addStringOption("replay");
+		CmdLineParser.Option<Double> replaySpeedOption = parser.addDoubleOption("replaySpeed");
+
+		// many requests: a file of independent ones, a file of dependent steps, or repeats of one
+		CmdLineParser.Option<String> batchOption = parser.addStringOption("batch");
+		CmdLineParser.Option<String> scenarioOption = parser.addStringOption("scenario");
+		CmdLineParser.Option<Integer> loadOption = parser.addIntegerOption("load");
+		CmdLineParser.Option<Integer> concurrencyOption = parser.addIntegerOption("concurrency");
+
+		// follow an event stream or NDJSON feed, reconnecting as needed
+		CmdLineParser.Option<Boolean> watchOption = parser.addBooleanOption("watch");
+		CmdLineParser.Option<Long> maxEventsOption = parser.addLongOption("maxEvents");
+
+		// ask again every so many seconds, report only what changed
+		CmdLineParser.Option<Double> pollOption = parser.addDoubleOption("poll");
+
+		// h2, h2c or http1, and the size of the connection pool
+		CmdLineParser.Option<String> protocolOption = parser.addStringOption("protocol");
+		CmdLineParser.Option<Integer> maxIdleConnectionsOption = parser.addIntegerOption("maxIdleConnections");
+
+		// connect ahead of the first request, and keep DNS lookups for a while
+		CmdLineParser.Option<Boolean> warmupOption = parser.addBooleanOption("warmup");
+		CmdLineParser.Option<Integer> dnsTtlOption = parser.addIntegerOption("dnsTtl");
+
+		// talk to a service on this machine over a Unix domain socket instead of TCP
+		CmdLineParser.Option<String> unixSocketOption = parser.addStringOption("unixSocket");
+
+		// keep responses on disk for later runs
+		CmdLineParser.Option<String> cacheOption = parser.addStringOption("cache");
+		CmdLineParser.Option<Integer> cacheSizeOption = parser.addIntegerOption("cacheSize");
+		CmdLineParser.Option<Integer> cacheTtlOption = parser.addIntegerOption("cacheTtl");
+
+		// identical GETs in flight at once share one call, the header can be used multiple times
+		CmdLineParser.Option<Boolean> coalesceOption = parser.addBooleanOption("coalesce");
+		CmdLineParser.Option<String> coalesceHeaderOption = parser.addStringOption("coalesceHeader");
+
+		// values kept between runs for ${name}
+		CmdLineParser.Option<String> varsOption = parser.addStringOption("vars");
+
+		// limits in seconds on each call, and on the whole run
+		CmdLineParser.Option<Double> callTimeoutOption = parser.addDoubleOption("callTimeout");
+		CmdLineParser.Option<Double> deadlineOption = parser.addDoubleOption("deadline");
+
+		// spans for the run, written as OTLP JSON
+		CmdLineParser.Option<String> traceOption = parser.addStringOption("trace");
+
+		parser.parse(args);
+
+		help = parser.getOptionValue(helpOption, Boolean.FALSE);
+		headers = parser.getOptionValues(headerOption);
+		oauth = parser.getOptionValue(oauthOption, null);
+		oauth2 = parser.getOptionValue(oauth2Option, null);
+		// if using oauth, the default here is URLENCODED
+		mediaType = parser.getOptionValue(mediaTypeOption, oauth == null ? "JSON" : "URLENCODED");
+		strictRFC3896 = parser.getOptionValue(strictRFC3896Option, Boolean.FALSE);
+		method = parser.getOptionValue(reqOption, "GET");
+		data = parser.getOptionValue(dataOption, null);
+		url = parser.getOptionValue(urlOption, null);
+		queries = parser.getOptionValues(queryOption);
+		where = parser.getOptionValues(whereOption);
+		dump = parser.getOptionValue(dumpOption, false);
+		logSample = parser.getOptionValue(logSampleOption, -1);
+		logErrors = parser.getOptionValue(logErrorsOption, false);
+		logSlow = parser.getOptionValue(logSlowOption, 0);
+		logFile = parser.getOptionValue(logFileOption);
+		// any of these means logging is wanted
+		logging = parser.getOptionValue(loggingOption, false) || logSample >= 0 || logErrors || logSlow > 0 || logFile != null;
+		flatten = parser.getOptionValue(flattenOption, false);
+		time = parser.getOptionValue(timeOption, false);
+		cookiePath = parser.getOptionValue(cookiePathOption);
+		record = parser.getOptionValue(recordOption);
+		replay = parser.getOptionValue(replayOption);
+		replaySpeed = parser.getOptionValue(replaySpeedOption, 0d);
+		batch = parser.getOptionValue(batchOption);
+		scenario = parser.getOptionValue(scenarioOption);
+		load = parser.getOptionValue(loadOption, 0);
+		concurrency = parser.getOptionValue(concurrencyOption, 1);
+		watch = parser.getOptionValue(watchOption, false);
+		maxEvents = parser.getOptionValue(maxEventsOption, 0L);
+		poll = parser.getOptionValue(pollOption, 0d);
+		protocol = parser.getOptionValue(protocolOption);
+		maxIdleConnections = parser.getOptionValue(maxIdleConnectionsOption, 0);
+		warmup = parser.getOptionValue(warmupOption, false);
+		// warm-up resolves each host once, hold on to that for the run
+		dnsTtl = parser.getOptionValue(dnsTtlOption, warmup ? 60 : 0);
+		unixSocket = parser.getOptionValue(unixSocketOption);
+		cache = parser.getOptionValue(cacheOption);
+		cacheSize = parser.getOptionValue(cacheSizeOption, 50);
+		cacheTtl = parser.getOptionValue(cacheTtlOption, 0);
+		coalesceHeaders = parser.getOptionValues(coalesceHeaderOption);
+		coalesce = parser.getOptionValue(coalesceOption, false) || !coalesceHeaders.isEmpty();
+		vars = parser.getOptionValue(varsOption);
+		trace = parser.getOptionValue(traceOption);
+		callTimeout = parser.getOptionValue(callTimeoutOption, 0d);
+		deadline = parser.getOptionValue(deadlineOption, 0d);
+	}
+
+	/**
+	 * Parse a batch or scenario line
+	 */
+	static Options parse(String line) throws OptionException {
+		List<String> tokens = tokenize(line);
+		return new Options(tokens.toArray(new String[tokens.size()]));
+	}
+
+	/**
+	 * The client for these options
+	 */
+	Networking networking() throws IOException {
+		Networking.Builder netBuilder = Networking.builder().maxIdleConnections(maxIdleConnections)
+				.dnsTtl(dnsTtl);
+		if (logging) {
+			Writer out = logFile == null ? new OutputStreamWriter(System.err, StandardCharsets.UTF_8)
+					: new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+			netBuilder.logging(AsyncHttpLogger.builder().every(logSample).errors(logErrors).slowerThan(logSlow).build(out));
+		}
+		if (trace != null) {
+			// a calling script can make this run part of its trace
+			netBuilder.trace(new Tracer(System.getenv("TRACEPARENT")));
+		}
+		if (callTimeout > 0) {
+			netBuilder.callTimeout((long) (callTimeout * 1000));
+		}
+		if (watch) {
+			// a feed can be quiet for a long time
+			netBuilder.readTimeout(0);
+		}
+		if (protocol != null) {
+			netBuilder.protocol(protocol);
+		}
+		if (unixSocket != null) {
+			netBuilder.unixSocket(new File(unixSocket));
+		}
+		if (coalesce) {
+			netBuilder.coalesce(coalesceHeaders);
+		}
+		if (cache != null) {
+			ResponseCache responseCache = ResponseCache.open(new File(cache), cacheSize * 1024L * 1024L, cacheTtl);
+			if (responseCache == null) {
+				System.err.println("cache " + cache + " is in use by another run, going without it");
+			}
+			netBuilder.cache(responseCache);
+		}
+		if (record != null) {
+			netBuilder.record(new File(record));
+		}
+		if (replay != null) {
+			netBuilder.replay(ExchangeArchive.open(new File(replay)), replaySpeed);
+		}
+		Networking net = netBuilder.build();
+		if (cookiePath != null)
+			net.setCookiePath(new File(cookiePath));
+		return net;
+	}
+
+	/**
+	 * The request these options describe
+	 *
+	 * @param credentials
+	 * @return the spec, or null if there is no url
+	 * @throws IOException if a data or config file could not be read
+	 */
+	RequestSpec spec(Credentials credentials) throws IOException {
+		// url is required
+		if (url == null) {
+			return null;
+		}
+
+		RequestSpec.Builder spec = RequestSpec.builder(url).method(method)
+				.strictRFC3896(strictRFC3896)
+				.flatten(flatten)
+				// XML is then read as it arrives rather than kept
+				.keepBody(dump)
+				.headers(headers)
+				.queries(queries)
+				.where(where);
+
+		switch (mediaType) {
+		case "JSON":
+			spec.mediaType(Networking.JSON);
+			break;
+		case "URLENCODED":
+			spec.mediaType(Networking.URLENCODED);
+			break;
+		}
+
+		// load if required
+		String body = data;
+		if (body != null && body.startsWith("@")) {
+			File f = new File(body.substring(1));
+			body = new String(Files.readAllBytes(f.toPath()), "UTF-8");
+		}
+		spec.data(body);
+
+		if (oauth != null) {
+			spec.oauth(credentials.oauth(oauth));
+		}
+		if (oauth2 != null) {
+			spec.oauth2(credentials.oauth2(oauth2));
+		}
+		return spec.build();
+	}
+
+	/**
+	 * Split a line into arguments the way a shell would: on whitespace, except within single or
+	 * double quotes. A backslash escapes the next char outside single quotes.
+	 */
+	static List<String> tokenize(String line) {
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder buf = new StringBuilder();
+		boolean inToken = false;
+		char quote = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quote != 0) {
+				if (c == quote) quote = 0;
+				else if (c == '\\' && quote == '"' && i + 1 < line.length()) buf.append(line.charAt(++i));
+				else buf.append(c);
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+				inToken = true;
+			} else if (c == '\\' && i + 1 < line.length()) {
+				buf.append(line.charAt(++i));
+				inToken = true;
+			} else if (Character.isWhitespace(c)) {
+				if (inToken) {
+					tokens.add(buf.toString());
+					buf.setLength(0);
+					inToken = false;
+				}
+			} else {
+				buf.append(c);
+				inToken = true;
+			}
+		}
+		if (quote != 0) throw new IllegalArgumentException("Unterminated quote: " + line);
+		if (inToken) tokens.add(buf.toString());
+		return tokens;
+	}
+
+	/**
+	 * OAuth signers and token managers by config path, so a config named on many lines is loaded
+	 * once and shared. Scenario steps are parsed on the worker threads, hence the lock
+	 */
+	static final class Credentials implements AutoCloseable {
+
+		private final Map<String, OAuthSigner> signers = new HashMap<String, OAuthSigner>();
+		private final Map<String, OAuth2TokenManager> managers = new HashMap<String, OAuth2TokenManager>();
+		private final Lock lock = new ReentrantLock();
+
+		OAuthSigner oauth(String path) throws IOException {
+			lock.lock();
+			try {
+				return signer(path);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		OAuth2TokenManager oauth2(String path) throws IOException {
+			lock.lock();
+			try {
+				return manager(path);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private OAuthSigner signer(String path) throws IOException {
+			OAuthSigner signer = signers.get(path);
+			if (signer == null) {
+				Properties props = load(path, "oauth");
+
+				// these oauth tokens are now in scope
+				String consumerKey = props.getProperty("consumer_key", null);
+				String consumerSecret = props.getProperty("consumer_secret", null);
+				String token = props.getProperty("token", null);
+				String tokenSecret = props.getProperty("token_secret", null);
+
+				if (consumerKey == null || consumerSecret == null || token == null || tokenSecret == null)
+					throw new RuntimeException("OAuth config failed, at least one required property is not set");
+
+				signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+				signers.put(path, signer);
+			}
+			return signer;
+		}
+
+		private OAuth2TokenManager manager(String path) throws IOException {
+			OAuth2TokenManager manager = managers.get(path);
+			if (manager == null) {
+				// with cache_file set, the token is reused by later invocations until it expires
+				manager = OAuth2TokenManager.fromProperties(load(path, "oauth2"));
+				managers.put(path, manager);
+			}
+			return manager;
+		}
+
+		private static Properties load(String path, String what) throws IOException {
+			File config = new File(path);
+			if (!config.exists()) {
+				throw new RuntimeException(what + " config path does not appear to exist!");
+			}
+			Properties props = new Properties();
+			try (InputStream in = new FileInputStream(config)) {
+				props.load(in);
+			}
+			return props;
+		}
+
+		@Override
+		public void close() {
+			for (OAuth2TokenManager m : managers.values()) m.close();
+		}
+	}
+
+}
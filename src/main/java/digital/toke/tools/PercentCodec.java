@@ -0,0 +1,207 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass, table driven percent-encoding per RFC 3986 (the strict form that OAuth requires).
+ * Only the unreserved set ALPHA / DIGIT / "-" / "." / "_" / "~" passes through, everything else is
+ * written as UTF-8 bytes escaped as %XX with upper case hex digits.
+ *
+ * The encode(CharSequence, StringBuilder) form appends to a caller supplied buffer so a hot loop can
+ * reuse one buffer rather than allocating per value.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class PercentCodec {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	// true at the index of each ASCII char in the unreserved set
+	private static final boolean[] UNRESERVED = new boolean[128];
+
+	// the set URLEncoder leaves alone for application/x-www-form-urlencoded, where space is '+'
+	private static final boolean[] FORM_SAFE = new boolean[128];
+
+	static {
+		for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+		for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+		for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+		UNRESERVED['-'] = true;
+		UNRESERVED['.'] = true;
+		UNRESERVED['_'] = true;
+		UNRESERVED['~'] = true;
+
+		System.arraycopy(UNRESERVED, 0, FORM_SAFE, 0, 128);
+		FORM_SAFE['~'] = false;
+		FORM_SAFE['*'] = true;
+	}
+
+	private PercentCodec() {
+	}
+
+	/**
+	 * Encode the value. If nothing requires escaping the same String instance is returned.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static String encode(String value) {
+		int len = value.length();
+		int i = 0;
+		while (i < len) {
+			char c = value.charAt(i);
+			if (c >= 0x80 || !UNRESERVED[c]) break;
+			i++;
+		}
+		if (i == len) return value;
+
+		StringBuilder buf = new StringBuilder(len + 16);
+		buf.append(value, 0, i);
+		encode(value, i, buf, UNRESERVED, false);
+		return buf.toString();
+	}
+
+	/**
+	 * Append the encoded form of value to out
+	 *
+	 * @param value
+	 * @param out
+	 * @return out, for chaining
+	 */
+	public static StringBuilder encode(CharSequence value, StringBuilder out) {
+		encode(value, 0, out, UNRESERVED, false);
+		return out;
+	}
+
+	/**
+	 * Append the application/x-www-form-urlencoded form of value to out, giving the same output as
+	 * URLEncoder.encode(value, "UTF-8")
+	 *
+	 * @param value
+	 * @param out
+	 * @return out, for chaining
+	 */
+	public static StringBuilder encodeForm(CharSequence value, StringBuilder out) {
+		encode(value, 0, out, FORM_SAFE, true);
+		return out;
+	}
+
+	private static void encode(CharSequence value, int start, StringBuilder out, boolean[] safe, boolean spaceAsPlus) {
+		int len = value.length();
+		for (int i = start; i < len; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				if (safe[c]) out.append(c);
+				else if (spaceAsPlus && c == ' ') out.append('+');
+				else escape(c, out);
+			} else if (c < 0x800) {
+				escape(0xC0 | (c >> 6), out);
+				escape(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, value.charAt(++i));
+				escape(0xF0 | (cp >> 18), out);
+				escape(0x80 | ((cp >> 12) & 0x3F), out);
+				escape(0x80 | ((cp >> 6) & 0x3F), out);
+				escape(0x80 | (cp & 0x3F), out);
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogate, URLEncoder substitutes '?' so we do the same
+				escape('?', out);
+			} else {
+				escape(0xE0 | (c >> 12), out);
+				escape(0x80 | ((c >> 6) & 0x3F), out);
+				escape(0x80 | (c & 0x3F), out);
+			}
+		}
+	}
+
+	private static void escape(int b, StringBuilder out) {
+		out.append('%');
+		out.append(HEX[(b >> 4) & 0x0F]);
+		out.append(HEX[b & 0x0F]);
+	}
+
+	/**
+	 * Strict decode, a '+' is left as is.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static String decode(String value) {
+		return decode(value, false);
+	}
+
+	/**
+	 * Decode %XX escapes as UTF-8. If plusAsSpace is true, '+' is decoded as a space (form encoding).
+	 * If there is nothing to decode the same String instance is returned.
+	 *
+	 * @param value
+	 * @param plusAsSpace
+	 * @return
+	 * @throws IllegalArgumentException on a '%' not followed by two hex digits
+	 */
+	public static String decode(String value, boolean plusAsSpace) {
+		return decode(value, plusAsSpace, false);
+	}
+
+	/**
+	 * As decode(value, plusAsSpace), but if keepMalformed is true a '%' not followed by two hex
+	 * digits is kept as the literal text it is, as browsers and servers read a stray '%' in a url
+	 *
+	 * @param value
+	 * @param plusAsSpace
+	 * @param keepMalformed
+	 * @return
+	 */
+	public static String decode(String value, boolean plusAsSpace, boolean keepMalformed) {
+		int len = value.length();
+		int i = 0;
+		while (i < len) {
+			char c = value.charAt(i);
+			if (c == '%' || (plusAsSpace && c == '+')) break;
+			i++;
+		}
+		if (i == len) return value;
+
+		// worst case a char outside the escapes takes 3 bytes
+		byte[] bytes = new byte[len * 3];
+		int n = 0;
+		for (int j = 0; j < len; j++) {
+			char c = value.charAt(j);
+			if (c == '%') {
+				if (j + 2 >= len) {
+					if (!keepMalformed) throw new IllegalArgumentException("Incomplete escape at index " + j + ": " + value);
+					bytes[n++] = '%';
+					continue;
+				}
+				int hi = Character.digit(value.charAt(j + 1), 16);
+				int lo = Character.digit(value.charAt(j + 2), 16);
+				if (hi == -1 || lo == -1) {
+					if (!keepMalformed) throw new IllegalArgumentException("Bad escape at index " + j + ": " + value);
+					bytes[n++] = '%';
+					continue;
+				}
+				bytes[n++] = (byte) ((hi << 4) | lo);
+				j += 2;
+			} else if (plusAsSpace && c == '+') {
+				bytes[n++] = ' ';
+			} else if (c < 0x80) {
+				bytes[n++] = (byte) c;
+			} else {
+				// unescaped non-ASCII, take its UTF-8 bytes as they are
+				int end = j + 1;
+				if (Character.isHighSurrogate(c) && end < len) end++;
+				byte[] raw = value.substring(j, end).getBytes(StandardCharsets.UTF_8);
+				System.arraycopy(raw, 0, bytes, n, raw.length);
+				n += raw.length;
+				j = end - 1;
+			}
+		}
+		return new String(bytes, 0, n, StandardCharsets.UTF_8);
+	}
+
+}
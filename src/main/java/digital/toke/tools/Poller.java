@@ -0,0 +1,186 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Headers;
+
+/**
+ * Asks for the same resource over and over and reports only what changed since the last time.
+ *
+ * Each request carries If-None-Match and If-Modified-Since from the last response that had an
+ * ETag or Last-Modified, so a server that supports them answers 304 and nothing is parsed. For
+ * servers that don't, the body is hashed and an identical body is not parsed either. Otherwise the
+ * flattened values and query values are compared with those of the last run.
+ *
+ * One Poller per resource; poll() is not meant to be called from more than one thread at a time.
+ *
+ * @author David R. Smith
+ *
+ */
+public class Poller {
+
+	/**
+	 * What changed between two runs. All empty when nothing did
+	 */
+	public static final class Diff {
+
+		public final Map<String, String> added;
+		public final Map<String, String> removed; // the old values
+		public final Map<String, String> changed; // the new values
+
+		Diff(Map<String, String> added, Map<String, String> removed, Map<String, String> changed) {
+			this.added = Collections.unmodifiableMap(added);
+			this.removed = Collections.unmodifiableMap(removed);
+			this.changed = Collections.unmodifiableMap(changed);
+		}
+
+		public boolean isEmpty() {
+			return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+		}
+
+		/**
+		 * added.name="value", removed.name="old value" and changed.name="new value" lines
+		 */
+		public void print(PrintStream out) {
+			print(out, "added.", added);
+			print(out, "removed.", removed);
+			print(out, "changed.", changed);
+		}
+
+		private static void print(PrintStream out, String prefix, Map<String, String> values) {
+			for (Map.Entry<String, String> e : values.entrySet()) {
+				out.println(prefix + e.getKey() + "=\"" + e.getValue() + '"');
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Diff [added=" + added + ", removed=" + removed + ", changed=" + changed + "]";
+		}
+	}
+
+	static final Diff NONE = new Diff(Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(),
+			Collections.<String, String>emptyMap());
+
+	final MwQuery mwq;
+	final RequestSpec spec;
+
+	private String etag;
+	private String lastModified;
+	private byte[] hash;
+	private Map<String, String> previous = Collections.emptyMap();
+
+	private int polls, notModified, unchanged;
+
+	public Poller(MwQuery mwq, RequestSpec spec) {
+		this.mwq = mwq;
+		this.spec = spec;
+	}
+
+	/**
+	 * One conditional request. The first poll reports every value as added
+	 *
+	 * @return what changed, never null
+	 */
+	public Diff poll() throws IOException {
+		polls++;
+		Headers.Builder conditions = new Headers.Builder();
+		if (etag != null) conditions.set("If-None-Match", etag);
+		if (lastModified != null) conditions.set("If-Modified-Since", lastModified);
+
+		// the body is always kept, it is needed for the hash
+		Result result = mwq.call(spec, conditions.build(), null);
+		if (result.getCode() == 304) {
+			notModified++;
+			return NONE;
+		}
+
+		Headers headers = result.getResponseHeaders();
+		if (result.isSuccess()) {
+			etag = headers.get("ETag");
+			lastModified = headers.get("Last-Modified");
+		}
+
+		byte[] h = hash(result.getCode(), result.getData());
+		if (Arrays.equals(h, hash)) {
+			unchanged++;
+			return NONE;
+		}
+		hash = h;
+
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		MwQuery.extract(spec, result, values::put);
+		Diff diff = diff(previous, values);
+		previous = values;
+		return diff;
+	}
+
+	static Diff diff(Map<String, String> before, Map<String, String> after) {
+		Map<String, String> added = new LinkedHashMap<String, String>();
+		Map<String, String> removed = new LinkedHashMap<String, String>();
+		Map<String, String> changed = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, String> e : after.entrySet()) {
+			String old = before.get(e.getKey());
+			if (old == null && !before.containsKey(e.getKey())) {
+				added.put(e.getKey(), e.getValue());
+			} else if (old == null ? e.getValue() != null : !old.equals(e.getValue())) {
+				changed.put(e.getKey(), e.getValue());
+			}
+		}
+		for (Map.Entry<String, String> e : before.entrySet()) {
+			if (!after.containsKey(e.getKey())) removed.put(e.getKey(), e.getValue());
+		}
+		return new Diff(added, removed, changed);
+	}
+
+	// the status is part of it, the same error body twice is still unchanged
+	private static byte[] hash(int code, String data) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update((byte) (code >> 8));
+			md.update((byte) code);
+			if (data != null) md.update(data.getBytes(StandardCharsets.UTF_8));
+			return md.digest();
+		} catch (NoSuchAlgorithmException x) {
+			throw new RuntimeException(x);
+		}
+	}
+
+	public int polls() {
+		return polls;
+	}
+
+	/**
+	 * Polls answered 304
+	 */
+	public int notModified() {
+		return notModified;
+	}
+
+	/**
+	 * Polls with a body the same as the last one
+	 */
+	public int unchanged() {
+		return unchanged;
+	}
+
+	/**
+	 * The values of the last run that was parsed
+	 */
+	public Map<String, String> values() {
+		return Collections.unmodifiableMap(previous);
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered name=value&amp;name=value parameters as found in a query string or URLENCODED body.
+ * Unlike a Set or Map, order and duplicates are preserved. Parsing is a character scan, there is
+ * no regex and a value may itself contain '='. A parameter without '=' has a null value.
+ *
+ * @author David R. Smith
+ *
+ */
+public class QueryParams {
+
+	private final List<String> names;
+	private final List<String> values;
+
+	public QueryParams() {
+		names = new ArrayList<String>();
+		values = new ArrayList<String>();
+	}
+
+	/**
+	 * Split raw data, no decoding is done
+	 *
+	 * @param query can be null
+	 * @return
+	 */
+	public static QueryParams parse(String query) {
+		return parse(query, false);
+	}
+
+	/**
+	 * Split the data. If decode is true, names and values are percent-decoded with '+' as space
+	 * (which is how the query component of a URL should be read for OAuth signing). A '%' that does
+	 * not start an escape is kept as it is, the url is sent that way all the same
+	 *
+	 * @param query can be null
+	 * @param decode
+	 * @return
+	 */
+	public static QueryParams parse(String query, boolean decode) {
+		QueryParams params = new QueryParams();
+		if (query == null || query.isEmpty()) return params;
+
+		int len = query.length();
+		int start = 0;
+		while (start <= len) {
+			int end = query.indexOf('&', start);
+			if (end == -1) end = len;
+			if (end > start) {
+				int eq = -1;
+				for (int i = start; i < end; i++) {
+					if (query.charAt(i) == '=') {
+						eq = i;
+						break;
+					}
+				}
+				String name, value;
+				if (eq == -1) {
+					name = query.substring(start, end);
+					value = null;
+				} else {
+					name = query.substring(start, eq);
+					value = query.substring(eq + 1, end);
+				}
+				if (decode) {
+					name = PercentCodec.decode(name, true, true);
+					if (value != null) value = PercentCodec.decode(value, true, true);
+				}
+				params.add(name, value);
+			}
+			start = end + 1;
+		}
+		return params;
+	}
+
+	public QueryParams add(String name, String value) {
+		names.add(name);
+		values.add(value);
+		return this;
+	}
+
+	public QueryParams addAll(QueryParams other) {
+		names.addAll(other.names);
+		values.addAll(other.values);
+		return this;
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public boolean isEmpty() {
+		return names.isEmpty();
+	}
+
+	public String name(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * @param index
+	 * @return can be null if the parameter had no '='
+	 */
+	public String value(int index) {
+		return values.get(index);
+	}
+
+	/**
+	 * @param name
+	 * @return the first value for the name, or null
+	 */
+	public String get(String name) {
+		int index = names.indexOf(name);
+		return index == -1 ? null : values.get(index);
+	}
+
+	/**
+	 * Append the encoded parameters to out. If strictRFC3896 is true the OAuth friendly percent
+	 * encoding is used, otherwise the usual form encoding.
+	 *
+	 * @param out
+	 * @param strictRFC3896
+	 * @return out, for chaining
+	 */
+	public StringBuilder encode(StringBuilder out, boolean strictRFC3896) {
+		int size = names.size();
+		for (int i = 0; i < size; i++) {
+			if (i > 0) out.append('&');
+			encode(names.get(i), out, strictRFC3896);
+			String value = values.get(i);
+			if (value != null) {
+				out.append('=');
+				encode(value, out, strictRFC3896);
+			}
+		}
+		return out;
+	}
+
+	public String encode(boolean strictRFC3896) {
+		return encode(new StringBuilder(16 * names.size()), strictRFC3896).toString();
+	}
+
+	private static void encode(String s, StringBuilder out, boolean strictRFC3896) {
+		if (strictRFC3896) PercentCodec.encode(s, out);
+		else PercentCodec.encodeForm(s, out);
+	}
+
+	/**
+	 * @return each parameter as "name=value" (or just "name")
+	 */
+	public List<String> toList() {
+		int size = names.size();
+		List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			String value = values.get(i);
+			list.add(value == null ? names.get(i) : names.get(i) + "=" + value);
+		}
+		return list;
+	}
+
+	/**
+	 * The raw (unencoded) parameters joined with '&amp;'
+	 */
+	@Override
+	public String toString() {
+		return String.join("&", toList());
+	}
+
+}
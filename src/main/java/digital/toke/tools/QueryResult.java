@@ -0,0 +1,126 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+
+/**
+ * What MwQuery.execute() returns: the response and the name/value pairs extracted from it by
+ * flattening and queries, in the order they were found.
+ *
+ * @author David R. Smith
+ *
+ */
+public class QueryResult {
+
+	final Result result;
+	final long elapsedNanos;
+	final List<String> names = new ArrayList<String>();
+	final List<String> values = new ArrayList<String>();
+
+	QueryResult(Result result, long elapsedNanos) {
+		this.result = result;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	void add(String name, String value) {
+		names.add(name);
+		values.add(value);
+	}
+
+	public Result getResult() {
+		return result;
+	}
+
+	public int getCode() {
+		return result.getCode();
+	}
+
+	public boolean isSuccess() {
+		return result.isSuccess();
+	}
+
+	public String getBody() {
+		return result.getData();
+	}
+
+	public Headers getHeaders() {
+		return result.getResponseHeaders();
+	}
+
+	/**
+	 * Can be null if there was no such header in the response
+	 */
+	public MediaType getContentType() {
+		return result.getContentType();
+	}
+
+	/**
+	 * @return time for the call itself, from sending the request until the body was read
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public String name(int index) {
+		return names.get(index);
+	}
+
+	public String value(int index) {
+		return values.get(index);
+	}
+
+	/**
+	 * @return the first value found for name, or null
+	 */
+	public String get(String name) {
+		int i = names.indexOf(name);
+		return i == -1 ? null : values.get(i);
+	}
+
+	/**
+	 * @return the values by name, where a name was found twice the last value wins
+	 */
+	public Map<String, String> asMap() {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < names.size(); i++) map.put(names.get(i), values.get(i));
+		return map;
+	}
+
+	/**
+	 * Write the values as name="value" lines, the command line output format
+	 */
+	public void print(PrintStream out) {
+		print(out, "");
+	}
+
+	/**
+	 * As print(out), each name preceded by prefix
+	 */
+	public void print(PrintStream out, String prefix) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < names.size(); i++) {
+			buf.append(prefix).append(names.get(i)).append("=\"").append(values.get(i)).append("\"\n");
+		}
+		out.print(buf);
+	}
+
+	@Override
+	public String toString() {
+		return "QueryResult [code=" + getCode() + ", elapsedNanos=" + elapsedNanos + ", values=" + asMap() + "]";
+	}
+
+}
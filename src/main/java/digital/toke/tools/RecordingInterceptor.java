@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Appends each exchange to an ExchangeArchive for later replay. The response body is handed on to
+ * the caller as it arrives, so a watched stream or a streamed extraction still sees it as it comes,
+ * and a copy is kept; the exchange is appended when the body has been read to its end or closed.
+ * The archive takes a body in one piece, so the copy is as large as the body.
+ * 
+ * @author David R. Smith
+ *
+ */
+public class RecordingInterceptor implements Interceptor {
+
+	final File archive;
+
+	public RecordingInterceptor(File archive) {
+		this.archive = archive;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		long startMillis = System.currentTimeMillis();
+		long start = System.nanoTime();
+		Response response = chain.proceed(request);
+		ResponseBody body = response.body();
+
+		ExchangeArchive.Exchange e = new ExchangeArchive.Exchange();
+		e.startMillis = startMillis;
+		e.method = request.method();
+		e.url = request.url().toString();
+		e.requestHeaders = flatten(request.headers());
+		if (request.body() != null) {
+			Buffer buf = new Buffer();
+			request.body().writeTo(buf);
+			e.requestBody = buf.readByteArray();
+		}
+		e.code = response.code();
+		e.message = response.message();
+		e.protocol = response.protocol().toString();
+		e.responseHeaders = flatten(response.headers());
+		if (body == null) {
+			e.durationNanos = System.nanoTime() - start;
+			ExchangeArchive.append(archive, e);
+			return response;
+		}
+
+		Source recording = new ForwardingSource(body.source()) {
+			final Buffer copy = new Buffer();
+			boolean appended;
+
+			@Override
+			public long read(Buffer sink, long byteCount) throws IOException {
+				long n = super.read(sink, byteCount);
+				if (n > 0) {
+					sink.copyTo(copy, sink.size() - n, n);
+				} else if (n == -1) {
+					append();
+				}
+				return n;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					// what was read, if the caller stopped short
+					append();
+				} finally {
+					super.close();
+				}
+			}
+
+			private void append() throws IOException {
+				if (appended) return;
+				appended = true;
+				e.durationNanos = System.nanoTime() - start;
+				e.responseBody = copy.readByteArray();
+				ExchangeArchive.append(archive, e);
+			}
+		};
+		return response.newBuilder()
+				.body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(recording))).build();
+	}
+
+	static String[] flatten(Headers headers) {
+		String[] list = new String[headers.size() * 2];
+		for (int i = 0; i < headers.size(); i++) {
+			list[i * 2] = headers.name(i);
+			list[i * 2 + 1] = headers.value(i);
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Answers requests from an ExchangeArchive, the network is never touched. Requests are matched on
+ * method and URL; one with no recording fails with an IOException as a network error would.
+ * 
+ * With a speed of 0 responses are immediate, otherwise each is held back for the recorded duration
+ * divided by the speed.
+ * 
+ * @author David R. Smith
+ *
+ */
+public class ReplayInterceptor implements Interceptor {
+
+	final ExchangeArchive.Reader archive;
+	final double speed;
+	final CookieJar cookieJar;
+
+	public ReplayInterceptor(ExchangeArchive.Reader archive, double speed, CookieJar cookieJar) {
+		this.archive = archive;
+		this.speed = speed;
+		this.cookieJar = cookieJar;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		long start = System.nanoTime();
+		ExchangeArchive.Exchange e = archive.next(request.method(), request.url().toString());
+		if (e == null) {
+			throw new IOException("No recorded exchange for " + request.method() + " " + request.url());
+		}
+
+		Headers headers = Headers.of(e.responseHeaders);
+		if (cookieJar != null) {
+			// normally done by the bridge interceptor, which we bypass
+			HttpUrl url = request.url();
+			List<Cookie> cookies = Cookie.parseAll(url, headers);
+			if (!cookies.isEmpty()) cookieJar.saveFromResponse(url, cookies);
+		}
+
+		if (speed > 0) {
+			long wait = (long) (e.durationNanos / speed) - (System.nanoTime() - start);
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException x) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted during replay");
+				}
+			}
+		}
+
+		String contentType = headers.get("Content-Type");
+		byte[] body = e.responseBody == null ? new byte[0] : e.responseBody;
+		long now = System.currentTimeMillis();
+		return new Response.Builder()
+				.request(request)
+				.protocol(Protocol.get(e.protocol))
+				.code(e.code)
+				.message(e.message)
+				.headers(headers)
+				.body(ResponseBody.create(contentType == null ? null : MediaType.parse(contentType), body))
+				.sentRequestAtMillis(now)
+				.receivedResponseAtMillis(now)
+				.build();
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the blocking calls made in batch, scenario and load modes.
+ *
+ * This is the Java 8 version, a bounded pool of platform threads. The multi-release jar carries a
+ * Java 21 version under META-INF/versions/21 that runs each request on its own virtual thread.
+ * Callers bound concurrency themselves, the executor just supplies threads.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class RequestExecutors {
+
+	// each platform thread reserves a stack, past this many they cost more than they give
+	static final int MAX_PLATFORM_THREADS = 512;
+
+	private RequestExecutors() {
+	}
+
+	/**
+	 * The best executor this JVM has for up to concurrency blocking calls at once
+	 */
+	public static ExecutorService newExecutor(int concurrency) {
+		return newPlatformExecutor(concurrency);
+	}
+
+	/**
+	 * A pool of at most MAX_PLATFORM_THREADS daemon threads, work beyond that queues
+	 */
+	public static ExecutorService newPlatformExecutor(int concurrency) {
+		int threads = Math.max(1, Math.min(concurrency, MAX_PLATFORM_THREADS));
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "mwquery-" + count.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), factory);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * @return "platform" or "virtual", the kind of thread newExecutor() uses
+	 */
+	public static String kind() {
+		return "platform";
+	}
+
+}
@@ -0,0 +1,372 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+
+import digital.toke.tools.oauth2.OAuth2TokenManager;
+import digital.toke.tools.twitter.OAuthSigner;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+
+/**
+ * Immutable description of one call for MwQuery: the request, how to authenticate it and what to
+ * extract from the response. Build once and execute as often as required, from any thread.
+ *
+ * <pre>
+ * RequestSpec spec = RequestSpec.builder("https://api.example.com/v1/things")
+ * 		.header("Accept: application/json")
+ * 		.query("name=$.things[0].name")
+ * 		.build();
+ * </pre>
+ *
+ * @author David R. Smith
+ *
+ */
+public final class RequestSpec {
+
+	final String method;
+	final String url;
+	final URL urlObj;
+	final String baseUrl;
+	final Headers headers;
+	final MediaType mediaType;
+	final String data;
+	final boolean strictRFC3896;
+	final OAuthSigner oauth;
+	final OAuth2TokenManager oauth2;
+	final boolean flatten;
+	final List<String> queryNames;
+	final List<JsonPath> queries;
+	final XmlExtractor xml; // null if there is nothing to extract from XML
+	final TextExtractor text; // likewise for text/plain
+	final CsvExtractor csv; // and for CSV and TSV
+	final boolean keepBody;
+
+	private RequestSpec(Builder b) {
+		method = b.method;
+		url = b.url;
+		try {
+			urlObj = new URL(url);
+		} catch (MalformedURLException x) {
+			throw new IllegalArgumentException("Bad url: " + url, x);
+		}
+		baseUrl = baseUrl(url, urlObj);
+		headers = b.headers.build();
+		mediaType = b.mediaType != null ? b.mediaType : b.oauth == null ? Networking.JSON : Networking.URLENCODED;
+		data = b.data;
+		strictRFC3896 = b.strictRFC3896;
+		oauth = b.oauth;
+		oauth2 = b.oauth2;
+		flatten = b.flatten;
+		queryNames = Collections.unmodifiableList(new ArrayList<String>(b.queryNames));
+		queries = Collections.unmodifiableList(new ArrayList<JsonPath>(b.queries));
+		xml = flatten || !b.xmlQueries.isEmpty() ? new XmlExtractor(flatten, b.xmlQueryNames, b.xmlQueries) : null;
+		text = flatten || !b.textQueries.isEmpty() ? new TextExtractor(flatten, b.textQueryNames, b.textQueries) : null;
+		csv = flatten || !b.csvColumns.isEmpty() ? new CsvExtractor(flatten, b.csvQueryNames, b.csvColumns, b.filters) : null;
+		keepBody = b.keepBody;
+	}
+
+	// protocol://host[:port]/path with no params, as OAuth signs it
+	private static String baseUrl(String url, URL urlObj) {
+		StringBuilder urlbuf = new StringBuilder();
+		urlbuf.append(urlObj.getProtocol());
+		urlbuf.append("://");
+
+		// handle explicit/implicit port value
+		int port = urlObj.getPort();
+		if (url.contains(String.valueOf(port))) {
+			// if the port is explicit in the url string, keep it explicit
+			urlbuf.append(urlObj.getAuthority());
+		} else {
+			urlbuf.append(urlObj.getHost());
+		}
+
+		urlbuf.append(urlObj.getPath());
+		return urlbuf.toString();
+	}
+
+	public static Builder builder(String url) {
+		return new Builder(url);
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public Headers getHeaders() {
+		return headers;
+	}
+
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	public boolean isFlatten() {
+		return flatten;
+	}
+
+	/**
+	 * @return the names of the jsonpath queries
+	 */
+	public List<String> getQueryNames() {
+		return queryNames;
+	}
+
+	/**
+	 * @return the names of the XML queries
+	 */
+	public List<String> getXmlQueryNames() {
+		return xml == null ? Collections.<String>emptyList() : xml.names;
+	}
+
+	/**
+	 * @return the names of the regex queries for text/plain
+	 */
+	public List<String> getTextQueryNames() {
+		return text == null ? Collections.<String>emptyList() : text.names;
+	}
+
+	/**
+	 * @return the names of the column queries for CSV
+	 */
+	public List<String> getCsvQueryNames() {
+		return csv == null ? Collections.<String>emptyList() : csv.names;
+	}
+
+	public boolean isKeepBody() {
+		return keepBody;
+	}
+
+	/**
+	 * @param type can be null
+	 * @return what extracts from a body of this type in one pass, null where that is json (or
+	 *         nothing)
+	 */
+	BodyExtractor extractor(MediaType type) {
+		if (XmlExtractor.isXml(type)) return xml;
+		if (TextExtractor.isText(type)) return text;
+		if (CsvExtractor.isCsv(type)) return csv == null ? null : csv.of(type);
+		return null;
+	}
+
+	public static class Builder {
+
+		String method = "GET";
+		String url;
+		Headers.Builder headers = new Headers.Builder();
+		MediaType mediaType;
+		String data;
+		boolean strictRFC3896;
+		OAuthSigner oauth;
+		OAuth2TokenManager oauth2;
+		boolean flatten;
+		List<String> queryNames = new ArrayList<String>();
+		List<JsonPath> queries = new ArrayList<JsonPath>();
+		List<String> xmlQueryNames = new ArrayList<String>();
+		List<XmlPath> xmlQueries = new ArrayList<XmlPath>();
+		List<String> textQueryNames = new ArrayList<String>();
+		List<Pattern> textQueries = new ArrayList<Pattern>();
+		List<String> csvQueryNames = new ArrayList<String>();
+		List<String> csvColumns = new ArrayList<String>();
+		List<CsvExtractor.Filter> filters = new ArrayList<CsvExtractor.Filter>();
+		boolean keepBody = true;
+
+		Builder(String url) {
+			if (url == null) throw new IllegalArgumentException("url is required");
+			this.url = url;
+		}
+
+		/**
+		 * GET|POST|PUT|HEAD, default is GET
+		 */
+		public Builder method(String method) {
+			switch (method) {
+			case "GET":
+			case "POST":
+			case "PUT":
+			case "HEAD":
+				this.method = method;
+				return this;
+			default:
+				throw new IllegalArgumentException("Unsupported request method: " + method);
+			}
+		}
+
+		public Builder header(String name, String value) {
+			headers.add(name, value);
+			return this;
+		}
+
+		/**
+		 * @param line as given on the command line, e.g. "Accept: application/json"
+		 */
+		public Builder header(String line) {
+			int colon = line.indexOf(':');
+			if (colon == -1) throw new IllegalArgumentException("a header is specified as name:value - " + line);
+			return header(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+		}
+
+		public Builder headers(Collection<String> lines) {
+			for (String line : lines) header(line);
+			return this;
+		}
+
+		/**
+		 * Media type of the POST or PUT body. Defaults to URLENCODED with OAuth, otherwise JSON
+		 */
+		public Builder mediaType(MediaType mediaType) {
+			this.mediaType = mediaType;
+			return this;
+		}
+
+		/**
+		 * The body for POST and PUT. For URLENCODED this is name=value&amp;name=value, escaped when sent
+		 */
+		public Builder data(String data) {
+			this.data = data;
+			return this;
+		}
+
+		public Builder strictRFC3896(boolean strictRFC3896) {
+			this.strictRFC3896 = strictRFC3896;
+			return this;
+		}
+
+		/**
+		 * Sign with OAuth 1.0a. The signer is thread-safe so one can serve every spec
+		 */
+		public Builder oauth(OAuthSigner oauth) {
+			this.oauth = oauth;
+			return this;
+		}
+
+		/**
+		 * Send a bearer token from the manager
+		 */
+		public Builder oauth2(OAuth2TokenManager oauth2) {
+			this.oauth2 = oauth2;
+			return this;
+		}
+
+		/**
+		 * Flatten a json, XML or text/plain (as properties) response into name/value pairs
+		 */
+		public Builder flatten(boolean flatten) {
+			this.flatten = flatten;
+			return this;
+		}
+
+		/**
+		 * @param name  the name for the value(s) found
+		 * @param query a jsonpath expression like $.token; for XML responses an XmlPath like
+		 *              /feed/entry/title; anything else is a regular expression for text/plain
+		 *              responses like ^uptime:\s*(\d+). On a CSV response, one written as [email] or
+		 *              [3] is the column of that name or index instead, and on a json response one
+		 *              that compiles as jsonpath without the leading $, like store.name, is that
+		 *              jsonpath. The response's type decides which, so a regular expression like
+		 *              [0-9] still works on text. Compiled here once
+		 */
+		public Builder query(String name, String query) {
+			if (query.startsWith("$")) {
+				queryNames.add(name);
+				queries.add(JsonPath.compile(query));
+				return this;
+			}
+			if (query.startsWith("/")) {
+				xmlQueryNames.add(name);
+				xmlQueries.add(XmlPath.compile(query));
+				return this;
+			}
+			String column = CsvExtractor.column(query);
+			if (column != null) {
+				csvQueryNames.add(name);
+				csvColumns.add(column);
+			}
+			boolean json = false;
+			try {
+				// JsonPath adds the $. itself, as it always has for -q name=store.name
+				JsonPath path = JsonPath.compile(query);
+				queryNames.add(name);
+				queries.add(path);
+				json = true;
+			} catch (InvalidPathException x) {
+				// not one
+			}
+			Pattern pattern;
+			try {
+				pattern = Pattern.compile(query);
+			} catch (PatternSyntaxException x) {
+				// only good as a column or jsonpath, e.g. [z-a]
+				if (column != null || json) return this;
+				throw x;
+			}
+			textQueryNames.add(name);
+			textQueries.add(pattern);
+			return this;
+		}
+
+		/**
+		 * @param query as given on the command line, e.g. token=$.token, title=/feed/title or
+		 *              up=^status: (\w+)
+		 */
+		public Builder query(String query) {
+			int eq = query.indexOf('=');
+			if (eq == -1) throw new IllegalArgumentException("a query is specified as name=<some jsonpath>");
+			return query(query.substring(0, eq).trim(), query.substring(eq + 1).trim());
+		}
+
+		public Builder queries(Collection<String> queries) {
+			for (String q : queries) query(q);
+			return this;
+		}
+
+		/**
+		 * Keep only the CSV rows that pass this filter, e.g. status=active, total&gt;=100 or
+		 * email~@example\.org$
+		 */
+		public Builder where(String filter) {
+			filters.add(CsvExtractor.Filter.parse(filter));
+			return this;
+		}
+
+		public Builder where(Collection<String> filters) {
+			for (String f : filters) where(f);
+			return this;
+		}
+
+		/**
+		 * Keep the response body in the result, default true. With false an XML, text or CSV body
+		 * is flattened and queried as it arrives and not kept, which is what to do with large documents
+		 */
+		public Builder keepBody(boolean keepBody) {
+			this.keepBody = keepBody;
+			return this;
+		}
+
+		public RequestSpec build() {
+			return new RequestSpec(this);
+		}
+	}
+
+}
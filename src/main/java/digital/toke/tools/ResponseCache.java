@@ -0,0 +1,205 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * An on-disk cache of responses shared by runs of mwquery, so a GET repeated across invocations
+ * need not go to the origin. OkHttp's Cache does the work: entries are kept and evicted least
+ * recently used first within maxBytes, Cache-Control is honoured, and a stale entry with an ETag
+ * or Last-Modified is revalidated with a conditional request.
+ *
+ * For APIs that send no caching headers at all, a TTL can be forced; such responses are then
+ * cached as if they had said max-age=ttl.
+ *
+ * OkHttp's cache journal belongs to one process, so a process holds a lock file in the directory
+ * while it uses the cache, until it closes it or exits. A run that starts while another holds it
+ * waits for it a while, and if it is not given up in that time goes without the cache rather than
+ * open a second one. There is only the one cache, bounded by maxBytes.
+ *
+ * @author David R. Smith
+ *
+ */
+public class ResponseCache implements Closeable {
+
+	static final long WAIT_MILLIS = 10000;
+
+	final Cache cache;
+	final File directory; // the responses
+	final long ttlSeconds;
+
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger revalidations = new AtomicInteger();
+
+	private ResponseCache(File directory, long maxBytes, long ttlSeconds, FileChannel lockChannel, FileLock lock) {
+		this.cache = new Cache(directory, maxBytes);
+		this.directory = directory;
+		this.ttlSeconds = ttlSeconds;
+		this.lockChannel = lockChannel;
+		this.lock = lock;
+	}
+
+	/**
+	 * Open the cache, waiting up to 10 seconds for another process to give it up
+	 * 
+	 * @param dir        the cache, created if need be
+	 * @param maxBytes   the most to keep on disk
+	 * @param ttlSeconds 0, or how long to keep responses that have no Cache-Control or Expires
+	 * @return the cache, or null if another process kept it all that time
+	 * @throws IOException
+	 */
+	public static ResponseCache open(File dir, long maxBytes, long ttlSeconds) throws IOException {
+		return open(dir, maxBytes, ttlSeconds, WAIT_MILLIS);
+	}
+
+	/**
+	 * @param dir        the cache, created if need be
+	 * @param maxBytes   the most to keep on disk
+	 * @param ttlSeconds 0, or how long to keep responses that have no Cache-Control or Expires
+	 * @param waitMillis how long to wait for another process to give up the cache
+	 * @return the cache, or null if another process kept it all that time
+	 * @throws IOException
+	 */
+	public static ResponseCache open(File dir, long maxBytes, long ttlSeconds, long waitMillis) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create the cache directory " + dir);
+		FileChannel channel = new RandomAccessFile(new File(dir, "lock"), "rw").getChannel();
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+		try {
+			while (true) {
+				FileLock lock;
+				try {
+					lock = channel.tryLock();
+				} catch (OverlappingFileLockException x) {
+					// held by this process
+					lock = null;
+				}
+				if (lock != null) {
+					return new ResponseCache(new File(dir, "responses"), maxBytes, ttlSeconds, channel, lock);
+				}
+				long left = until - System.nanoTime();
+				if (left <= 0) {
+					channel.close();
+					return null;
+				}
+				TimeUnit.NANOSECONDS.sleep(Math.min(left, TimeUnit.MILLISECONDS.toNanos(100)));
+			}
+		} catch (InterruptedException x) {
+			channel.close();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for the cache " + dir);
+		} catch (IOException | RuntimeException x) {
+			channel.close();
+			throw x;
+		}
+	}
+
+	/**
+	 * Counts each call as a hit, a revalidation or a miss. An application interceptor, so it sees
+	 * the response as the cache left it
+	 */
+	Interceptor counter() {
+		return chain -> {
+			Response response = chain.proceed(chain.request());
+			if (response.cacheResponse() != null) {
+				if (response.networkResponse() == null) {
+					hits.incrementAndGet();
+				} else {
+					revalidations.incrementAndGet();
+				}
+			} else if (response.networkResponse() != null) {
+				misses.incrementAndGet();
+			}
+			return response;
+		};
+	}
+
+	/**
+	 * Gives successful GET responses with no caching headers a max-age of the forced TTL. A network
+	 * interceptor, so the cache stores the rewritten headers
+	 */
+	Interceptor forcedTtl() {
+		return chain -> {
+			Response response = chain.proceed(chain.request());
+			if (!"GET".equals(chain.request().method()) || !response.isSuccessful()) return response;
+			if (response.header("Cache-Control") != null || response.header("Expires") != null) return response;
+			return response.newBuilder().removeHeader("Pragma").header("Cache-Control", "max-age=" + ttlSeconds).build();
+		};
+	}
+
+	/**
+	 * Answered from the cache without a request
+	 */
+	public int hits() {
+		return hits.get();
+	}
+
+	/**
+	 * Sent to the origin with no usable entry
+	 */
+	public int misses() {
+		return misses.get();
+	}
+
+	/**
+	 * Sent to the origin as a conditional request for a stale entry, whether it came back 304 or not
+	 */
+	public int revalidations() {
+		return revalidations.get();
+	}
+
+	/**
+	 * Where the responses are kept, inside the cache directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Write as name="value" lines
+	 */
+	public void print(PrintStream out) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("cache.hits=\"").append(hits()).append("\"\n");
+		buf.append("cache.revalidations=\"").append(revalidations()).append("\"\n");
+		buf.append("cache.misses=\"").append(misses()).append("\"\n");
+		out.print(buf);
+	}
+
+	/**
+	 * Close the cache and give up the lock on it. Exiting does the same
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			cache.close();
+		} finally {
+			try {
+				lock.release();
+			} finally {
+				lockChannel.close();
+			}
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ package digital.toke.tools;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.function.BiConsumer;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -35,6 +36,13 @@ public class Result {
 		results = new HashMap<String,String>();
 	}
 	
+	/**
+	 * The same response, with nothing flattened yet
+	 */
+	Result copy() {
+		return new Result(responseHeaders, code, success, data);
+	}
+	
 	private void setContentType(Headers headers) {
 		// can be null
 		String header = responseHeaders.get("Content-Type");
@@ -50,21 +58,63 @@ public class Result {
 		return contentType;
 	}
 	
+	public int getCode() {
+		return code;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * The response body, trimmed. For HEAD this is the response headers as name="value" lines
+	 * 
+	 * @return
+	 */
+	public String getData() {
+		return data;
+	}
+
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+	
+	private static final BiConsumer<String,String> STDOUT = (name, value) -> {
+		System.out.print(name);
+		System.out.println("=\"" + value + '"');
+	};
+	
 	public void walk() {
+		flatten(STDOUT);
+	}
+	
+	/**
+	 * Flatten the json response into dotted name/value pairs, handing each to the sink rather than
+	 * printing it. The pairs are also kept in results.
+	 * 
+	 * @param sink
+	 */
+	public void flatten(BiConsumer<String,String> sink) {
 		
 		buf = new StringBuffer();
 		
 		if(data == null || data.isEmpty()) return;
+		Object event = FlightEvents.flatten();
 		if(data.startsWith("[")) {
 			JSONArray array = new JSONArray(data);
-			emitToSTDOut(array);
+			emit(array, sink);
 		}else if(data.startsWith("{")) {
 			JSONObject obj = new JSONObject(data);
-			emitToSTDOut(obj);
+			emit(obj, sink);
 		}
+		FlightEvents.flattenEnd(event, data.length());
 	}
 
 	public void emitToSTDOut(Object obj) {
+		emit(obj, STDOUT);
+	}
+
+	private void emit(Object obj, BiConsumer<String,String> sink) {
 
 		switch (obj.getClass().getName()) {
 			case "org.json.JSONObject": {
@@ -75,7 +125,7 @@ public class Result {
 					String key = keys.next();
 					String dotKey = "."+key;
 					buf.append(dotKey);
-					emitToSTDOut(item.get(key));
+					emit(item.get(key), sink);
 					buf.delete(buf.length()-dotKey.length(),buf.length());
 				}
 				break;
@@ -89,7 +139,7 @@ public class Result {
 					Object o = iter.next();
 					String dotIndex = "."+i;
 					buf.append(dotIndex);
-					emitToSTDOut(o);
+					emit(o, sink);
 					buf.delete(buf.length()-dotIndex.length(),buf.length());
 					i++;
 				}
@@ -101,15 +151,9 @@ public class Result {
 				String bufPre = buf.toString();
 				if(bufPre.startsWith(".")) bufPre = bufPre.substring(1,bufPre.length());
 				
-				StringBuffer end = new StringBuffer();
-				end.append("=");
-				end.append('"');
-				end.append(String.valueOf(obj));
-				end.append('"');
-				
-				System.out.print(bufPre);
-				System.out.println(end.toString());
-				results.put(bufPre, String.valueOf(obj));
+				String value = String.valueOf(obj);
+				sink.accept(bufPre, value);
+				results.put(bufPre, value);
 			}
 		}
 	}
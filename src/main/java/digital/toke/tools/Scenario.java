@@ -0,0 +1,139 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import digital.toke.tools.CmdLineParser.OptionException;
+
+/**
+ * Steps run in order, each a line of options as on the command line. Values found by one step are
+ * available to later ones as ${name}, e.g. a token from a login step used in a header:
+ *
+ * <pre>
+ * --url https://host/login -r POST -d @creds.json -q token=$.token
+ * --url https://host/things -h "Authorization: Bearer ${token}" --flatten
+ * </pre>
+ *
+ * Steps with nothing to substitute are parsed once, on read.
+ *
+ * @author David R. Smith
+ *
+ */
+final class Scenario {
+
+	final List<String> lines;
+	final List<List<String>> tokens = new ArrayList<List<String>>();
+	final List<RequestSpec> fixed = new ArrayList<RequestSpec>(); // null where the step has variables
+	final List<String> urls = new ArrayList<String>(); // as written, may hold ${name}
+	final Options.Credentials credentials;
+
+	Scenario(List<String> lines, Options.Credentials credentials) throws IOException, OptionException {
+		this.lines = lines;
+		this.credentials = credentials;
+		for (String line : lines) {
+			List<String> t = Options.tokenize(line);
+			tokens.add(t);
+			// parse even the variable steps now, so mistakes show before anything is sent
+			Options options = new Options(t.toArray(new String[t.size()]));
+			if (options.url == null) throw new IllegalArgumentException("scenario step has no --url: " + line);
+			urls.add(options.url);
+			fixed.add(line.contains("${") ? null : options.spec(credentials));
+		}
+	}
+
+	static Scenario read(File file, Options.Credentials credentials) throws IOException, OptionException {
+		return new Scenario(lines(file), credentials);
+	}
+
+	/**
+	 * The non-blank lines of a batch or scenario file, skipping # comments
+	 */
+	static List<String> lines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	int size() {
+		return lines.size();
+	}
+
+	/**
+	 * Run the steps in order. The values found are added to vars as they arrive.
+	 *
+	 * @param mwq
+	 * @param vars initial values, updated by each step
+	 * @return each step's result
+	 * @throws IOException if a step fails, later steps are not run
+	 */
+	List<QueryResult> run(MwQuery mwq, Map<String, String> vars) throws IOException {
+		List<QueryResult> results = new ArrayList<QueryResult>(lines.size());
+		run(mwq, vars, results);
+		return results;
+	}
+
+	/**
+	 * As run(mwq, vars), adding each step's result to results as it completes, so what was done is
+	 * still there when a later step fails or is cancelled.
+	 */
+	void run(MwQuery mwq, Map<String, String> vars, List<QueryResult> results) throws IOException {
+		try (Span span = Tracer.start(mwq.getNetworking().getTracer(), "scenario").set("steps", lines.size())) {
+			for (int i = 0; i < lines.size(); i++) {
+				RequestSpec spec = fixed.get(i);
+				if (spec == null) {
+					spec = substituted(i, vars);
+				}
+				QueryResult r = mwq.execute(spec);
+				for (int j = 0; j < r.size(); j++) vars.put(r.name(j), r.value(j));
+				results.add(r);
+			}
+		}
+	}
+
+	private RequestSpec substituted(int step, Map<String, String> vars) throws IOException {
+		List<String> t = tokens.get(step);
+		String[] args = new String[t.size()];
+		for (int i = 0; i < args.length; i++) args[i] = substitute(t.get(i), vars);
+		try {
+			return new Options(args).spec(credentials);
+		} catch (OptionException x) {
+			throw new IllegalArgumentException("scenario step " + step + " after substitution: " + x.getMessage(), x);
+		}
+	}
+
+	/**
+	 * Replace each ${name} with its value. Names without a value are left as they are.
+	 */
+	static String substitute(String s, Map<String, String> vars) {
+		int start = s.indexOf("${");
+		if (start == -1) return s;
+		StringBuilder buf = new StringBuilder(s.length() + 32);
+		int from = 0;
+		while (start != -1) {
+			int end = s.indexOf('}', start + 2);
+			if (end == -1) break;
+			String value = vars.get(s.substring(start + 2, end));
+			buf.append(s, from, start);
+			if (value != null) buf.append(value);
+			else buf.append(s, start, end + 1);
+			from = end + 1;
+			start = s.indexOf("${", from);
+		}
+		buf.append(s, from, s.length());
+		return buf.toString();
+	}
+
+}
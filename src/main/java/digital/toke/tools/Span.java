@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed step of a trace. Spans started with Tracer.start or Tracer.child become the current span
+ * of their thread until they end, so steps within them are their children. Use with
+ * try-with-resources:
+ *
+ * <pre>
+ * try (Span span = Tracer.child("flatten")) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * A span is used by one thread at a time.
+ *
+ * @author David R. Smith
+ *
+ */
+public class Span implements AutoCloseable {
+
+	static final int INTERNAL = 1;
+	static final int CLIENT = 3;
+
+	/**
+	 * What Tracer.child gives when nothing is being traced. Does nothing
+	 */
+	static final Span NOOP = new Span(null, null, null, "", INTERNAL, false) {
+		@Override
+		public Span set(String key, Object value) {
+			return this;
+		}
+
+		@Override
+		public Span error(Throwable x) {
+			return this;
+		}
+
+		@Override
+		public void end() {
+		}
+	};
+
+	final Tracer tracer;
+	final Span parent;
+	final String spanId;
+	final String parentSpanId;
+	final String name;
+	final int kind;
+	final long startNanos;
+	long endNanos;
+	final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+	String error;
+	private final boolean current; // set as its thread's current span
+	private boolean ended;
+
+	Span(Tracer tracer, Span parent, String parentSpanId, String name, int kind, boolean current) {
+		this.tracer = tracer;
+		this.parent = parent;
+		this.spanId = tracer == null ? null : Tracer.hex(8);
+		this.parentSpanId = parent != null ? parent.spanId : parentSpanId;
+		this.name = name;
+		this.kind = kind;
+		this.current = current;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Add an attribute; a String, Number or Boolean
+	 */
+	public Span set(String key, Object value) {
+		attributes.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Mark the span as failed
+	 */
+	public Span error(Throwable x) {
+		error = String.valueOf(x);
+		return this;
+	}
+
+	/**
+	 * W3C trace context for a request made within this span
+	 */
+	public String traceparent() {
+		return "00-" + tracer.traceId + "-" + spanId + "-01";
+	}
+
+	/**
+	 * Record the span. Its parent becomes the thread's current span again
+	 */
+	public void end() {
+		if (ended) return;
+		ended = true;
+		endNanos = System.nanoTime();
+		if (current) Tracer.restore(this, parent);
+		tracer.finished(this);
+	}
+
+	boolean isEnded() {
+		return ended;
+	}
+
+	@Override
+	public void close() {
+		end();
+	}
+
+}
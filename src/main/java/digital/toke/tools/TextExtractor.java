@@ -0,0 +1,109 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.MediaType;
+
+/**
+ * Flattening and regex queries for text/plain responses, a line at a time.
+ *
+ * Flattening reads the lines as properties: name=value, name: value or name value, skipping blank
+ * lines and # or ! comments. Braces are kept in the name, so Prometheus style metrics such as
+ * http_requests_total{code="200"} 1027 come out with the labels as part of the name.
+ *
+ * Each query is a regular expression tried against every line. The value is the first group where
+ * there is one, else the whole match. As for json, a query with one match gives name, with several
+ * name.0, name.1 and so on, after the flattened values.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class TextExtractor implements BodyExtractor {
+
+	final boolean flatten;
+	final List<String> names;
+	final List<Pattern> patterns;
+
+	public TextExtractor(boolean flatten, List<String> names, List<Pattern> patterns) {
+		if (names.size() != patterns.size()) throw new IllegalArgumentException("a name is required for each query");
+		this.flatten = flatten;
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.patterns = Collections.unmodifiableList(new ArrayList<Pattern>(patterns));
+	}
+
+	/**
+	 * text/plain, which includes the Prometheus text format
+	 */
+	public static boolean isText(MediaType type) {
+		return type != null && type.type().equals("text") && type.subtype().equals("plain");
+	}
+
+	@Override
+	public void extract(Reader in, BiConsumer<String, String> sink) throws IOException {
+		// a matcher per pattern, reset for each line
+		Matcher[] matchers = new Matcher[patterns.size()];
+		for (int q = 0; q < matchers.length; q++) matchers[q] = patterns.get(q).matcher("");
+		List<List<String>> found = new ArrayList<List<String>>(matchers.length);
+		for (int q = 0; q < matchers.length; q++) found.add(new ArrayList<String>());
+
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (flatten) property(line, sink);
+			for (int q = 0; q < matchers.length; q++) {
+				Matcher m = matchers[q].reset(line);
+				while (m.find()) {
+					found.get(q).add(m.groupCount() > 0 ? String.valueOf(m.group(1)) : m.group());
+				}
+			}
+		}
+
+		for (int q = 0; q < matchers.length; q++) {
+			List<String> values = found.get(q);
+			String name = names.get(q);
+			if (values.size() == 1) {
+				sink.accept(name, values.get(0));
+			} else {
+				for (int i = 0; i < values.size(); i++) sink.accept(name + "." + i, values.get(i));
+			}
+		}
+	}
+
+	// name=value, name: value or name value, where the name can hold {labels}
+	static void property(String line, BiConsumer<String, String> sink) {
+		int n = line.length();
+		int start = 0;
+		while (start < n && Character.isWhitespace(line.charAt(start))) start++;
+		if (start == n) return;
+		char first = line.charAt(start);
+		if (first == '#' || first == '!') return;
+
+		int end = start, braces = 0;
+		for (; end < n; end++) {
+			char c = line.charAt(end);
+			if (c == '{') braces++;
+			else if (c == '}' && braces > 0) braces--;
+			else if (braces == 0 && (c == '=' || c == ':' || Character.isWhitespace(c))) break;
+		}
+		String name = line.substring(start, end);
+
+		// the separator, with any whitespace around it
+		int v = end;
+		while (v < n && Character.isWhitespace(line.charAt(v))) v++;
+		if (v < n && (line.charAt(v) == '=' || line.charAt(v) == ':')) v++;
+		sink.accept(name, line.substring(v).trim());
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects the spans of a run as one trace, for a look at where the time went in a multi-step
+ * workflow without running a tracing backend. Each call through Networking gets a client span with
+ * children for DNS, connect, TLS and the body, and a W3C traceparent header so servers that trace
+ * can join in. Local steps such as parsing, JsonPath queries, flattening and cookie I/O get spans
+ * of their own.
+ *
+ * The spans are written with export as OTLP JSON (the OpenTelemetry protocol's JSON encoding), which
+ * tools that read OTLP files can load as they are.
+ *
+ * Given a traceparent, as from the TRACEPARENT environment variable of a calling script, the run
+ * continues that trace rather than starting its own.
+ *
+ * Safe for concurrent use.
+ *
+ * @author David R. Smith
+ *
+ */
+public class Tracer {
+
+	private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+	private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+
+	final String traceId;
+	final String remoteParent; // span id from a traceparent, can be null
+	private final long epochOffsetNanos; // add to System.nanoTime() for the time since the epoch
+	private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<Span>();
+
+	/**
+	 * A new trace
+	 */
+	public Tracer() {
+		this(null);
+	}
+
+	/**
+	 * @param traceparent the trace to continue, or null or an invalid value for a new one
+	 */
+	public Tracer(String traceparent) {
+		Matcher m = traceparent == null ? null : TRACEPARENT.matcher(traceparent.trim());
+		if (m != null && m.matches() && !m.group(1).matches("0+") && !m.group(2).matches("0+")) {
+			traceId = m.group(1);
+			remoteParent = m.group(2);
+		} else {
+			traceId = hex(16);
+			remoteParent = null;
+		}
+		epochOffsetNanos = System.currentTimeMillis() * 1000000L - System.nanoTime();
+	}
+
+	/**
+	 * Start a span as the current one of this thread, a child of the current span if there is one
+	 */
+	public Span start(String name) {
+		Span parent = CURRENT.get();
+		if (parent != null && parent.tracer != this) parent = null;
+		Span span = new Span(this, parent, remoteParent, name, Span.INTERNAL, true);
+		CURRENT.set(span);
+		return span;
+	}
+
+	/**
+	 * As tracer.start(name), or a span that does nothing when tracer is null
+	 */
+	static Span start(Tracer tracer, String name) {
+		return tracer == null ? Span.NOOP : tracer.start(name);
+	}
+
+	/**
+	 * A span within the current span of this thread, or one that does nothing if there is no
+	 * current span, as when nothing is being traced
+	 */
+	public static Span child(String name) {
+		Span parent = CURRENT.get();
+		return parent == null ? Span.NOOP : parent.tracer.start(name);
+	}
+
+	/**
+	 * @return the thread's current span, or null
+	 */
+	static Span current() {
+		return CURRENT.get();
+	}
+
+	// a span that does not become current, for events on calls
+	Span detached(String name, Span parent, int kind) {
+		if (parent != null && parent.tracer != this) parent = null;
+		return new Span(this, parent, remoteParent, name, kind, false);
+	}
+
+	static void restore(Span ending, Span parent) {
+		if (CURRENT.get() != ending) return;
+		if (parent == null) CURRENT.remove();
+		else CURRENT.set(parent);
+	}
+
+	void finished(Span span) {
+		spans.add(span);
+	}
+
+	/**
+	 * @return the spans ended so far
+	 */
+	public List<Span> spans() {
+		return new ArrayList<Span>(spans);
+	}
+
+	/**
+	 * Write the spans ended so far as OTLP JSON
+	 */
+	public void export(File file) throws IOException {
+		JSONArray list = new JSONArray();
+		for (Span s : spans) list.put(toJson(s));
+
+		JSONObject scope = new JSONObject();
+		scope.put("scope", new JSONObject().put("name", "digital.toke.tools").put("version", "1.0.0"));
+		scope.put("spans", list);
+		JSONObject resource = new JSONObject();
+		resource.put("resource", new JSONObject().put("attributes", new JSONArray().put(attribute("service.name", "mwquery"))));
+		resource.put("scopeSpans", new JSONArray().put(scope));
+		JSONObject root = new JSONObject().put("resourceSpans", new JSONArray().put(resource));
+		Files.write(file.toPath(), root.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private JSONObject toJson(Span s) {
+		JSONObject o = new JSONObject();
+		o.put("traceId", traceId);
+		o.put("spanId", s.spanId);
+		if (s.parentSpanId != null) o.put("parentSpanId", s.parentSpanId);
+		o.put("name", s.name);
+		o.put("kind", s.kind);
+		// 64 bit integers are strings in OTLP JSON
+		o.put("startTimeUnixNano", String.valueOf(epochOffsetNanos + s.startNanos));
+		o.put("endTimeUnixNano", String.valueOf(epochOffsetNanos + s.endNanos));
+		JSONArray attributes = new JSONArray();
+		for (Map.Entry<String, Object> e : s.attributes.entrySet()) attributes.put(attribute(e.getKey(), e.getValue()));
+		o.put("attributes", attributes);
+		if (s.error != null) o.put("status", new JSONObject().put("code", 2).put("message", s.error));
+		return o;
+	}
+
+	private static JSONObject attribute(String key, Object value) {
+		JSONObject v = new JSONObject();
+		if (value instanceof Integer || value instanceof Long) v.put("intValue", String.valueOf(value));
+		else if (value instanceof Number) v.put("doubleValue", ((Number) value).doubleValue());
+		else if (value instanceof Boolean) v.put("boolValue", value);
+		else v.put("stringValue", String.valueOf(value));
+		return new JSONObject().put("key", key).put("value", v);
+	}
+
+	// random, lower case hex
+	static String hex(int bytes) {
+		ThreadLocalRandom r = ThreadLocalRandom.current();
+		StringBuilder buf = new StringBuilder(bytes * 2);
+		for (int i = 0; i < bytes; i++) {
+			int b = r.nextInt(256);
+			buf.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 15, 16));
+		}
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Turns a client's call events into spans: one per call, a child of the calling thread's current
+ * span, with children for DNS, connect, TLS and reading the body. As a network interceptor it
+ * sends the call's span as the traceparent header.
+ *
+ * @author David R. Smith
+ *
+ */
+final class TracingListener extends EventListener implements Interceptor {
+
+	// the open spans of a call
+	static final class Spans {
+		final Span call;
+		Span dns, connect, tls, body;
+
+		Spans(Span call) {
+			this.call = call;
+		}
+	}
+
+	final Tracer tracer;
+	private final ConcurrentHashMap<Call, Spans> calls = new ConcurrentHashMap<Call, Spans>();
+
+	TracingListener(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Spans s = calls.get(chain.call());
+		if (s == null) return chain.proceed(chain.request());
+		return chain.proceed(chain.request().newBuilder().header("traceparent", s.call.traceparent()).build());
+	}
+
+	@Override
+	public void callStart(Call call) {
+		// on the calling thread
+		Span span = tracer.detached("HTTP " + call.request().method(), Tracer.current(), Span.CLIENT);
+		span.set("http.method", call.request().method());
+		span.set("http.url", call.request().url().toString());
+		calls.put(call, new Spans(span));
+	}
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		Spans s = calls.get(call);
+		if (s == null) return;
+		s.dns = tracer.detached("dns", s.call, Span.INTERNAL).set("net.peer.name", domainName);
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		Spans s = calls.get(call);
+		if (s != null && s.dns != null) s.dns.end();
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		Spans s = calls.get(call);
+		if (s == null) return;
+		s.connect = tracer.detached("connect", s.call, Span.INTERNAL).set("net.peer.ip",
+				inetSocketAddress.getAddress() == null ? inetSocketAddress.getHostString() : inetSocketAddress.getAddress().getHostAddress())
+				.set("net.peer.port", inetSocketAddress.getPort());
+	}
+
+	@Override
+	public void secureConnectStart(Call call) {
+		Spans s = calls.get(call);
+		if (s == null) return;
+		s.tls = tracer.detached("tls", s.connect != null ? s.connect : s.call, Span.INTERNAL);
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake) {
+		Spans s = calls.get(call);
+		if (s == null || s.tls == null) return;
+		if (handshake != null) s.tls.set("tls.version", handshake.tlsVersion().javaName());
+		s.tls.end();
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		Spans s = calls.get(call);
+		if (s == null || s.connect == null) return;
+		if (protocol != null) s.connect.set("net.protocol", protocol.toString());
+		s.connect.end();
+	}
+
+	@Override
+	public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+		Spans s = calls.get(call);
+		if (s == null) return;
+		if (s.tls != null) s.tls.error(ioe).end();
+		if (s.connect != null) s.connect.error(ioe).end();
+	}
+
+	@Override
+	public void responseHeadersEnd(Call call, Response response) {
+		Spans s = calls.get(call);
+		if (s != null) s.call.set("http.status_code", response.code());
+	}
+
+	@Override
+	public void responseBodyStart(Call call) {
+		Spans s = calls.get(call);
+		if (s != null) s.body = tracer.detached("body", s.call, Span.INTERNAL);
+	}
+
+	@Override
+	public void responseBodyEnd(Call call, long byteCount) {
+		Spans s = calls.get(call);
+		if (s == null || s.body == null) return;
+		s.call.set("http.response_content_length", byteCount);
+		s.body.set("bytes", byteCount).end();
+	}
+
+	@Override
+	public void callEnd(Call call) {
+		Spans s = calls.remove(call);
+		if (s != null) end(s, null);
+	}
+
+	@Override
+	public void callFailed(Call call, IOException ioe) {
+		Spans s = calls.remove(call);
+		if (s != null) end(s, ioe);
+	}
+
+	// whatever is still open
+	private static void end(Spans s, IOException ioe) {
+		for (Span span : new Span[] { s.dns, s.tls, s.connect, s.body, s.call }) {
+			if (span == null || span.isEnded()) continue;
+			if (ioe != null) span.error(ioe);
+			span.end();
+		}
+	}
+
+}
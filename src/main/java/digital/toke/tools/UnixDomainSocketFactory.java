@@ -0,0 +1,331 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import javax.net.SocketFactory;
+
+/**
+ * Sockets connected to a Unix domain socket path instead of a host and port, for services on the
+ * same machine. The address OkHttp asks for is ignored, every socket goes to the path.
+ *
+ * Unix domain SocketChannels arrived in Java 16. We still build for Java 8, so the few calls
+ * involved are looked up by reflection; on an older JVM the constructor says so.
+ *
+ * @author David R. Smith
+ *
+ */
+public class UnixDomainSocketFactory extends SocketFactory {
+
+	static final ProtocolFamily UNIX;
+	static final Method ADDRESS_OF; // UnixDomainSocketAddress.of(String)
+	static final Method OPEN; // SocketChannel.open(ProtocolFamily)
+
+	static {
+		ProtocolFamily family = null;
+		Method of = null, open = null;
+		try {
+			family = StandardProtocolFamily.valueOf("UNIX");
+			of = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+			open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+		} catch (IllegalArgumentException | ReflectiveOperationException x) {
+			family = null;
+		}
+		UNIX = family;
+		ADDRESS_OF = of;
+		OPEN = open;
+	}
+
+	final File path;
+
+	/**
+	 * @param path the socket file, e.g. /run/svc.sock
+	 * @throws UnsupportedOperationException before Java 16
+	 */
+	public UnixDomainSocketFactory(File path) {
+		if (!isSupported()) throw new UnsupportedOperationException("Unix domain sockets need Java 16 or later");
+		this.path = path;
+	}
+
+	public static boolean isSupported() {
+		return UNIX != null;
+	}
+
+	/**
+	 * The UnixDomainSocketAddress for path, as a plain SocketAddress
+	 */
+	static SocketAddress address(File path) {
+		return (SocketAddress) invoke(ADDRESS_OF, path.getPath());
+	}
+
+	static Object invoke(Method m, Object arg) {
+		try {
+			return m.invoke(null, arg);
+		} catch (InvocationTargetException x) {
+			Throwable cause = x.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		} catch (IllegalAccessException x) {
+			throw new RuntimeException(x);
+		}
+	}
+
+	public File getPath() {
+		return path;
+	}
+
+	@Override
+	public Socket createSocket() {
+		return new UnixDomainSocket(path);
+	}
+
+	@Override
+	public Socket createSocket(String host, int port) throws IOException {
+		return connected();
+	}
+
+	@Override
+	public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+		return connected();
+	}
+
+	@Override
+	public Socket createSocket(InetAddress host, int port) throws IOException {
+		return connected();
+	}
+
+	@Override
+	public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+		return connected();
+	}
+
+	private Socket connected() throws IOException {
+		Socket s = createSocket();
+		s.connect(null);
+		return s;
+	}
+
+	/**
+	 * A Socket over a non-blocking SocketChannel. Reads and writes wait on their own selector, which
+	 * is how SO_TIMEOUT is honoured (OkHttp relies on it, e.g. to probe pooled connections)
+	 */
+	static final class UnixDomainSocket extends Socket {
+
+		final File path;
+		SocketChannel channel;
+		Selector readSelector;
+		Selector writeSelector;
+		volatile int soTimeout;
+		volatile boolean closed;
+		boolean inputShutdown;
+		boolean outputShutdown;
+		InputStream in;
+		OutputStream out;
+
+		UnixDomainSocket(File path) {
+			this.path = path;
+		}
+
+		@Override
+		public void connect(SocketAddress endpoint) throws IOException {
+			connect(endpoint, 0);
+		}
+
+		@Override
+		public void connect(SocketAddress endpoint, int timeout) throws IOException {
+			if (closed) throw new SocketException("Socket is closed");
+			if (channel != null) throw new SocketException("already connected");
+			SocketChannel ch = (SocketChannel) invoke(OPEN, UNIX);
+			try {
+				// a local connect either succeeds or fails at once
+				ch.connect(address(path));
+				ch.configureBlocking(false);
+				readSelector = Selector.open();
+				writeSelector = Selector.open();
+				ch.register(readSelector, SelectionKey.OP_READ);
+				ch.register(writeSelector, SelectionKey.OP_WRITE);
+			} catch (IOException | RuntimeException x) {
+				ch.close();
+				if (readSelector != null) readSelector.close();
+				if (writeSelector != null) writeSelector.close();
+				throw x;
+			}
+			channel = ch;
+			in = new In();
+			out = new Out();
+		}
+
+		// wait until the channel is ready or the timeout passes, timeout 0 waits for ever
+		private void await(Selector selector, int timeout, String what) throws IOException {
+			long deadline = System.nanoTime() + timeout * 1000000L;
+			try {
+				while (true) {
+					if (closed) throw new SocketException("Socket closed");
+					long wait = timeout == 0 ? 0 : (deadline - System.nanoTime()) / 1000000L;
+					if (timeout > 0 && wait <= 0) throw new SocketTimeoutException(what + " timed out");
+					if (selector.select(wait) > 0) {
+						selector.selectedKeys().clear();
+						return;
+					}
+				}
+			} catch (ClosedSelectorException x) {
+				throw new SocketException("Socket closed");
+			}
+		}
+
+		final class In extends InputStream {
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				int n = read(b, 0, 1);
+				return n == -1 ? -1 : b[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0) return 0;
+				if (inputShutdown) return -1;
+				ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+				while (true) {
+					int n = channel.read(buf);
+					if (n != 0) return n;
+					await(readSelector, soTimeout, "Read");
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				UnixDomainSocket.this.close();
+			}
+		}
+
+		final class Out extends OutputStream {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+				while (buf.hasRemaining()) {
+					if (channel.write(buf) == 0) await(writeSelector, 0, "Write");
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				UnixDomainSocket.this.close();
+			}
+		}
+
+		@Override
+		public InputStream getInputStream() throws IOException {
+			if (in == null) throw new SocketException("Socket is not connected");
+			return in;
+		}
+
+		@Override
+		public OutputStream getOutputStream() throws IOException {
+			if (out == null) throw new SocketException("Socket is not connected");
+			return out;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (closed) return;
+			closed = true;
+			// closing the selectors wakes a thread waiting in either
+			if (readSelector != null) readSelector.close();
+			if (writeSelector != null) writeSelector.close();
+			if (channel != null) channel.close();
+		}
+
+		@Override
+		public void shutdownInput() throws IOException {
+			channel.shutdownInput();
+			inputShutdown = true;
+		}
+
+		@Override
+		public void shutdownOutput() throws IOException {
+			channel.shutdownOutput();
+			outputShutdown = true;
+		}
+
+		@Override
+		public void setSoTimeout(int timeout) {
+			soTimeout = timeout;
+		}
+
+		@Override
+		public int getSoTimeout() {
+			return soTimeout;
+		}
+
+		// there is no TCP underneath, these are accepted and ignored
+		@Override
+		public void setTcpNoDelay(boolean on) {
+		}
+
+		@Override
+		public void setKeepAlive(boolean on) {
+		}
+
+		@Override
+		public InetAddress getInetAddress() {
+			return InetAddress.getLoopbackAddress();
+		}
+
+		@Override
+		public boolean isConnected() {
+			return channel != null;
+		}
+
+		@Override
+		public boolean isBound() {
+			return channel != null;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return closed;
+		}
+
+		@Override
+		public boolean isInputShutdown() {
+			return inputShutdown;
+		}
+
+		@Override
+		public boolean isOutputShutdown() {
+			return outputShutdown;
+		}
+
+		@Override
+		public String toString() {
+			return "UnixDomainSocket[" + path + "]";
+		}
+	}
+
+}
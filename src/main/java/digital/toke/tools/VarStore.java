@@ -0,0 +1,236 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named values kept in a file between runs, so one invocation can use what an earlier one found as
+ * ${name} without anything having to parse its printed output.
+ *
+ * The file is memory-mapped. After a 16 byte header (magic, version, end of the records, start of
+ * the records) come records of name length, name, value length and value, UTF-8, appended as
+ * values are set; when a name appears more than once the last record wins. Appends become visible
+ * when the header's end is updated, so a reader never sees half a record. When the file is full
+ * the live values are written again into space no live record uses, in front of the current ones
+ * or after them in a file grown if need be, and made visible by one write of both the header's
+ * end and start. A process that dies part way through leaves the store as it was.
+ *
+ * Readers take a shared lock on the file and writers an exclusive one, so processes running at
+ * the same time can use the same file. File locks are held by the process, not the thread, so
+ * within a process the stores also take turns on a lock of their own.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class VarStore implements Closeable {
+
+	static final int MAGIC = 0x4d575156; // MWQV
+	static final int VERSION = 1;
+	static final int HEADER = 16;
+	static final int USED = 8; // offset of the end of the records
+	static final int START = 12; // offset of the start of the records, 0 in files written before it was kept
+	static final int INITIAL_SIZE = 64 * 1024;
+
+	// two channels of one process must not lock the same file at once
+	private static final Object LOCAL = new Object();
+
+	final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private MappedByteBuffer map;
+
+	private VarStore(File file, RandomAccessFile raf) {
+		this.file = file;
+		this.raf = raf;
+		this.channel = raf.getChannel();
+	}
+
+	/**
+	 * Open the store, creating the file if it does not exist
+	 *
+	 * @throws IOException if the file is not a store
+	 */
+	public static VarStore open(File file) throws IOException {
+		VarStore store = new VarStore(file, new RandomAccessFile(file, "rw"));
+		synchronized (LOCAL) {
+			store.init();
+		}
+		return store;
+	}
+
+	// a new file gets a header, an existing one is checked
+	private void init() throws IOException {
+		try (FileLock lock = channel.lock()) {
+			if (channel.size() == 0) {
+				remap(INITIAL_SIZE);
+				map.putInt(0, MAGIC);
+				map.putInt(4, VERSION);
+				map.putInt(USED, HEADER);
+			} else {
+				remap(channel.size());
+			}
+			if (map.capacity() < HEADER || map.getInt(0) != MAGIC) {
+				throw new IOException("Not a variable store: " + file);
+			}
+			if (map.getInt(4) != VERSION) {
+				throw new IOException("Unknown variable store version " + map.getInt(4) + ": " + file);
+			}
+		} catch (IOException | RuntimeException x) {
+			close();
+			throw x;
+		}
+	}
+
+	// another process may have grown the file since we mapped it
+	private void remap(long size) throws IOException {
+		if (map == null || map.capacity() != size) {
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * @return all the values, in the order first set
+	 */
+	public Map<String, String> read() throws IOException {
+		synchronized (LOCAL) {
+			try (FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+				remap(channel.size());
+				return records();
+			}
+		}
+	}
+
+	/**
+	 * @return the value, or null
+	 */
+	public String get(String name) throws IOException {
+		return read().get(name);
+	}
+
+	/**
+	 * Set these values. Those the same as what is already stored are not written again
+	 */
+	public void putAll(Map<String, String> values) throws IOException {
+		synchronized (LOCAL) {
+			write(values);
+		}
+	}
+
+	private void write(Map<String, String> values) throws IOException {
+		try (FileLock lock = channel.lock()) {
+			remap(channel.size());
+			Map<String, String> current = records();
+			Map<String, String> changed = new LinkedHashMap<String, String>();
+			int bytes = 0;
+			for (Map.Entry<String, String> e : values.entrySet()) {
+				if (e.getValue() == null || e.getValue().equals(current.get(e.getKey()))) continue;
+				changed.put(e.getKey(), e.getValue());
+				bytes += size(e.getKey(), e.getValue());
+			}
+			if (changed.isEmpty()) return;
+
+			int used = map.getInt(USED);
+			int start = start();
+			current.putAll(changed);
+			long live = 0;
+			for (Map.Entry<String, String> e : current.entrySet()) live += size(e.getKey(), e.getValue());
+
+			// append while there is still room to write the live values again without touching them,
+			// in front of the records or behind
+			boolean front = HEADER + live <= start;
+			if (used + bytes <= map.capacity() && (front || used + bytes + live <= map.capacity())) {
+				// write the records, then publish them
+				map.putInt(USED, put(used, changed));
+				return;
+			}
+
+			// full: write the live values again where they overwrite nothing still in use. Two copies
+			// and room to append must fit, else the file grows
+			long capacity = map.capacity();
+			int at;
+			if (front && capacity >= (HEADER + live) * 3) {
+				at = HEADER;
+			} else {
+				at = used;
+				while (capacity < used + live || capacity < (HEADER + live) * 3) capacity *= 2;
+				if (capacity > Integer.MAX_VALUE) throw new IOException("Variable store too large: " + file);
+				remap(capacity);
+			}
+			int end = put(at, current);
+			// end and start together in one aligned write, the map is big-endian
+			map.putLong(USED, ((long) end << 32) | at);
+		}
+	}
+
+	private int start() {
+		int start = map.getInt(START);
+		return start == 0 ? HEADER : start;
+	}
+
+	private static int size(String name, String value) {
+		return 8 + name.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	// write the records, not yet visible, and return where they end
+	private int put(int at, Map<String, String> values) {
+		int pos = at;
+		for (Map.Entry<String, String> e : values.entrySet()) {
+			pos = put(pos, e.getKey().getBytes(StandardCharsets.UTF_8));
+			pos = put(pos, e.getValue().getBytes(StandardCharsets.UTF_8));
+		}
+		return pos;
+	}
+
+	private int put(int pos, byte[] bytes) {
+		map.putInt(pos, bytes.length);
+		ByteBuffer b = map.duplicate();
+		b.position(pos + 4);
+		b.put(bytes);
+		return pos + 4 + bytes.length;
+	}
+
+	private Map<String, String> records() throws IOException {
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		int used = map.getInt(USED);
+		int pos = start();
+		if (pos < HEADER || used < pos || used > map.capacity()) throw new IOException("Variable store is damaged: " + file);
+		while (pos < used) {
+			String name = string(pos, used);
+			pos += 4 + map.getInt(pos);
+			String value = string(pos, used);
+			pos += 4 + map.getInt(pos);
+			values.put(name, value);
+		}
+		return values;
+	}
+
+	// the length at pos, then the bytes
+	private String string(int pos, int used) throws IOException {
+		int length = pos + 4 <= used ? map.getInt(pos) : -1;
+		if (length < 0 || pos + 4 + length > used) throw new IOException("Variable store is damaged: " + file);
+		byte[] bytes = new byte[length];
+		ByteBuffer b = map.duplicate();
+		b.position(pos + 4);
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		raf.close();
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import okhttp3.MediaType;
+
+/**
+ * Flattening and XmlPath queries for XML responses, in one forward pass with StAX. No DOM is
+ * built; what is held is the path of open elements and the text of elements being captured, so
+ * a large SOAP or Atom response can be read as it arrives. The whitespace between child elements
+ * is not kept. Query matches are the exception: they are held until the end of the document, as
+ * only then is it known whether a query gives name or name.0, name.1 and so on.
+ *
+ * Flattened names are the dotted local names from the root, e.g. feed.entry.title, with
+ * attributes as feed.entry.link.@href. Since the pass cannot look ahead, the first of several
+ * same-named siblings has no index and later ones have .1, .2 and so on: feed.entry.1.title.
+ *
+ * Query values follow flattening. As for json, a query with one match gives name, with several
+ * name.0, name.1 and so on. Immutable, and safe to share between threads.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class XmlExtractor implements BodyExtractor {
+
+	// no DTDs, so no external entities; configured once, creating readers from it is thread-safe
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
+	static {
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+	}
+
+	final boolean flatten;
+	final List<String> names;
+	final List<XmlPath> queries;
+
+	public XmlExtractor(boolean flatten, List<String> names, List<XmlPath> queries) {
+		if (names.size() != queries.size()) throw new IllegalArgumentException("a name is required for each query");
+		this.flatten = flatten;
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.queries = Collections.unmodifiableList(new ArrayList<XmlPath>(queries));
+	}
+
+	/**
+	 * application/xml, text/xml and the +xml types such as application/atom+xml
+	 */
+	public static boolean isXml(MediaType type) {
+		if (type == null) return false;
+		String subtype = type.subtype();
+		return subtype.equals("xml") || subtype.endsWith("+xml");
+	}
+
+	/**
+	 * One open element
+	 */
+	static final class Frame {
+		String name; // local name
+		int position; // among same-named siblings, from 1
+		String flatName;
+		final List<String> attrNames = new ArrayList<String>();
+		final List<String> attrValues = new ArrayList<String>();
+		final Map<String, int[]> children = new HashMap<String, int[]>();
+		final StringBuilder text = new StringBuilder(); // direct text, when flattening
+
+		String attribute(String local) {
+			int i = attrNames.indexOf(local);
+			return i == -1 ? null : attrValues.get(i);
+		}
+
+		int child(String local) {
+			int[] count = children.get(local);
+			if (count == null) children.put(local, count = new int[1]);
+			return ++count[0];
+		}
+
+		void reset() {
+			attrNames.clear();
+			attrValues.clear();
+			children.clear();
+			text.setLength(0);
+		}
+	}
+
+	// text being collected for a query match, until its element closes
+	static final class Capture {
+		final int query;
+		final int depth;
+		final StringBuilder text = new StringBuilder();
+
+		Capture(int query, int depth) {
+			this.query = query;
+			this.depth = depth;
+		}
+	}
+
+	private static boolean isBlank(CharSequence s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isWhitespace(s.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void extract(Reader in, BiConsumer<String, String> sink) throws IOException {
+		List<Frame> path = new ArrayList<Frame>(); // frames are reused by depth
+		Frame document = new Frame();
+		int depth = 0;
+		List<Capture> captures = new ArrayList<Capture>();
+		List<List<String>> found = new ArrayList<List<String>>(queries.size());
+		for (int q = 0; q < queries.size(); q++) found.add(new ArrayList<String>());
+
+		XMLStreamReader xml;
+		try {
+			xml = FACTORY.createXMLStreamReader(in);
+		} catch (XMLStreamException x) {
+			throw new IOException("Could not read XML: " + x.getMessage(), x);
+		}
+		try {
+			while (xml.hasNext()) {
+				switch (xml.next()) {
+				case XMLStreamConstants.START_ELEMENT: {
+					Frame parent = depth == 0 ? document : path.get(depth - 1);
+					// the indent before a first child
+					if (parent.children.isEmpty() && isBlank(parent.text)) parent.text.setLength(0);
+					if (path.size() == depth) path.add(new Frame());
+					Frame f = path.get(depth++);
+					f.reset();
+					f.name = xml.getLocalName();
+					f.position = parent.child(f.name);
+					for (int a = 0; a < xml.getAttributeCount(); a++) {
+						f.attrNames.add(xml.getAttributeLocalName(a));
+						f.attrValues.add(xml.getAttributeValue(a));
+					}
+					if (flatten) {
+						f.flatName = depth == 1 ? f.name : parent.flatName + "." + f.name;
+						if (f.position > 1) f.flatName += "." + (f.position - 1);
+						for (int a = 0; a < f.attrNames.size(); a++) {
+							sink.accept(f.flatName + ".@" + f.attrNames.get(a), f.attrValues.get(a));
+						}
+					}
+					for (int q = 0; q < queries.size(); q++) {
+						XmlPath query = queries.get(q);
+						if (!query.matches(path, depth)) continue;
+						if (query.attribute == null) {
+							captures.add(new Capture(q, depth));
+						} else {
+							String v = f.attribute(query.attribute);
+							if (v != null) found.get(q).add(v);
+						}
+					}
+					break;
+				}
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE: {
+					if (depth == 0) break;
+					Frame f = path.get(depth - 1);
+					// whitespace between children would grow the root's text with each entry of a feed
+					if (flatten && xml.getEventType() != XMLStreamConstants.SPACE
+							&& (f.children.isEmpty() || !xml.isWhiteSpace())) {
+						f.text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+					}
+					for (int c = 0; c < captures.size(); c++) {
+						captures.get(c).text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+					}
+					break;
+				}
+				case XMLStreamConstants.END_ELEMENT: {
+					Frame f = path.get(depth - 1);
+					if (flatten) {
+						String text = f.text.toString().trim();
+						if (!text.isEmpty()) sink.accept(f.flatName, text);
+					}
+					for (int c = captures.size() - 1; c >= 0; c--) {
+						Capture capture = captures.get(c);
+						if (capture.depth != depth) continue;
+						found.get(capture.query).add(capture.text.toString().trim());
+						captures.remove(c);
+					}
+					depth--;
+					break;
+				}
+				default:
+				}
+			}
+		} catch (XMLStreamException x) {
+			throw new IOException("Could not read XML: " + x.getMessage(), x);
+		} finally {
+			try {
+				xml.close();
+			} catch (XMLStreamException x) {
+				// nothing to do
+			}
+		}
+
+		for (int q = 0; q < queries.size(); q++) {
+			List<String> values = found.get(q);
+			String name = names.get(q);
+			if (values.size() == 1) {
+				sink.accept(name, values.get(0));
+			} else {
+				for (int i = 0; i < values.size(); i++) sink.accept(name + "." + i, values.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The subset of XPath that can be answered in one forward pass over a document, for -q on XML
+ * responses:
+ *
+ * <pre>
+ * /feed/entry/title                   child steps from the root
+ * //entry/id                          an entry at any depth
+ * /soap:Envelope/soap:Body/*          any element; prefixes are ignored, names match on local name
+ * /feed/entry[2]/title                position among same-named siblings, from 1
+ * //link[@rel='alternate']/@href      attribute test, and an attribute as the result
+ * /feed/title/text()                  the text, the same as /feed/title
+ * </pre>
+ *
+ * The value of an element is its text content, including that of its descendants, trimmed.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class XmlPath {
+
+	static final class Step {
+		final boolean descendant; // '//' before it
+		final String name; // local name, or "*"
+		final int position; // 0 for any
+		final String attrName; // [@name='value'], or [@name] when value is null
+		final String attrValue;
+
+		Step(boolean descendant, String name, int position, String attrName, String attrValue) {
+			this.descendant = descendant;
+			this.name = name;
+			this.position = position;
+			this.attrName = attrName;
+			this.attrValue = attrValue;
+		}
+	}
+
+	final String expression;
+	final Step[] steps;
+	final String attribute; // when the result is an attribute value, else null
+
+	private XmlPath(String expression, Step[] steps, String attribute) {
+		this.expression = expression;
+		this.steps = steps;
+		this.attribute = attribute;
+	}
+
+	/**
+	 * @param expression starting with /
+	 * @throws IllegalArgumentException if outside the supported subset
+	 */
+	public static XmlPath compile(String expression) {
+		if (!expression.startsWith("/")) throw new IllegalArgumentException("an XML query starts with / - " + expression);
+		List<Step> steps = new ArrayList<Step>();
+		String attribute = null;
+		int i = 0, n = expression.length();
+		while (i < n) {
+			boolean descendant = false;
+			if (expression.startsWith("//", i)) {
+				descendant = true;
+				i += 2;
+			} else if (expression.charAt(i) == '/') {
+				i++;
+			} else {
+				throw bad(expression);
+			}
+			int end = i;
+			while (end < n && expression.charAt(end) != '/' && expression.charAt(end) != '[') end++;
+			String name = expression.substring(i, end);
+			i = end;
+
+			if (name.startsWith("@")) {
+				// only as the last step
+				if (descendant || i != n || name.length() == 1) throw bad(expression);
+				attribute = localName(name.substring(1));
+				break;
+			}
+			if (name.equals("text()")) {
+				if (descendant || i != n) throw bad(expression);
+				break;
+			}
+			if (name.isEmpty()) throw bad(expression);
+
+			int position = 0;
+			String attrName = null, attrValue = null;
+			while (i < n && expression.charAt(i) == '[') {
+				int close = expression.indexOf(']', i);
+				if (close == -1) throw bad(expression);
+				String predicate = expression.substring(i + 1, close).trim();
+				i = close + 1;
+				if (predicate.startsWith("@")) {
+					int eq = predicate.indexOf('=');
+					if (eq == -1) {
+						attrName = localName(predicate.substring(1).trim());
+					} else {
+						attrName = localName(predicate.substring(1, eq).trim());
+						attrValue = unquote(predicate.substring(eq + 1).trim(), expression);
+					}
+				} else {
+					try {
+						position = Integer.parseInt(predicate);
+					} catch (NumberFormatException x) {
+						throw bad(expression);
+					}
+					if (position < 1) throw bad(expression);
+				}
+			}
+			steps.add(new Step(descendant, localName(name), position, attrName, attrValue));
+		}
+		if (steps.isEmpty()) throw bad(expression);
+		return new XmlPath(expression, steps.toArray(new Step[steps.size()]), attribute);
+	}
+
+	private static String localName(String name) {
+		int colon = name.indexOf(':');
+		return colon == -1 ? name : name.substring(colon + 1);
+	}
+
+	private static String unquote(String s, String expression) {
+		if (s.length() < 2) throw bad(expression);
+		char q = s.charAt(0);
+		if ((q != '\'' && q != '"') || s.charAt(s.length() - 1) != q) throw bad(expression);
+		return s.substring(1, s.length() - 1);
+	}
+
+	private static IllegalArgumentException bad(String expression) {
+		return new IllegalArgumentException("Unsupported XML query: " + expression);
+	}
+
+	/**
+	 * Does the path of open elements, root first, match every step?
+	 */
+	boolean matches(List<XmlExtractor.Frame> path, int depth) {
+		return matches(steps.length - 1, path, depth - 1);
+	}
+
+	// step s against the element at index e, working back towards the root
+	private boolean matches(int s, List<XmlExtractor.Frame> path, int e) {
+		if (s < 0) return e < 0;
+		if (e < 0) return false;
+		Step step = steps[s];
+		if (!step.descendant) {
+			return step(step, path.get(e)) && matches(s - 1, path, e - 1);
+		}
+		// the last match for this step is e, the ones before it can be any ancestor
+		if (!step(step, path.get(e))) return false;
+		for (int a = e - 1; a >= -1; a--) {
+			if (matches(s - 1, path, a)) return true;
+		}
+		return false;
+	}
+
+	private static boolean step(Step step, XmlExtractor.Frame f) {
+		if (!step.name.equals("*") && !step.name.equals(f.name)) return false;
+		if (step.position != 0 && step.position != f.position) return false;
+		if (step.attrName != null) {
+			String v = f.attribute(step.attrName);
+			if (v == null || (step.attrValue != null && !step.attrValue.equals(v))) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke.tools.oauth2;
+
+import org.json.JSONObject;
+
+/**
+ * An OAuth 2.0 access token as returned from a token endpoint, with the expiry made absolute
+ * 
+ * @author David R. Smith
+ *
+ */
+public class OAuth2Token {
+
+	final String accessToken;
+	final String tokenType;
+	final String refreshToken; // can be null
+	final String scope; // can be null
+	final long expiresAt; // epoch millis, Long.MAX_VALUE if the server did not say
+
+	public OAuth2Token(String accessToken, String tokenType, String refreshToken, String scope, long expiresAt) {
+		this.accessToken = accessToken;
+		this.tokenType = tokenType;
+		this.refreshToken = refreshToken;
+		this.scope = scope;
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Parse a token endpoint response (RFC 6749 section 5.1)
+	 * 
+	 * @param json
+	 * @param now             epoch millis the response was received
+	 * @param oldRefreshToken kept if the response does not carry a new one
+	 * @return
+	 */
+	static OAuth2Token fromResponse(String json, long now, String oldRefreshToken) {
+		JSONObject obj = new JSONObject(json);
+		long expiresAt = obj.has("expires_in") ? now + obj.getLong("expires_in") * 1000L : Long.MAX_VALUE;
+		return new OAuth2Token(obj.getString("access_token"), obj.optString("token_type", "Bearer"),
+				obj.optString("refresh_token", oldRefreshToken), obj.optString("scope", null), expiresAt);
+	}
+
+	static OAuth2Token fromJSON(JSONObject obj) {
+		return new OAuth2Token(obj.getString("accessToken"), obj.getString("tokenType"),
+				obj.optString("refreshToken", null), obj.optString("scope", null), obj.getLong("expiresAt"));
+	}
+
+	JSONObject toJSON() {
+		JSONObject obj = new JSONObject();
+		obj.put("accessToken", accessToken);
+		obj.put("tokenType", tokenType);
+		obj.put("refreshToken", refreshToken);
+		obj.put("scope", scope);
+		obj.put("expiresAt", expiresAt);
+		return obj;
+	}
+
+	/**
+	 * @param now    epoch millis
+	 * @param margin millis
+	 * @return true if the token is still good for at least margin millis
+	 */
+	public boolean isValid(long now, long margin) {
+		return now < expiresAt - margin;
+	}
+
+	public String getAccessToken() {
+		return accessToken;
+	}
+
+	public String getTokenType() {
+		return tokenType;
+	}
+
+	public String getRefreshToken() {
+		return refreshToken;
+	}
+
+	public String getScope() {
+		return scope;
+	}
+
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * @return value for an Authorization header
+	 */
+	public String getHeader() {
+		// token_type is case insensitive, but some servers are fussy about "Bearer"
+		String type = "bearer".equalsIgnoreCase(tokenType) ? "Bearer" : tokenType;
+		return type + " " + accessToken;
+	}
+
+	@Override
+	public String toString() {
+		// don't leak the secrets into logs
+		return "OAuth2Token [tokenType=" + tokenType + ", scope=" + scope + ", expiresAt=" + expiresAt
+				+ ", hasRefreshToken=" + (refreshToken != null) + "]";
+	}
+
+}
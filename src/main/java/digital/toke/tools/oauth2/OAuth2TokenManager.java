@@ -0,0 +1,373 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke.tools.oauth2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+
+import okhttp3.Credentials;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fetches and caches OAuth 2.0 access tokens using the client_credentials grant, or the
+ * refresh_token grant once a refresh token is known.
+ * 
+ * Tokens are kept in memory and optionally in a cache file so separate invocations can share them
+ * until expiry. A background thread refreshes the token shortly before it expires. Callers that
+ * find the token missing or expired at the same moment all wait on one in-flight refresh rather
+ * than each going to the token endpoint.
+ * 
+ * @author David R. Smith
+ *
+ */
+public class OAuth2TokenManager implements AutoCloseable {
+
+	// getToken hands out tokens with at least this long left
+	static final long MARGIN_MILLIS = 5000;
+
+	// a FileLock is held per process, this keeps two managers in one process off the same lock file
+	private static final Object LOCAL = new Object();
+
+	final String tokenUrl;
+	final String clientId;
+	final String clientSecret;
+	final String scope;
+	final File cacheFile;
+	final long refreshAheadMillis;
+	final OkHttpClient client;
+
+	private volatile OAuth2Token current;
+	private final AtomicReference<CompletableFuture<OAuth2Token>> inFlight = new AtomicReference<>();
+	private final ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> scheduled;
+
+	private OAuth2TokenManager(Builder b) {
+		tokenUrl = b.tokenUrl;
+		clientId = b.clientId;
+		clientSecret = b.clientSecret;
+		scope = b.scope;
+		cacheFile = b.cacheFile;
+		refreshAheadMillis = b.refreshAheadMillis;
+		client = b.client != null ? b.client : new OkHttpClient();
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "oauth2-refresh");
+			t.setDaemon(true);
+			return t;
+		});
+
+		OAuth2Token cached = readCache();
+		if (cached != null && cached.isValid(System.currentTimeMillis(), 0)) {
+			current = cached;
+			scheduleRefresh(cached);
+		} else if (b.refreshToken != null) {
+			// seed with the refresh token we were given, it gets exchanged on first use
+			current = new OAuth2Token("", "Bearer", b.refreshToken, scope, 0);
+		}
+	}
+
+	public static Builder builder(String tokenUrl) {
+		return new Builder(tokenUrl);
+	}
+
+	/**
+	 * Configure from properties: token_url (required), client_id, client_secret, scope,
+	 * refresh_token, cache_file and refresh_ahead_seconds
+	 * 
+	 * @param props
+	 * @return
+	 */
+	public static OAuth2TokenManager fromProperties(Properties props) {
+		String tokenUrl = props.getProperty("token_url", null);
+		if (tokenUrl == null) throw new RuntimeException("OAuth2 config failed, token_url is not set");
+
+		Builder b = builder(tokenUrl).clientId(props.getProperty("client_id", null))
+				.clientSecret(props.getProperty("client_secret", null)).scope(props.getProperty("scope", null))
+				.refreshToken(props.getProperty("refresh_token", null));
+		String cacheFile = props.getProperty("cache_file", null);
+		if (cacheFile != null) b.cacheFile(new File(cacheFile));
+		String ahead = props.getProperty("refresh_ahead_seconds", null);
+		if (ahead != null) b.refreshAhead(Long.parseLong(ahead.trim()), TimeUnit.SECONDS);
+		return b.build();
+	}
+
+	/**
+	 * Return a token good for at least the next 5 seconds, fetching one if needed. Blocks while a
+	 * refresh is in flight.
+	 * 
+	 * @return
+	 * @throws IOException if the token endpoint could not be used
+	 */
+	public OAuth2Token getToken() throws IOException {
+		OAuth2Token token = current;
+		if (token != null && token.isValid(System.currentTimeMillis(), MARGIN_MILLIS)) {
+			return token;
+		}
+		try {
+			return refresh(false).get();
+		} catch (InterruptedException x) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted waiting for token", x);
+		} catch (ExecutionException x) {
+			Throwable cause = x.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * @return value for an Authorization header
+	 * @throws IOException
+	 */
+	public String getHeader() throws IOException {
+		return getToken().getHeader();
+	}
+
+	/**
+	 * Start a refresh unless one is already in flight, in which case the caller shares it
+	 * 
+	 * @return
+	 */
+	public CompletableFuture<OAuth2Token> refresh() {
+		return refresh(true);
+	}
+
+	private CompletableFuture<OAuth2Token> refresh(boolean force) {
+		CompletableFuture<OAuth2Token> future = inFlight.get();
+		if (future != null) return future;
+
+		CompletableFuture<OAuth2Token> mine = new CompletableFuture<>();
+		if (!inFlight.compareAndSet(null, mine)) {
+			// lost the race, someone else is fetching
+			future = inFlight.get();
+			return future != null ? future : refresh(force);
+		}
+
+		try {
+			// a refresh may have completed between our caller's check and winning the race
+			OAuth2Token token = current;
+			if (force || token == null || !token.isValid(System.currentTimeMillis(), MARGIN_MILLIS)) {
+				token = fetch();
+				current = token;
+				writeCache(token);
+				scheduleRefresh(token);
+			}
+			mine.complete(token);
+		} catch (Exception x) {
+			mine.completeExceptionally(x);
+		} finally {
+			inFlight.set(null);
+		}
+		return mine;
+	}
+
+	private OAuth2Token fetch() throws IOException {
+		OAuth2Token old = current;
+		String refreshToken = old == null ? null : old.refreshToken;
+
+		FormBody.Builder form = new FormBody.Builder();
+		if (refreshToken != null) {
+			form.add("grant_type", "refresh_token");
+			form.add("refresh_token", refreshToken);
+		} else {
+			form.add("grant_type", "client_credentials");
+		}
+		if (scope != null) form.add("scope", scope);
+
+		// a public client (no secret) identifies itself in the body
+		if (clientSecret == null && clientId != null) form.add("client_id", clientId);
+
+		Request.Builder request = new Request.Builder().url(tokenUrl).post(form.build()).header("Accept",
+				"application/json");
+		if (clientSecret != null) {
+			request.header("Authorization", Credentials.basic(clientId, clientSecret, StandardCharsets.UTF_8));
+		}
+
+		try (Response response = client.newCall(request.build()).execute()) {
+			String body = response.body().string();
+			if (!response.isSuccessful()) {
+				if (refreshToken != null && clientSecret != null && response.code() == 400) {
+					// refresh token was revoked or expired, start over with our client credentials
+					current = null;
+					return fetch();
+				}
+				throw new IOException("token endpoint returned " + response.code() + ": " + body);
+			}
+			return OAuth2Token.fromResponse(body, System.currentTimeMillis(), refreshToken);
+		}
+	}
+
+	private synchronized void scheduleRefresh(OAuth2Token token) {
+		if (scheduled != null) scheduled.cancel(false);
+		if (token.expiresAt == Long.MAX_VALUE || scheduler.isShutdown()) return;
+
+		long delay = Math.max(0, token.expiresAt - refreshAheadMillis - System.currentTimeMillis());
+		scheduled = scheduler.schedule(this::backgroundRefresh, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void backgroundRefresh() {
+		refresh(true).exceptionally(x -> {
+			// keep using the current token while it lasts, try again a little later
+			OAuth2Token t = current;
+			if (t != null && t.isValid(System.currentTimeMillis(), 0)) {
+				synchronized (this) {
+					if (!scheduler.isShutdown()) scheduled = scheduler.schedule(this::backgroundRefresh,
+							Math.min(5000, refreshAheadMillis / 2 + 1), TimeUnit.MILLISECONDS);
+				}
+			}
+			return null;
+		});
+	}
+
+	private OAuth2Token readCache() {
+		if (cacheFile == null || !cacheFile.exists()) return null;
+		try {
+			String json = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+			JSONObject root = new JSONObject(json);
+			// one cache file can hold tokens for several endpoints/clients
+			JSONObject entry = root.optJSONObject(cacheKey());
+			return entry == null ? null : OAuth2Token.fromJSON(entry);
+		} catch (Exception x) {
+			// a bad cache is not fatal, we just go and get a new token
+			return null;
+		}
+	}
+
+	private void writeCache(OAuth2Token token) {
+		if (cacheFile == null) return;
+		// other processes may be saving their own tokens in the same file, the read, update and write
+		// happen under a lock on a file beside it so no entry is lost
+		File lockFile = new File(cacheFile.getAbsoluteFile().getParentFile(), cacheFile.getName() + ".lock");
+		synchronized (LOCAL) {
+			try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				update(token);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void update(OAuth2Token token) throws IOException {
+		JSONObject root = new JSONObject();
+		if (cacheFile.exists()) {
+			try {
+				root = new JSONObject(new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8));
+			} catch (Exception x) {
+				root = new JSONObject();
+			}
+		}
+		root.put(cacheKey(), token.toJSON());
+
+		// write then move so a concurrent reader never sees half a file
+		Path target = cacheFile.toPath().toAbsolutePath();
+		Path tmp = Files.createTempFile(target.getParent(), cacheFile.getName(), ".tmp");
+		try {
+			Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException x) {
+			// not a posix file system
+		}
+		Files.write(tmp, root.toString(2).getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String cacheKey() {
+		return tokenUrl + "|" + clientId + "|" + (scope == null ? "" : scope);
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	public static class Builder {
+
+		String tokenUrl;
+		String clientId;
+		String clientSecret;
+		String scope;
+		String refreshToken;
+		File cacheFile;
+		long refreshAheadMillis = 60000;
+		OkHttpClient client;
+
+		public Builder(String tokenUrl) {
+			this.tokenUrl = tokenUrl;
+		}
+
+		public Builder clientId(String clientId) {
+			this.clientId = clientId;
+			return this;
+		}
+
+		public Builder clientSecret(String clientSecret) {
+			this.clientSecret = clientSecret;
+			return this;
+		}
+
+		public Builder scope(String scope) {
+			this.scope = scope;
+			return this;
+		}
+
+		/**
+		 * Use the refresh_token grant, starting with this token
+		 */
+		public Builder refreshToken(String refreshToken) {
+			this.refreshToken = refreshToken;
+			return this;
+		}
+
+		/**
+		 * Keep tokens in this file between runs
+		 */
+		public Builder cacheFile(File cacheFile) {
+			this.cacheFile = cacheFile;
+			return this;
+		}
+
+		/**
+		 * How long before expiry the background refresh runs, default is 60 seconds
+		 */
+		public Builder refreshAhead(long amount, TimeUnit unit) {
+			this.refreshAheadMillis = unit.toMillis(amount);
+			return this;
+		}
+
+		public Builder client(OkHttpClient client) {
+			this.client = client;
+			return this;
+		}
+
+		public OAuth2TokenManager build() {
+			if (tokenUrl == null) throw new RuntimeException("token url is required");
+			if (clientId == null && refreshToken == null)
+				throw new RuntimeException("either a client id or a refresh token is required");
+			return new OAuth2TokenManager(this);
+		}
+	}
+
+}
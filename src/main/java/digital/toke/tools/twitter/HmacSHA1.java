@@ -16,12 +16,20 @@ See https://gist.githubusercontent.com/ishikawa/88599/raw/3195bdeecabeb38aa62872
 public class HmacSHA1 {
 
 	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
+	
+	// Mac.getInstance does a provider lookup each time, so keep one per thread and just re-init it
+	private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+		try {
+			return Mac.getInstance(HMAC_SHA1_ALGORITHM);
+		}catch(Exception x) {
+			throw new RuntimeException(x);
+		}
+	});
 
 	public static String calculateRFC2104HMAC(String data, String key) {
 		SecretKeySpec signingKey = new SecretKeySpec(key.getBytes(), HMAC_SHA1_ALGORITHM);
-		Mac mac  = null;
 		try {
-			mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+			Mac mac = MAC.get();
 			mac.init(signingKey);
 			return Base64.getEncoder().encodeToString(mac.doFinal(data.getBytes()));
 		}catch(Exception x) {
@@ -6,12 +6,12 @@ package digital.toke.tools.twitter;
 
 import java.security.SecureRandom;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.List;
 
+import digital.toke.tools.QueryParams;
 import digital.toke.tools.URLUtil;
 
 /**
@@ -87,7 +87,8 @@ public class OAuthCompute {
 		String consumerSecret;
 		String oauthTokenSecret;
 
-		Map<String, String> collector;
+		// encoded name and value pairs, repeated names are kept as the spec requires
+		List<String[]> collector;
 
 		boolean debug = false;
 		String parameterString;
@@ -99,7 +100,7 @@ public class OAuthCompute {
 		public Builder(String consumerKey, String token) {
 			oauthConsumerKey = consumerKey;
 			oauthToken = token;
-			collector = new TreeMap<String, String>();
+			collector = new ArrayList<String[]>();
 		}
 
 		public Builder consumerSecret(String consumerSecret) {
@@ -193,11 +194,21 @@ public class OAuthCompute {
 			
 			return this;
 		}
+		
+		public Builder addParameters(QueryParams params) {
+			int size = params.size();
+			for(int i = 0; i < size; i++) {
+				String paramValue = params.value(i);
+				collect(params.name(i), paramValue == null ? "" : paramValue);
+			}
+			return this;
+		}
 
 		private void collect(String name, String value) {
-			collector.put(percentEncode(name), percentEncode(value));
+			String encoded = percentEncode(value);
+			collector.add(new String[] {percentEncode(name), encoded});
 			if(name.equals("status")) {
-				body = "status="+collector.get("status");
+				body = "status="+encoded;
 			}
 		}
 
@@ -208,7 +219,6 @@ public class OAuthCompute {
 			// 1.1 add and percent encode the main items
 			collect("oauth_consumer_key", this.oauthConsumerKey);
 			collect("oauth_nonce", this.oauthNonce);
-			collect("oauth_consumer_key", this.oauthConsumerKey);
 			collect("oauth_signature_method", this.oauthSignatureMethod);
 			collect("oauth_timestamp", this.oauthTimestamp);
 			collect("oauth_token", this.oauthToken);
@@ -216,21 +226,21 @@ public class OAuthCompute {
 
 			StringBuffer buf = new StringBuffer();
 
-			// iterator need to be be sorted lexigraphically
+			// sorted lexicographically by name, then by value for repeated names
+			collector.sort((a, b) -> {
+				int c = a[0].compareTo(b[0]);
+				return c != 0 ? c : a[1].compareTo(b[1]);
+			});
 			int size = collector.size();
-			int i = 0;
 
 			// 1.2 append items
-			Iterator<String> iter = collector.keySet().iterator();
-			while (iter.hasNext()) {
-				String key = iter.next();
-				String value = collector.get(key);
-				buf.append(key);
+			for (int i = 0; i < size; i++) {
+				String[] pair = collector.get(i);
+				buf.append(pair[0]);
 				buf.append("=");
-				buf.append(value);
+				buf.append(pair[1]);
 				if (i < size - 1)
 					buf.append("&");
-				i++;
 			}
 
 			parameterString = buf.toString();
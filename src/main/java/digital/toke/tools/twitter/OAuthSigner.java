@@ -0,0 +1,172 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke.tools.twitter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import digital.toke.tools.PercentCodec;
+import digital.toke.tools.QueryParams;
+
+/**
+ * Reusable OAuth 1.0a HMAC-SHA1 signer for one set of credentials. Where OAuthCompute.Builder
+ * is one-shot, this does the per-credential work once (encoding the consumer key and token,
+ * building the signing key) and keeps an initialized Mac per thread, so one instance can be shared
+ * and used to sign concurrently from many threads.
+ * 
+ * As in the Builder, duplicate parameter names are kept and sorted by value as the spec requires.
+ * 
+ * @author David R. Smith
+ *
+ */
+public class OAuthSigner {
+
+	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
+
+	// the default SecureRandom on Linux serializes every caller on one lock, which shows up as soon
+	// as several threads sign at once, so each thread gets its own self-seeded generator
+	private static final ThreadLocal<SecureRandom> rand = ThreadLocal.withInitial(() -> {
+		try {
+			return SecureRandom.getInstance("SHA1PRNG");
+		} catch (GeneralSecurityException x) {
+			return new SecureRandom();
+		}
+	});
+
+	// the oauth_ parameters, already in lexical order
+	private static final int OAUTH_PARAMS = 6;
+
+	private final String encodedConsumerKey;
+	private final String encodedToken;
+	private final SecretKeySpec signingKey;
+
+	private final ThreadLocal<Mac> mac;
+	private final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+	public OAuthSigner(String consumerKey, String consumerSecret, String token, String tokenSecret) {
+		if (consumerKey == null || consumerSecret == null || token == null || tokenSecret == null)
+			throw new RuntimeException("OAuth signer requires consumer key, consumer secret, token and token secret");
+
+		encodedConsumerKey = PercentCodec.encode(consumerKey);
+		encodedToken = PercentCodec.encode(token);
+
+		String key = PercentCodec.encode(consumerSecret) + "&" + PercentCodec.encode(tokenSecret);
+		signingKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA1_ALGORITHM);
+
+		mac = ThreadLocal.withInitial(() -> {
+			try {
+				Mac m = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+				m.init(signingKey);
+				return m;
+			} catch (GeneralSecurityException x) {
+				throw new RuntimeException(x);
+			}
+		});
+	}
+
+	/**
+	 * Sign with a fresh nonce and the current time
+	 * 
+	 * @param method e.g. POST
+	 * @param url    base url, protocol://host[:port]/path with no query
+	 * @param params query and URLENCODED body parameters, unencoded
+	 * @return the value for the Authorization header
+	 */
+	public String sign(String method, String url, QueryParams params) {
+		return sign(method, url, params, nonce(), String.valueOf(Instant.now().getEpochSecond()));
+	}
+
+	public String sign(String method, String url, QueryParams params, String nonce, String timestamp) {
+		String encodedNonce = PercentCodec.encode(nonce);
+		String encodedTimestamp = PercentCodec.encode(timestamp);
+
+		// 1.0 collect encoded parameters, the oauth_ ones first as they are already in order
+		int size = params.size() + OAUTH_PARAMS;
+		String[] names = new String[size];
+		String[] values = new String[size];
+		names[0] = "oauth_consumer_key"; values[0] = encodedConsumerKey;
+		names[1] = "oauth_nonce"; values[1] = encodedNonce;
+		names[2] = "oauth_signature_method"; values[2] = "HMAC-SHA1";
+		names[3] = "oauth_timestamp"; values[3] = encodedTimestamp;
+		names[4] = "oauth_token"; values[4] = encodedToken;
+		names[5] = "oauth_version"; values[5] = "1.0";
+		for (int i = OAUTH_PARAMS; i < size; i++) {
+			String value = params.value(i - OAUTH_PARAMS);
+			names[i] = PercentCodec.encode(params.name(i - OAUTH_PARAMS));
+			values[i] = value == null ? "" : PercentCodec.encode(value);
+		}
+
+		// 1.1 sort by name then value. Parameter lists are short so an insertion sort
+		// over the two arrays beats boxing them up for a TreeMap or Arrays.sort
+		for (int i = 1; i < size; i++) {
+			String n = names[i], v = values[i];
+			int j = i - 1;
+			while (j >= 0 && compare(names[j], values[j], n, v) > 0) {
+				names[j + 1] = names[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			names[j + 1] = n;
+			values[j + 1] = v;
+		}
+
+		// 1.2 the base string, the parameter string is encoded a second time as we go
+		StringBuilder buf = buffer.get();
+		buf.setLength(0);
+		buf.append(method.toUpperCase());
+		buf.append('&');
+		PercentCodec.encode(url, buf);
+		buf.append('&');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) buf.append("%26");
+			PercentCodec.encode(names[i], buf);
+			buf.append("%3D");
+			PercentCodec.encode(values[i], buf);
+		}
+
+		// 1.3 the signature
+		String signature = signature(buf);
+
+		// 1.4 the header
+		buf.setLength(0);
+		buf.append("OAuth oauth_consumer_key=\"").append(encodedConsumerKey);
+		buf.append("\", oauth_nonce=\"").append(encodedNonce);
+		buf.append("\", oauth_signature=\"");
+		PercentCodec.encode(signature, buf);
+		buf.append("\", oauth_signature_method=\"HMAC-SHA1");
+		buf.append("\", oauth_timestamp=\"").append(encodedTimestamp);
+		buf.append("\", oauth_token=\"").append(encodedToken);
+		buf.append("\", oauth_version=\"1.0\"");
+		return buf.toString();
+	}
+
+	private String signature(CharSequence baseString) {
+		// the base string is all ASCII after encoding
+		int len = baseString.length();
+		byte[] bytes = new byte[len];
+		for (int i = 0; i < len; i++) {
+			bytes[i] = (byte) baseString.charAt(i);
+		}
+		return Base64.getEncoder().encodeToString(mac.get().doFinal(bytes));
+	}
+
+	private static int compare(String name0, String value0, String name1, String value1) {
+		int c = name0.compareTo(name1);
+		return c != 0 ? c : value0.compareTo(value1);
+	}
+
+	private static String nonce() {
+		byte[] bytes = new byte[32];
+		rand.get().nextBytes(bytes);
+		return Base64.getEncoder().encodeToString(bytes);
+	}
+
+}
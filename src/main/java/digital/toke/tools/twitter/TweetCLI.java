@@ -36,6 +36,12 @@ public class TweetCLI {
 		
 		CmdLineParser.Option<String> statusOption = parser.addStringOption('s', "status");
 		
+		// post each line of a file, with a checkpoint so a restart does not resend
+		CmdLineParser.Option<String> queueOption = parser.addStringOption('q', "queue");
+		
+		// replace the twitter endpoint, e.g. with a local stand-in for testing
+		CmdLineParser.Option<String> endpointOption = parser.addStringOption('e', "endpoint");
+		
 		try {
 			parser.parse(args);
 		} catch (digital.toke.tools.CmdLineParser.OptionException e) {
@@ -52,13 +58,15 @@ public class TweetCLI {
 		
 		String configPath = parser.getOptionValue(configOption, "twitter.properties");
 		String status = parser.getOptionValue(statusOption, null);
+		String queue = parser.getOptionValue(queueOption, null);
+		String url = parser.getOptionValue(endpointOption, TweetCLI.url);
 		
-		if(status == null) {
+		if(status == null && queue == null) {
 			help();
 			return;
 		}
 		
-		if(status.length()> 280) throw new RuntimeException("status cannot exceed 280 chars"); 
+		if(status != null && status.length()> 280) throw new RuntimeException("status cannot exceed 280 chars"); 
 
 		InputStream in = null;
 		Properties props = new Properties();
@@ -82,6 +90,17 @@ public class TweetCLI {
 		String consumerSecret = props.getProperty("consumer_secret");
 		String tokenSecret = props.getProperty("token_secret");
 		
+		if(queue != null) {
+			OAuthSigner signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+			try {
+				int sent = new TweetQueue(client, signer, url, new File(queue)).run();
+				System.out.println("sent "+sent);
+			}catch(Exception x) {
+				x.printStackTrace();
+			}
+			return;
+		}
+		
 		OAuthCompute tah = OAuthCompute.builder(consumerKey, token)
 				.addParameter("include_entities", "true")
 				.addParameter("status", status)
@@ -127,6 +146,8 @@ public class TweetCLI {
 		System.out.println("Options:");
 		System.out.println("-c --config           | Config file location, required");
 		System.out.println("-s --status           | the 'tweet' text");
+		System.out.println("-q --queue <file>     | post each line of <file>, progress is kept in <file>.checkpoint");
+		System.out.println("-e --endpoint <url>   | post to <url> instead of the twitter statuses/update endpoint");
 		System.out.println("");
 		System.out.println("-h --help             | Show this help");
 		System.out.println("");
@@ -0,0 +1,191 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved 
+ */
+package digital.toke.tools.twitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import digital.toke.tools.PercentCodec;
+import digital.toke.tools.QueryParams;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Posts the statuses in a queue file, one per line, and records progress in a checkpoint file next
+ * to it (queue file name + ".checkpoint") so a restarted run carries on where the last one stopped
+ * rather than sending again. New statuses can be appended to the queue file between runs.
+ * 
+ * A run holds a lock on queue file name + ".lock" until it is done, so a run started while another
+ * is still going (say paused on a rate limit) leaves the queue to it and sends nothing.
+ * 
+ * The x-rate-limit-remaining and x-rate-limit-reset response headers are honoured by pausing until
+ * the window resets, and a 429 is retried after the pause. Other 4xx responses (e.g. a duplicate
+ * status) are reported and skipped. A 5xx or network failure stops the run without moving the
+ * checkpoint so the status is tried again next time.
+ * 
+ * @author David R. Smith
+ *
+ */
+public class TweetQueue {
+
+	public static final MediaType URLENCODED = MediaType.parse("application/x-www-form-urlencoded; charset=utf-8");
+
+	// used when a 429 comes without a reset header
+	static final long DEFAULT_PAUSE_MILLIS = 60000;
+
+	final OkHttpClient client;
+	final OAuthSigner signer;
+	final String url;
+	final File queueFile;
+	final File checkpointFile;
+	final File lockFile;
+
+	public TweetQueue(OkHttpClient client, OAuthSigner signer, String url, File queueFile) {
+		this.client = client;
+		this.signer = signer;
+		this.url = url;
+		this.queueFile = queueFile;
+		this.checkpointFile = new File(queueFile.getPath() + ".checkpoint");
+		this.lockFile = new File(queueFile.getPath() + ".lock");
+	}
+
+	/**
+	 * Send everything after the checkpoint
+	 * 
+	 * @return the number of statuses posted in this run, 0 if another run has the queue
+	 * @throws IOException on a network or server failure, the checkpoint is left at the failed status
+	 * @throws InterruptedException
+	 */
+	public int run() throws IOException, InterruptedException {
+		try (FileChannel ch = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock;
+			try {
+				lock = ch.tryLock();
+			} catch (OverlappingFileLockException x) {
+				// another run in this process
+				lock = null;
+			}
+			if (lock == null) {
+				System.err.println(queueFile + " is being sent by another run");
+				return 0;
+			}
+			// released when the channel closes
+			return send();
+		}
+	}
+
+	private int send() throws IOException, InterruptedException {
+		List<String> lines = Files.readAllLines(queueFile.toPath(), StandardCharsets.UTF_8);
+		int next = readCheckpoint();
+		int sent = 0;
+
+		while (next < lines.size()) {
+			String status = lines.get(next).trim();
+			if (status.isEmpty()) {
+				next++;
+				continue;
+			}
+			if (status.length() > 280) {
+				System.err.println("line " + (next + 1) + ": skipped, status cannot exceed 280 chars");
+				writeCheckpoint(++next);
+				continue;
+			}
+
+			try (Response response = client.newCall(request(status)).execute()) {
+				int code = response.code();
+				long pause = pauseMillis(response);
+
+				if (code == 429) {
+					pause(pause > 0 ? pause : DEFAULT_PAUSE_MILLIS);
+					continue; // same status again
+				}
+				if (code >= 500) {
+					throw new IOException("line " + (next + 1) + ": server returned " + code);
+				}
+
+				System.out.println("line " + (next + 1) + ": " + response.isSuccessful() + ", " + code
+						+ (response.isSuccessful() ? "" : ", " + response.body().string()));
+				if (response.isSuccessful()) sent++;
+				writeCheckpoint(++next);
+
+				if (pause > 0 && next < lines.size()) pause(pause);
+			}
+		}
+		return sent;
+	}
+
+	private Request request(String status) {
+		QueryParams params = new QueryParams().add("include_entities", "true").add("status", status);
+		StringBuilder body = new StringBuilder(status.length() * 3 + 8).append("status=");
+		PercentCodec.encode(status, body);
+
+		return new Request.Builder().url(url + "?include_entities=true")
+				.header("Authorization", signer.sign("POST", url, params))
+				.post(RequestBody.create(URLENCODED, body.toString())).build();
+	}
+
+	/**
+	 * @param response
+	 * @return millis to wait before the next call, 0 if there is quota left or no rate-limit headers
+	 */
+	static long pauseMillis(Response response) {
+		String remaining = response.header("x-rate-limit-remaining");
+		String reset = response.header("x-rate-limit-reset");
+		if (response.code() != 429 && (remaining == null || !remaining.trim().equals("0"))) return 0;
+		if (reset != null) {
+			try {
+				// epoch seconds, allow a second for clock skew
+				long resetMillis = Long.parseLong(reset.trim()) * 1000L;
+				return Math.max(0, resetMillis - System.currentTimeMillis()) + 1000;
+			} catch (NumberFormatException x) {
+			}
+		}
+		String retryAfter = response.header("Retry-After");
+		if (retryAfter != null) {
+			try {
+				return Long.parseLong(retryAfter.trim()) * 1000L;
+			} catch (NumberFormatException x) {
+			}
+		}
+		return response.code() == 429 ? DEFAULT_PAUSE_MILLIS : 0;
+	}
+
+	protected void pause(long millis) throws InterruptedException {
+		System.err.println("rate limited, pausing for " + (millis / 1000) + "s");
+		Thread.sleep(millis);
+	}
+
+	int readCheckpoint() throws IOException {
+		if (!checkpointFile.exists()) return 0;
+		String s = new String(Files.readAllBytes(checkpointFile.toPath()), StandardCharsets.UTF_8).trim();
+		return s.isEmpty() ? 0 : Integer.parseInt(s);
+	}
+
+	private void writeCheckpoint(int line) throws IOException {
+		// write, sync then move so a crash leaves either the old or the new checkpoint
+		Path target = checkpointFile.toPath().toAbsolutePath();
+		Path tmp = target.resolveSibling(checkpointFile.getName() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ch.write(ByteBuffer.wrap(String.valueOf(line).getBytes(StandardCharsets.UTF_8)));
+			ch.force(true);
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for calls, flattening, JsonPath queries and cookie file I/O, so
+ * mwquery's latency shows up next to GC and I/O in the same recording.
+ *
+ * This is the Java 11 version from the multi-release jar, jdk.jfr being there from Java 11 on. Each
+ * begin method asks a probe event whether its type is enabled before allocating, so with no
+ * recording running a call costs a read of a flag. Each begin method returns an event to hand to
+ * its end method, or null when the event is not being recorded.
+ *
+ * @author David R. Smith
+ *
+ */
+final class FlightEvents {
+
+	/**
+	 * @return true where this JVM's version of the class can record events. A method, as a
+	 *         constant would be compiled into its callers
+	 */
+	static boolean supported() {
+		return true;
+	}
+
+	@Name("digital.toke.tools.Request")
+	@Label("HTTP Request")
+	@Description("A call made through Networking, from start to the end of its response body")
+	@Category("mwquery")
+	@StackTrace(false)
+	static final class RequestEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("URL")
+		String url;
+		@Label("Status")
+		int status;
+		@Label("Request Bytes")
+		@DataAmount
+		long requestBytes;
+		@Label("Response Bytes")
+		@DataAmount
+		long responseBytes;
+		@Label("Error")
+		String error;
+	}
+
+	@Name("digital.toke.tools.Flatten")
+	@Label("Flatten")
+	@Description("A JSON response turned into dotted name/value pairs, as by Result.walk")
+	@Category("mwquery")
+	static final class FlattenEvent extends Event {
+		@Label("Characters")
+		int chars;
+	}
+
+	@Name("digital.toke.tools.JsonPath")
+	@Label("JsonPath Query")
+	@Description("One JsonPath query evaluated against a parsed response")
+	@Category("mwquery")
+	@StackTrace(false)
+	static final class QueryEvent extends Event {
+		@Label("Path")
+		String path;
+	}
+
+	@Name("digital.toke.tools.Cookies")
+	@Label("Cookie File")
+	@Description("The cookie jar read from or written to its file")
+	@Category("mwquery")
+	static final class CookiesEvent extends Event {
+		@Label("Operation")
+		String operation;
+		@Label("File")
+		String file;
+		@Label("Cookies")
+		int cookies;
+	}
+
+	// never committed, only asked whether their type is enabled
+	private static final RequestEvent REQUEST = new RequestEvent();
+	private static final FlattenEvent FLATTEN = new FlattenEvent();
+	private static final QueryEvent QUERY = new QueryEvent();
+	private static final CookiesEvent COOKIES = new CookiesEvent();
+
+	private FlightEvents() {
+	}
+
+	static Object request(String method, String url) {
+		if (!REQUEST.isEnabled()) return null;
+		RequestEvent e = new RequestEvent();
+		e.method = method;
+		e.url = url;
+		e.begin();
+		return e;
+	}
+
+	static void requestEnd(Object event, int status, long requestBytes, long responseBytes, String error) {
+		if (event == null) return;
+		RequestEvent e = (RequestEvent) event;
+		e.end();
+		if (!e.shouldCommit()) return;
+		e.status = status;
+		e.requestBytes = requestBytes;
+		e.responseBytes = responseBytes;
+		e.error = error;
+		e.commit();
+	}
+
+	static Object flatten() {
+		if (!FLATTEN.isEnabled()) return null;
+		FlattenEvent e = new FlattenEvent();
+		e.begin();
+		return e;
+	}
+
+	static void flattenEnd(Object event, int chars) {
+		if (event == null) return;
+		FlattenEvent e = (FlattenEvent) event;
+		e.end();
+		if (!e.shouldCommit()) return;
+		e.chars = chars;
+		e.commit();
+	}
+
+	static Object query(String path) {
+		if (!QUERY.isEnabled()) return null;
+		QueryEvent e = new QueryEvent();
+		e.path = path;
+		e.begin();
+		return e;
+	}
+
+	static void queryEnd(Object event) {
+		if (event == null) return;
+		QueryEvent e = (QueryEvent) event;
+		e.end();
+		if (e.shouldCommit()) e.commit();
+	}
+
+	static Object cookies(String operation, File file) {
+		if (!COOKIES.isEnabled()) return null;
+		CookiesEvent e = new CookiesEvent();
+		e.operation = operation;
+		e.file = file.getPath();
+		e.begin();
+		return e;
+	}
+
+	static void cookiesEnd(Object event, int cookies) {
+		if (event == null) return;
+		CookiesEvent e = (CookiesEvent) event;
+		e.end();
+		if (!e.shouldCommit()) return;
+		e.cookies = cookies;
+		e.commit();
+	}
+
+}
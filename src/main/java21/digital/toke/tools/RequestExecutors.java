@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the blocking calls made in batch, scenario and load modes.
+ *
+ * This is the Java 21 version from the multi-release jar: each request gets its own virtual
+ * thread, so ten thousand calls in flight cost ten thousand small heap objects rather than ten
+ * thousand thread stacks. mwquery's own locks on the request path (Networking, MWQCookieJar) are
+ * ReentrantLocks, which a virtual thread can wait on without pinning its carrier.
+ *
+ * OkHttp 3.12 is not free of pinning. Over HTTP/1.1 a call blocks in socket reads, which unmount,
+ * and ConcurrencyHarness under -Djdk.tracePinnedThreads=full reports nothing. Over HTTP/2 (h2,
+ * which OkHttp offers by default over TLS, or h2c) a call waits for its response headers and body
+ * data with Object.wait() inside synchronized Http2Stream methods, so each of those calls holds
+ * its carrier thread while it waits. JDK 21 adds carriers to make up for it, up to
+ * jdk.virtualThreadScheduler.maxPoolSize (256 by default), and beyond that further HTTP/2 calls
+ * queue for a carrier. tracePinnedThreads does not report Object.wait(). For high concurrency over
+ * HTTP/2, use --protocol http1, or raise maxPoolSize.
+ *
+ * @author David R. Smith
+ *
+ */
+public final class RequestExecutors {
+
+	// each platform thread reserves a stack, past this many they cost more than they give
+	static final int MAX_PLATFORM_THREADS = 512;
+
+	private RequestExecutors() {
+	}
+
+	/**
+	 * The best executor this JVM has for up to concurrency blocking calls at once
+	 */
+	public static ExecutorService newExecutor(int concurrency) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("mwquery-", 0).factory());
+	}
+
+	/**
+	 * A pool of at most MAX_PLATFORM_THREADS daemon threads, work beyond that queues
+	 */
+	public static ExecutorService newPlatformExecutor(int concurrency) {
+		int threads = Math.max(1, Math.min(concurrency, MAX_PLATFORM_THREADS));
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread t = new Thread(r, "mwquery-" + count.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), factory);
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * @return "platform" or "virtual", the kind of thread newExecutor() uses
+	 */
+	public static String kind() {
+		return "virtual";
+	}
+
+}
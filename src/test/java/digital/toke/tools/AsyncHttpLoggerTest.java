@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class AsyncHttpLoggerTest {
+
+	@Test
+	public void test0() throws Exception {
+		StringWriter out = new StringWriter();
+		// every 4th call, and any error
+		AsyncHttpLogger logger = AsyncHttpLogger.builder().every(4).errors(true).build(out);
+		try (MockWebServer server = new MockWebServer()) {
+			for (int i = 0; i < 8; i++) {
+				MockResponse r = new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"n\":" + i + "}");
+				if (i == 2) r.setResponseCode(500);
+				server.enqueue(r);
+			}
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().logging(logger).build());
+			RequestSpec spec = RequestSpec.builder(server.url("/n").toString()).query("n=$.n").build();
+			for (int i = 0; i < 8; i++) mwq.execute(spec);
+		}
+		logger.close();
+
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertEquals(3, logger.written());
+		JSONObject error = new JSONObject(lines[0]);
+		assertEquals(3, error.getInt("id"));
+		assertEquals(500, error.getInt("status"));
+		JSONObject fourth = new JSONObject(lines[1]);
+		assertEquals(4, fourth.getInt("id"));
+		assertEquals("GET", fourth.getString("method"));
+		assertEquals(7, fourth.getLong("response.bytes"));
+		assertTrue(fourth.getDouble("total.ms") >= fourth.getDouble("headers.ms"));
+		assertEquals(8, new JSONObject(lines[2]).getInt("id"));
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class CoalescerTest {
+
+	@Test
+	public void test0() throws Exception {
+		Networking net = Networking.builder().coalesce(Collections.<String>emptyList()).build();
+		MwQuery mwq = new MwQuery(net);
+		try (MockWebServer server = new MockWebServer()) {
+			// answers once the other seven calls are waiting on the first
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+					long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+					while (net.getCoalescer().shared() < 7 && System.nanoTime() < end) Thread.sleep(5);
+					return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"region\":\"NSW\"}");
+				}
+			});
+			server.start();
+
+			RequestSpec spec = RequestSpec.builder(server.url("/reference").toString()).flatten(true).build();
+			ExecutorService exec = Executors.newFixedThreadPool(8);
+			List<Future<QueryResult>> results = new ArrayList<Future<QueryResult>>();
+			for (int i = 0; i < 8; i++) results.add(exec.submit(() -> mwq.execute(spec)));
+			for (Future<QueryResult> f : results) assertEquals("NSW", f.get().get("region"));
+			exec.shutdown();
+
+			assertEquals(1, server.getRequestCount());
+			assertEquals(1, net.getCoalescer().calls());
+			assertEquals(7, net.getCoalescer().shared());
+
+			// nothing is kept afterwards, and other credentials are another call
+			mwq.execute(spec);
+			mwq.execute(RequestSpec.builder(server.url("/reference").toString()).header("Authorization", "Bearer x").build());
+			assertEquals(3, server.getRequestCount());
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		Coalescer<String, String> coalescer = new Coalescer<String, String>();
+		// a failure goes to the caller that made the call and to those waiting on it
+		assertThrows(IOException.class, () -> coalescer.execute("k", () -> {
+			throw new IOException("refused");
+		}));
+		assertEquals("v", coalescer.execute("k", () -> "v"));
+		assertEquals(2, coalescer.calls());
+	}
+}
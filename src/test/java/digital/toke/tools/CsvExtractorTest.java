@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.MediaType;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class CsvExtractorTest {
+
+	static final String CSV = "id,email,status,total\r\n"
+			+ "1,a@example.org,active,120\r\n"
+			+ "2,\"b, \"\"the second\"\"\",closed,80\r\n"
+			+ "\r\n"
+			+ "3,\"c@example.org\nline two\",active,40.5\r\n";
+
+	static Map<String, String> extract(String body, String type, boolean flatten, List<String> where, String... queries) throws Exception {
+		RequestSpec spec = RequestSpec.builder("http://localhost/").flatten(flatten).queries(Arrays.asList(queries)).where(where).build();
+		Map<String, String> out = new LinkedHashMap<String, String>();
+		spec.extractor(MediaType.parse(type)).extract(new StringReader(body), out::put);
+		return out;
+	}
+
+	@Test
+	public void test0() throws Exception {
+		Map<String, String> q = extract(CSV, "text/csv", false, new ArrayList<String>(), "email=[email]", "total=[3]");
+		assertEquals("a@example.org", q.get("email.0"));
+		assertEquals("b, \"the second\"", q.get("email.1"));
+		assertEquals("c@example.org\nline two", q.get("email.2"));
+		assertEquals("40.5", q.get("total.2"));
+		assertEquals(6, q.size());
+
+		q = extract(CSV, "text/csv", false, Arrays.asList("status=active", "total>=100"), "id=[id]");
+		assertEquals("1", q.get("id.0"));
+		assertEquals(1, q.size());
+
+		q = extract(CSV, "text/csv", true, Arrays.asList("email~^c@"));
+		assertEquals("3", q.get("0.id"));
+		assertEquals("active", q.get("0.status"));
+		assertEquals(4, q.size());
+
+		// TSV, no header
+		q = extract("x\ty\n\"q\"\tz\n", "text/tab-separated-values; header=absent", true, new ArrayList<String>());
+		assertEquals("x", q.get("0.0"));
+		assertEquals("\"q\"", q.get("1.0"));
+		assertEquals("z", q.get("1.1"));
+
+		assertThrows(IllegalArgumentException.class, () -> CsvExtractor.Filter.parse("total>many"));
+		assertThrows(java.io.IOException.class, () -> extract(CSV, "text/csv", false, new ArrayList<String>(), "x=[nothing]"));
+	}
+
+	@Test
+	public void test1() throws Exception {
+		StringBuilder body = new StringBuilder("n,square\n");
+		for (int i = 0; i < 10000; i++) body.append(i).append(',').append(i * i).append('\n');
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/csv").setBody(body.toString()));
+			server.start();
+			RequestSpec spec = RequestSpec.builder(server.url("/export").toString()).keepBody(false).where("n~7$")
+					.query("sq=[square]").build();
+			List<String> values = new ArrayList<String>();
+			QueryResult r = new MwQuery().execute(spec, (name, value) -> values.add(value));
+			assertEquals(1000, values.size());
+			assertEquals("49", values.get(0));
+			// handed on, not kept
+			assertEquals(0, r.size());
+			assertNull(r.getBody());
+		}
+	}
+}
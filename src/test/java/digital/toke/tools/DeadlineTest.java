@@ -0,0 +1,150 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class DeadlineTest {
+
+	@Test
+	public void test0() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{}")
+					.setHeadersDelay(2, TimeUnit.SECONDS));
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().callTimeout(200).build());
+			RequestSpec spec = RequestSpec.builder(server.url("/slow").toString()).build();
+			long start = System.nanoTime();
+			assertThrows(IOException.class, () -> mwq.execute(spec));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try (MockWebServer server = new MockWebServer(); Options.Credentials credentials = new Options.Credentials()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"id\":7}"));
+			// hangs until cancelled
+			server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+			server.start();
+
+			File file = File.createTempFile("scenario", ".txt");
+			file.deleteOnExit();
+			Files.write(file.toPath(), Arrays.asList(
+					"--url " + server.url("/first") + " -q id=$.id",
+					"--url " + server.url("/second/${id}"),
+					"--url " + server.url("/third")),
+					StandardCharsets.UTF_8);
+			Scenario scenario = Scenario.read(file, credentials);
+
+			MwQuery mwq = new MwQuery();
+			timer.schedule(() -> mwq.getNetworking().cancel(), 300, TimeUnit.MILLISECONDS);
+			List<QueryResult> results = new ArrayList<QueryResult>();
+			long start = System.nanoTime();
+			assertThrows(IOException.class, () -> scenario.run(mwq, new HashMap<String, String>(), results));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+			// the first step is kept, the second was cut off and the third never sent
+			assertEquals(1, results.size());
+			assertEquals("7", results.get(0).get("id"));
+			assertTrue(mwq.getNetworking().isCancelled());
+			assertEquals(2, server.getRequestCount());
+
+			// and anything after fails at once
+			assertThrows(IOException.class, () -> mwq.execute(RequestSpec.builder(server.url("/later").toString()).build()));
+			assertEquals(2, server.getRequestCount());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test2() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/event-stream")
+					.setBody("retry: 10\n\nid: 1\ndata: {\"name\":\"a\"}\n\n"));
+			// the reconnect hangs until cancelled
+			server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().readTimeout(0).build());
+			RequestSpec spec = RequestSpec.builder(server.url("/feed").toString()).query("name=$.name").build();
+			timer.schedule(() -> mwq.getNetworking().cancel(), 300, TimeUnit.MILLISECONDS);
+			long start = System.nanoTime();
+			assertEquals(1, mwq.watch(spec, 0, (name, value) -> {
+			}));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+			assertEquals(2, server.getRequestCount());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test3() throws Exception {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+		try (MockWebServer server = new MockWebServer()) {
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) {
+					return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"a\":1}");
+				}
+			});
+			server.start();
+
+			String url = server.url("/poll").toString();
+			Options options = new Options(new String[] { "--url", url, "--poll", "0.1" });
+			MwQuery mwq = new MwQuery();
+			timer.schedule(() -> mwq.getNetworking().cancel(), 300, TimeUnit.MILLISECONDS);
+			long start = System.nanoTime();
+			// returns instead of polling on forever
+			Main.poll(mwq, RequestSpec.builder(url).build(), options);
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+			int count = server.getRequestCount();
+			assertTrue(count >= 2);
+			Thread.sleep(300);
+			assertEquals(count, server.getRequestCount());
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test4() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.start();
+			Networking net = Networking.builder().build();
+			net.cancel();
+			// no warm-up calls once cancelled
+			assertEquals(0, net.warmup(Arrays.asList(server.url("/").toString()), 4));
+			assertEquals(0, server.getRequestCount());
+		}
+	}
+}
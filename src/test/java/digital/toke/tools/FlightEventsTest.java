@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * The tests compile for Java 8, so jdk.jfr is reached by reflection. From target/classes the Java 8
+ * FlightEvents is loaded and this is skipped; the java21 profile runs it again against the
+ * multi-release jar, where Java 11+ loads the one that records.
+ */
+public class FlightEventsTest {
+
+	static final String[] EVENTS = { "digital.toke.tools.Request", "digital.toke.tools.Flatten",
+			"digital.toke.tools.JsonPath", "digital.toke.tools.Cookies" };
+
+	static final String BODY = "{\"a\":{\"b\":2}}";
+
+	@Test
+	public void test0() throws Exception {
+		assumeTrue(FlightEvents.supported());
+
+		Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+		Class<?> settingsClass = Class.forName("jdk.jfr.EventSettings");
+		Object recording = recordingClass.getConstructor().newInstance();
+		for (String name : EVENTS) {
+			Object settings = recordingClass.getMethod("enable", String.class).invoke(recording, name);
+			settingsClass.getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+		}
+
+		File cookies = File.createTempFile("cookies", ".json");
+		cookies.delete();
+		cookies.deleteOnExit();
+		String url;
+		recordingClass.getMethod("start").invoke(recording);
+		try (MockWebServer server = new MockWebServer()) {
+			for (int i = 0; i < 2; i++) {
+				server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+						.setHeader("Set-Cookie", "session=abc; Max-Age=3600").setBody(BODY));
+			}
+			server.start();
+			url = server.url("/t").toString();
+
+			Networking net = Networking.builder().build();
+			net.setCookiePath(cookies);
+			MwQuery mwq = new MwQuery(net);
+			// the first call writes the cookie file, the second reads it first; one flatten
+			assertEquals("2", mwq.execute(RequestSpec.builder(url).query("b=$.a.b").build()).get("b"));
+			assertEquals("2", mwq.execute(RequestSpec.builder(url).flatten(true).build()).get("a.b"));
+		} finally {
+			recordingClass.getMethod("stop").invoke(recording);
+		}
+
+		Path dump = Files.createTempFile("mwquery", ".jfr");
+		dump.toFile().deleteOnExit();
+		recordingClass.getMethod("dump", Path.class).invoke(recording, dump);
+		recordingClass.getMethod("close").invoke(recording);
+		Map<String, List<Object>> events = read(dump);
+
+		List<Object> requests = events.get("digital.toke.tools.Request");
+		assertEquals(2, requests.size());
+		for (Object e : requests) {
+			assertEquals("GET", value(e, "method"));
+			assertEquals(url, value(e, "url"));
+			assertEquals(200, value(e, "status"));
+			assertEquals((long) BODY.length(), value(e, "responseBytes"));
+			assertEquals(0L, value(e, "requestBytes"));
+			assertNull(value(e, "error"));
+		}
+
+		List<Object> flattens = events.get("digital.toke.tools.Flatten");
+		assertEquals(1, flattens.size());
+		assertEquals(BODY.length(), value(flattens.get(0), "chars"));
+
+		List<Object> queries = events.get("digital.toke.tools.JsonPath");
+		assertEquals(1, queries.size());
+		assertEquals("$['a']['b']", value(queries.get(0), "path"));
+
+		List<Object> reads = new ArrayList<Object>();
+		List<Object> writes = new ArrayList<Object>();
+		for (Object e : events.get("digital.toke.tools.Cookies")) {
+			assertEquals(cookies.getPath(), value(e, "file"));
+			("read".equals(value(e, "operation")) ? reads : writes).add(e);
+		}
+		assertEquals(1, reads.size());
+		assertEquals(2, writes.size());
+		assertEquals(1, value(reads.get(0), "cookies"));
+		assertEquals(1, value(writes.get(0), "cookies"));
+	}
+
+	// event name to the recorded events of that type
+	static Map<String, List<Object>> read(Path dump) throws Exception {
+		Class<?> eventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+		Class<?> typeClass = Class.forName("jdk.jfr.EventType");
+		List<?> all = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class)
+				.invoke(null, dump);
+		Map<String, List<Object>> byName = new HashMap<String, List<Object>>();
+		for (String name : EVENTS) byName.put(name, new ArrayList<Object>());
+		for (Object e : all) {
+			Object type = eventClass.getMethod("getEventType").invoke(e);
+			List<Object> list = byName.get(typeClass.getMethod("getName").invoke(type));
+			if (list != null) list.add(e);
+		}
+		return byName;
+	}
+
+	static Object value(Object event, String field) throws Exception {
+		return Class.forName("jdk.jfr.consumer.RecordedObject").getMethod("getValue", String.class).invoke(event, field);
+	}
+}
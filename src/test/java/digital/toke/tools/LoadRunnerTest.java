@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class LoadRunnerTest {
+
+	static MockWebServer server() throws Exception {
+		MockWebServer server = new MockWebServer();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String path = request.getPath();
+				if (path.startsWith("/login")) {
+					return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"token\":\"t-123\"}");
+				}
+				if (path.startsWith("/me")) {
+					String auth = request.getHeader("Authorization");
+					return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"auth\":\"" + auth + "\"}");
+				}
+				String n = request.getRequestUrl().queryParameter("n");
+				return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"n\":" + n + "}");
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	@Test
+	public void test0() throws Exception {
+		try (MockWebServer server = server()) {
+			MwQuery mwq = new MwQuery();
+			List<RequestSpec> specs = new ArrayList<RequestSpec>();
+			for (int i = 0; i < 50; i++) {
+				specs.add(RequestSpec.builder(server.url("/n?n=" + i).toString()).query("n=$.n").build());
+			}
+			List<Integer> order = new ArrayList<Integer>();
+			new LoadRunner(8).batch(mwq, specs, new LoadRunner.Listener() {
+				@Override
+				public void completed(int index, QueryResult result) {
+					assertEquals(String.valueOf(index), result.get("n"));
+					order.add(index);
+				}
+
+				@Override
+				public void failed(int index, Exception x) {
+					throw new AssertionError(x);
+				}
+			});
+			assertEquals(50, order.size());
+			for (int i = 0; i < 50; i++) assertEquals(i, (int) order.get(i));
+
+			// load, with one failure in the mix
+			AtomicInteger calls = new AtomicInteger();
+			RequestSpec spec = specs.get(0);
+			LoadRunner.Stats stats = new LoadRunner(4).load(100, () -> {
+				if (calls.incrementAndGet() == 10) throw new IllegalStateException("boom");
+				return mwq.execute(spec);
+			});
+			assertEquals(100, stats.count);
+			assertEquals(1, stats.errors);
+			assertTrue(stats.percentile(50) <= stats.percentile(99));
+			assertTrue(stats.throughput() > 0);
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		try (MockWebServer server = server(); Options.Credentials credentials = new Options.Credentials()) {
+			File file = File.createTempFile("scenario", ".txt");
+			file.deleteOnExit();
+			Files.write(file.toPath(), Arrays.asList(
+					"# log in, then use the token",
+					"--url " + server.url("/login") + " -r POST -d '{}' -q token=$.token",
+					"",
+					"--url " + server.url("/me") + " -h \"Authorization: Bearer ${token}\" --flatten"),
+					StandardCharsets.UTF_8);
+			Scenario scenario = Scenario.read(file, credentials);
+			assertEquals(2, scenario.size());
+
+			Map<String, String> vars = new HashMap<String, String>();
+			List<QueryResult> results = scenario.run(new MwQuery(), vars);
+			assertEquals("t-123", results.get(0).get("token"));
+			assertEquals("Bearer t-123", results.get(1).get("auth"));
+			assertEquals("Bearer t-123", vars.get("auth"));
+		}
+
+		Map<String, String> vars = new HashMap<String, String>();
+		vars.put("a", "1");
+		assertEquals("x1y${b}z", Scenario.substitute("x${a}y${b}z", vars));
+		assertEquals(Arrays.asList("-h", "A: b c", "it's", "\"q\""), Options.tokenize("-h 'A: b c' it\\'s \\\"q\\\""));
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.tools.twitter.OAuthSigner;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class MwQueryTest {
+
+	@Test
+	public void test0() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+					.setBody("{\"token\":\"abc\",\"items\":[{\"id\":1},{\"id\":2}],\"one\":[\"x\"]}"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"ok\":true}"));
+			server.start();
+
+			MwQuery mwq = new MwQuery();
+			RequestSpec spec = RequestSpec.builder(server.url("/things?a=1").toString())
+					.header("X-Test: a:b")
+					.query("token=$.token")
+					.query("ids=$.items[*].id")
+					.query("one=$.one")
+					.flatten(true)
+					.build();
+			QueryResult r = mwq.execute(spec);
+			assertEquals(200, r.getCode());
+			assertEquals("abc", r.get("token"));
+			assertEquals("1", r.get("ids.0"));
+			assertEquals("2", r.get("ids.1"));
+			assertEquals("x", r.get("one"));
+			assertEquals("2", r.get("items.1.id"));
+			assertEquals("a:b", server.takeRequest().getHeader("X-Test"));
+
+			// URLENCODED body is escaped and the OAuth signature covers url and body parameters
+			spec = RequestSpec.builder(server.url("/update").toString()).method("POST")
+					.oauth(new OAuthSigner("key", "secret", "token", "tokenSecret"))
+					.data("status=hello world").strictRFC3896(true).build();
+			r = mwq.execute(spec);
+			assertTrue(r.isSuccess());
+			RecordedRequest req = server.takeRequest();
+			assertEquals("status=hello%20world", req.getBody().readUtf8());
+			assertTrue(req.getHeader("Authorization").startsWith("OAuth oauth_consumer_key=\"key\""));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> RequestSpec.builder("nope").build());
+		assertThrows(IllegalArgumentException.class, () -> RequestSpec.builder("http://localhost/").method("PATCH"));
+		assertThrows(IllegalArgumentException.class, () -> RequestSpec.builder("http://localhost/").query("$.token"));
+	}
+
+	@Test
+	public void test1() throws Exception {
+		// one engine and one client shared by many threads
+		try (MockWebServer server = new MockWebServer()) {
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) {
+					String n = request.getRequestUrl().queryParameter("n");
+					return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"n\":" + n + "}");
+				}
+			});
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().build());
+			ExecutorService pool = Executors.newFixedThreadPool(8);
+			try {
+				List<Future<QueryResult>> futures = new ArrayList<Future<QueryResult>>();
+				for (int i = 0; i < 200; i++) {
+					RequestSpec spec = RequestSpec.builder(server.url("/n?n=" + i).toString()).query("n=$.n").build();
+					futures.add(pool.submit(() -> mwq.execute(spec)));
+				}
+				for (int i = 0; i < futures.size(); i++) {
+					assertEquals(String.valueOf(i), futures.get(i).get().get("n"));
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import digital.toke.tools.oauth2.OAuth2Token;
+import digital.toke.tools.oauth2.OAuth2TokenManager;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class OAuth2TokenManagerTest {
+
+	static MockResponse token(String accessToken, int expiresIn, String refreshToken) {
+		String body = "{\"access_token\":\"" + accessToken + "\",\"token_type\":\"bearer\",\"expires_in\":" + expiresIn
+				+ (refreshToken == null ? "" : ",\"refresh_token\":\"" + refreshToken + "\"") + "}";
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+	}
+
+	@Test
+	public void test0() throws Exception {
+		// concurrent callers share one request to the token endpoint
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(token("abc", 3600, null).setBodyDelay(300, TimeUnit.MILLISECONDS));
+			server.start();
+
+			try (OAuth2TokenManager manager = OAuth2TokenManager.builder(server.url("/token").toString())
+					.clientId("client").clientSecret("secret").scope("read").build()) {
+
+				int threads = 16;
+				CountDownLatch start = new CountDownLatch(1);
+				ExecutorService pool = Executors.newFixedThreadPool(threads);
+				List<Future<String>> results = new ArrayList<Future<String>>();
+				for (int i = 0; i < threads; i++) {
+					results.add(pool.submit(() -> {
+						start.await();
+						return manager.getHeader();
+					}));
+				}
+				start.countDown();
+				for (Future<String> f : results) {
+					assertEquals("Bearer abc", f.get(10, TimeUnit.SECONDS));
+				}
+				pool.shutdown();
+
+				assertEquals(1, server.getRequestCount());
+				RecordedRequest req = server.takeRequest();
+				assertEquals("POST", req.getMethod());
+				assertEquals("Basic Y2xpZW50OnNlY3JldA==", req.getHeader("Authorization"));
+				assertEquals("grant_type=client_credentials&scope=read", req.getBody().readUtf8());
+			}
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		// refreshed in the background before expiry, using the refresh token
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(token("first", 2, "r1"));
+			server.enqueue(token("second", 3600, null));
+			server.start();
+
+			try (OAuth2TokenManager manager = OAuth2TokenManager.builder(server.url("/token").toString())
+					.clientId("client").clientSecret("secret").refreshAhead(1500, TimeUnit.MILLISECONDS).build()) {
+				assertEquals("first", manager.getToken().getAccessToken());
+
+				server.takeRequest();
+				RecordedRequest refresh = server.takeRequest(5, TimeUnit.SECONDS);
+				assertEquals("grant_type=refresh_token&refresh_token=r1", refresh.getBody().readUtf8());
+
+				// the refresh lands while the first token is still valid
+				OAuth2Token t = manager.getToken();
+				for (int i = 0; i < 50 && t.getAccessToken().equals("first"); i++) {
+					Thread.sleep(20);
+					t = manager.getToken();
+				}
+				assertEquals("second", t.getAccessToken());
+				assertEquals("r1", t.getRefreshToken());
+				assertEquals(2, server.getRequestCount());
+			}
+		}
+	}
+
+	@Test
+	public void test2() throws Exception {
+		// tokens survive in the cache file between managers
+		File cache = File.createTempFile("oauth2", ".json");
+		cache.delete();
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(token("cached", 3600, null));
+			server.start();
+			String url = server.url("/token").toString();
+
+			try (OAuth2TokenManager manager = OAuth2TokenManager.builder(url).clientId("client")
+					.clientSecret("secret").cacheFile(cache).build()) {
+				assertEquals("cached", manager.getToken().getAccessToken());
+			}
+			assertTrue(cache.exists());
+
+			try (OAuth2TokenManager manager = OAuth2TokenManager.builder(url).clientId("client")
+					.clientSecret("secret").cacheFile(cache).build()) {
+				assertEquals("cached", manager.getToken().getAccessToken());
+			}
+			assertEquals(1, server.getRequestCount());
+		} finally {
+			cache.delete();
+		}
+	}
+
+	@Test
+	public void test3() throws Exception {
+		// managers for different clients saving to one cache file at once keep each other's entries
+		File cache = File.createTempFile("oauth2", ".json");
+		cache.delete();
+		int clients = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		try (MockWebServer server = new MockWebServer()) {
+			for (int i = 0; i < clients; i++) server.enqueue(token("t" + i, 3600, null));
+			server.start();
+			String url = server.url("/token").toString();
+
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < clients; i++) {
+				String clientId = "client" + i;
+				results.add(pool.submit(() -> {
+					start.await();
+					try (OAuth2TokenManager manager = OAuth2TokenManager.builder(url).clientId(clientId)
+							.clientSecret("secret").cacheFile(cache).build()) {
+						return manager.getToken().getAccessToken();
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<String> f : results) f.get(10, TimeUnit.SECONDS);
+
+			JSONObject root = new JSONObject(new String(Files.readAllBytes(cache.toPath()), StandardCharsets.UTF_8));
+			assertEquals(clients, root.length());
+		} finally {
+			pool.shutdown();
+			cache.delete();
+			new File(cache.getPath() + ".lock").delete();
+		}
+	}
+}
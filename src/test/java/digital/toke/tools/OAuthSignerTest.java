@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.tools.twitter.OAuthCompute;
+import digital.toke.tools.twitter.OAuthSigner;
+
+public class OAuthSignerTest {
+
+	// the same published values as in TweetOAuthAlgorithmTest
+	static final String consumerKey = "xvz1evFS4wEEPTGEFPHBog";
+	static final String token = "370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb";
+	static final String consumerSecret = "kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+	static final String tokenSecret = "LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+	static final String url = "https://api.twitter.com/1.1/statuses/update.json";
+	static final String nonce = "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg";
+	static final String timestamp = "1318622958";
+
+	static final String defHeader = "OAuth oauth_consumer_key=\"xvz1evFS4wEEPTGEFPHBog\", oauth_nonce=\"kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg\", oauth_signature=\"hCtSmYh%2BiHYCEqBWrE7C7hYmtUk%3D\", oauth_signature_method=\"HMAC-SHA1\", oauth_timestamp=\"1318622958\", oauth_token=\"370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb\", oauth_version=\"1.0\"";
+
+	static QueryParams params() {
+		return new QueryParams().add("status", "Hello Ladies + Gentlemen, a signed OAuth request!")
+				.add("include_entities", "true");
+	}
+
+	@Test
+	public void test0() {
+		OAuthSigner signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+		assertEquals(defHeader, signer.sign("POST", url, params(), nonce, timestamp));
+		// and again, the cached Mac must not carry state between signatures
+		assertEquals(defHeader, signer.sign("post", url, params(), nonce, timestamp));
+		assertNotEquals(defHeader, signer.sign("POST", url, params()));
+	}
+
+	@Test
+	public void test1() {
+		// with unique names the result matches the Builder
+		QueryParams params = new QueryParams().add("b", "2").add("a-b", "x y").add("a", "1").add("a.", "~");
+		OAuthCompute oac = OAuthCompute.builder(consumerKey, token).addParameters(params)
+				.consumerSecret(consumerSecret).oauthTokenSecret(tokenSecret).method("GET").url(url).nonce(nonce)
+				.timestamp(timestamp).signatureMethod().version().build();
+
+		OAuthSigner signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+		assertEquals(oac.getHeader(), signer.sign("GET", url, params, nonce, timestamp));
+
+		// duplicates are kept, so the order they are given in must not matter
+		QueryParams dup0 = new QueryParams().add("a", "2").add("a", "1");
+		QueryParams dup1 = new QueryParams().add("a", "1").add("a", "2");
+		assertEquals(signer.sign("GET", url, dup0, nonce, timestamp), signer.sign("GET", url, dup1, nonce, timestamp));
+		assertNotEquals(signer.sign("GET", url, dup0, nonce, timestamp),
+				signer.sign("GET", url, new QueryParams().add("a", "1"), nonce, timestamp));
+
+		// and the Builder keeps them too
+		OAuthCompute dup = OAuthCompute.builder(consumerKey, token).addParameters(dup0)
+				.consumerSecret(consumerSecret).oauthTokenSecret(tokenSecret).method("GET").url(url).nonce(nonce)
+				.timestamp(timestamp).signatureMethod().version().build();
+		assertEquals(signer.sign("GET", url, dup1, nonce, timestamp), dup.getHeader());
+	}
+
+	@Test
+	public void test2() throws Exception {
+		OAuthSigner signer = new OAuthSigner(consumerKey, consumerSecret, token, tokenSecret);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				futures.add(pool.submit(() -> {
+					for (int i = 0; i < 2000; i++) {
+						if (!defHeader.equals(signer.sign("POST", url, params(), nonce, timestamp))) return false;
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> f : futures) {
+				assertEquals(Boolean.TRUE, f.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
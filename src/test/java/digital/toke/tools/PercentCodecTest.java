@@ -0,0 +1,69 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PercentCodecTest {
+
+	// the URLEncoder based approach PercentCodec replaced, used as the reference
+	private static String reference(String value) throws UnsupportedEncodingException {
+		return URLEncoder.encode(value, "UTF-8").replace("*", "%2A").replace("+", "%20").replace("%7E", "~");
+	}
+
+	@Test
+	public void test0() throws Exception {
+		String[] values = { "", "abcXYZ019", "Hello Ladies + Gentlemen, a signed OAuth request!", "~-._*", "a=b&c=d",
+				"café", "日本語", "emoji 😀 end", "https://api.twitter.com/1.1/statuses/update.json" };
+		for (String v : values) {
+			assertEquals(reference(v), PercentCodec.encode(v));
+			assertEquals(v, PercentCodec.decode(PercentCodec.encode(v)));
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		// random strings over the whole BMP plus some supplementary chars
+		Random r = new Random(42);
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			buf.setLength(0);
+			int len = r.nextInt(40);
+			for (int j = 0; j < len; j++) {
+				int cp = r.nextInt(4) == 0 ? 0x10000 + r.nextInt(0x1000) : r.nextInt(0xD800);
+				buf.appendCodePoint(cp);
+			}
+			String v = buf.toString();
+			assertEquals(reference(v), PercentCodec.encode(v));
+			assertEquals(v, PercentCodec.decode(PercentCodec.encode(v)));
+		}
+	}
+
+	@Test
+	public void test2() {
+		String plain = "nothing_to-do.here~";
+		assertSame(plain, PercentCodec.encode(plain));
+		assertSame(plain, PercentCodec.decode(plain));
+
+		// reuse one buffer
+		StringBuilder buf = new StringBuilder();
+		PercentCodec.encode("a b", buf).append('&');
+		PercentCodec.encode("c/d", buf);
+		assertEquals("a%20b&c%2Fd", buf.toString());
+
+		assertEquals("a+b", PercentCodec.decode("a+b"));
+		assertEquals("a b", PercentCodec.decode("a+b", true));
+		assertThrows(IllegalArgumentException.class, () -> PercentCodec.decode("bad%2"));
+		assertThrows(IllegalArgumentException.class, () -> PercentCodec.decode("bad%zz"));
+	}
+}
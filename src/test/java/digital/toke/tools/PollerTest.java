@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class PollerTest {
+
+	@Test
+	public void test0() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setHeader("ETag", "\"v1\"")
+					.setBody("{\"status\":\"up\",\"queue\":3,\"node\":\"a\"}"));
+			server.enqueue(new MockResponse().setResponseCode(304));
+			// no validators this time, then the same body again
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+					.setBody("{\"status\":\"up\",\"queue\":5,\"leader\":true}"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+					.setBody("{\"status\":\"up\",\"queue\":5,\"leader\":true}"));
+			server.start();
+
+			RequestSpec spec = RequestSpec.builder(server.url("/status").toString()).flatten(true).build();
+			Poller poller = new Poller(new MwQuery(), spec);
+
+			Poller.Diff first = poller.poll();
+			assertEquals(3, first.added.size());
+			assertEquals("up", first.added.get("status"));
+			assertNull(server.takeRequest().getHeader("If-None-Match"));
+
+			assertTrue(poller.poll().isEmpty());
+			assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+			assertEquals(1, poller.notModified());
+
+			Poller.Diff third = poller.poll();
+			assertEquals("5", third.changed.get("queue"));
+			assertEquals("a", third.removed.get("node"));
+			assertEquals("true", third.added.get("leader"));
+			assertEquals(1, third.changed.size());
+			assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+
+			assertTrue(poller.poll().isEmpty());
+			assertNull(server.takeRequest().getHeader("If-None-Match"));
+			assertEquals(1, poller.unchanged());
+			assertEquals(4, poller.polls());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class ProtocolTest {
+
+	static final Dispatcher SLOW = new Dispatcher() {
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"ok\":true}")
+					.setHeadersDelay(30, TimeUnit.MILLISECONDS);
+		}
+	};
+
+	static ConnectionStats run(MockWebServer server, Networking net) throws Exception {
+		MwQuery mwq = new MwQuery(net);
+		RequestSpec spec = RequestSpec.builder(server.url("/ok").toString()).query("ok=$.ok").build();
+		// the first call opens the connection, the batch then shares or adds to it
+		mwq.execute(spec);
+		List<RequestSpec> specs = new ArrayList<RequestSpec>(Collections.nCopies(20, spec));
+		new LoadRunner(10).batch(mwq, specs, new LoadRunner.Listener() {
+			@Override
+			public void completed(int index, QueryResult result) {
+				assertEquals("true", result.get("ok"));
+			}
+
+			@Override
+			public void failed(int index, Exception x) {
+				throw new AssertionError(x);
+			}
+		});
+		return net.getConnectionStats();
+	}
+
+	@Test
+	public void test0() throws Exception {
+		// h2c multiplexes the whole batch on one connection
+		try (MockWebServer server = new MockWebServer()) {
+			server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+			server.setDispatcher(SLOW);
+			server.start();
+			ConnectionStats stats = run(server, Networking.builder().protocol("h2c").build());
+			assertEquals(1, stats.opened());
+			assertEquals(21, (int) stats.protocols().get("h2_prior_knowledge"));
+		}
+
+		// HTTP/1.1 needs a connection per call in flight
+		try (MockWebServer server = new MockWebServer()) {
+			server.setDispatcher(SLOW);
+			server.start();
+			ConnectionStats stats = run(server, Networking.builder().protocol("http1").maxIdleConnections(10).build());
+			assertTrue(stats.opened() > 1);
+			assertEquals(21, (int) stats.protocols().get("http/1.1"));
+		}
+
+		assertThrows(IllegalArgumentException.class, () -> Networking.builder().protocol("spdy"));
+	}
+
+	@Test
+	public void test1() throws Exception {
+		// lookups that fail leave nothing behind
+		OkHttpClient client = new OkHttpClient.Builder().dns(host -> {
+			throw new UnknownHostException(host);
+		}).build();
+		Networking net = Networking.builder().client(client).build();
+		MwQuery mwq = new MwQuery(net);
+		RequestSpec spec = RequestSpec.builder("http://nowhere.invalid/").build();
+		for (int i = 0; i < 10; i++) {
+			assertThrows(IOException.class, () -> mwq.execute(spec));
+		}
+		assertEquals(0, net.getConnectionStats().inProgress());
+		assertEquals(0, net.getConnectionStats().opened());
+	}
+}
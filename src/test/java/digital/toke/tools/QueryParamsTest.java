@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.URLEncoder;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryParamsTest {
+
+	@Test
+	public void test0() {
+		QueryParams params = QueryParams.parse("b=2&a=1&b=3&token=abc==&flag&&empty=");
+		assertEquals(6, params.size());
+		assertEquals("b", params.name(2));
+		assertEquals("3", params.value(2));
+		assertEquals("abc==", params.get("token"));
+		assertNull(params.value(4));
+		assertEquals("", params.value(5));
+		assertEquals("b=2&a=1&b=3&token=abc==&flag&empty=", params.toString());
+		assertEquals(0, QueryParams.parse(null).size());
+		assertEquals(0, QueryParams.parse("").size());
+	}
+
+	@Test
+	public void test1() throws Exception {
+		String data = "status=Hello Ladies + Gentlemen, a signed OAuth request!&x=a*b~c&eq=1=2";
+		QueryParams params = QueryParams.parse(data);
+
+		String form = "status=" + URLEncoder.encode("Hello Ladies + Gentlemen, a signed OAuth request!", "UTF-8")
+				+ "&x=" + URLEncoder.encode("a*b~c", "UTF-8") + "&eq=" + URLEncoder.encode("1=2", "UTF-8");
+		assertEquals(form, params.encode(false));
+		assertEquals(form, URLUtil.urlEncodeData(data));
+
+		assertEquals("status=Hello%20Ladies%20%2B%20Gentlemen%2C%20a%20signed%20OAuth%20request%21&x=a%2Ab~c&eq=1%3D2",
+				URLUtil.urlEncodeDataRFC3896(data));
+
+		// round trip through the decoding parse
+		QueryParams decoded = QueryParams.parse(params.encode(false), true);
+		assertEquals(params.toList(), decoded.toList());
+	}
+
+	@Test
+	public void test2() {
+		// a stray '%' in a url's query is kept as text, the escapes around it are still decoded
+		QueryParams params = QueryParams.parse("q=100%&d=%zz%41&p=50%2&a+b%=c%20d", true);
+		assertEquals("100%", params.get("q"));
+		assertEquals("%zzA", params.get("d"));
+		assertEquals("50%2", params.get("p"));
+		assertEquals("c d", params.get("a b%"));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.Headers;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class RecordReplayTest {
+
+	@Test
+	public void test0() throws Exception {
+		File archive = File.createTempFile("exchanges", ".mwqa");
+		archive.delete();
+		archive.deleteOnExit();
+
+		String base;
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setBody("{\"n\":1}").setHeader("Content-Type", "application/json"));
+			server.enqueue(new MockResponse().setBody("{\"n\":2}").setHeader("Content-Type", "application/json")
+					.setHeader("Set-Cookie", "session=abc"));
+			server.enqueue(new MockResponse().setResponseCode(201).setBody("created").setBodyDelay(100,
+					java.util.concurrent.TimeUnit.MILLISECONDS));
+			server.start();
+			base = server.url("/").toString();
+
+			Networking net = Networking.builder().record(archive).build();
+			assertEquals("{\"n\":1}", net.get(base + "item", null).data);
+			assertEquals("{\"n\":2}", net.get(base + "item", null).data);
+			Result r = net.post(Networking.JSON, base + "item", Headers.of(), "{}");
+			assertEquals(201, r.code);
+			assertEquals("created", r.data);
+		}
+
+		// server is gone, everything comes from the archive
+		ExchangeArchive.Reader reader = ExchangeArchive.open(archive);
+		assertEquals(3, reader.size());
+		Networking net = Networking.builder().replay(reader, 0).build();
+		assertEquals("{\"n\":1}", net.get(base + "item", null).data);
+		Result r = net.get(base + "item", null);
+		assertEquals("{\"n\":2}", r.data);
+		assertEquals("application/json", r.getContentType().type() + "/" + r.getContentType().subtype());
+		// replayed Set-Cookie still reaches the jar
+		assertEquals(1, net.cookieJar.loadForRequest(okhttp3.HttpUrl.parse(base)).size());
+		// wraps around
+		assertEquals("{\"n\":1}", net.get(base + "item", null).data);
+		assertThrows(IOException.class, () -> net.get(base + "other", null));
+
+		// recorded speed holds the response back for about as long as the original took
+		Networking timed = Networking.builder().replay(reader, 1).build();
+		long start = System.nanoTime();
+		r = timed.post(Networking.JSON, base + "item", Headers.of(), "{}");
+		assertEquals(201, r.code);
+		assertTrue(System.nanoTime() - start >= 90_000_000L);
+	}
+
+	@Test
+	public void test1() throws Exception {
+		File archive = File.createTempFile("exchanges", ".mwqa");
+		archive.delete();
+		archive.deleteOnExit();
+
+		for (int i = 0; i < 3; i++) {
+			ExchangeArchive.Exchange e = new ExchangeArchive.Exchange();
+			e.method = "GET";
+			e.url = "http://localhost/" + i;
+			e.code = 200;
+			e.responseHeaders = new String[] { "Content-Type", "text/plain" };
+			e.responseBody = ("body " + i).getBytes("UTF-8");
+			ExchangeArchive.append(archive, e);
+		}
+		// simulate a crash part way through the last append
+		try (RandomAccessFile raf = new RandomAccessFile(archive, "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+		ExchangeArchive.Reader reader = ExchangeArchive.open(archive);
+		assertEquals(2, reader.size());
+		assertEquals("body 1", new String(reader.next("GET", "http://localhost/1").responseBody, "UTF-8"));
+		assertEquals(null, reader.next("GET", "http://localhost/2"));
+	}
+
+	@Test
+	public void test2() throws Exception {
+		File archive = File.createTempFile("exchanges", ".mwqa");
+		archive.delete();
+		archive.deleteOnExit();
+
+		String first = "id: 1\ndata: {\"n\":1}\n\n";
+		String stream = first + "id: 2\ndata: {\"n\":2}\n\n";
+		String url;
+		try (MockWebServer server = new MockWebServer()) {
+			// the second event comes a while after the first
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/event-stream").setBody(stream)
+					.throttleBody(first.length(), 500, TimeUnit.MILLISECONDS));
+			server.start();
+
+			Networking net = Networking.builder().record(archive).readTimeout(0).build();
+			url = server.url("/feed").toString();
+			RequestSpec spec = RequestSpec.builder(url).query("n=$.n").build();
+			List<Boolean> archivedYet = new ArrayList<Boolean>();
+			long events = new MwQuery(net).watch(spec, 2, (name, value) -> archivedYet.add(archive.exists()));
+
+			// each event was handed on as it came, the exchange was archived once the stream ended
+			assertEquals(2, events);
+			assertEquals(Arrays.asList(false, false), archivedYet);
+		}
+		ExchangeArchive.Reader reader = ExchangeArchive.open(archive);
+		assertEquals(1, reader.size());
+		assertEquals(stream, new String(reader.next("GET", url).responseBody, "UTF-8"));
+	}
+}
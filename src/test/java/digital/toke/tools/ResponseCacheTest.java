@@ -0,0 +1,83 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class ResponseCacheTest {
+
+	@Test
+	public void test0() throws Exception {
+		File dir = Files.createTempDirectory("mwq-cache").toFile();
+		try (MockWebServer server = new MockWebServer(); ResponseCache cache = ResponseCache.open(dir, 1 << 20, 0)) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+					.setHeader("Cache-Control", "max-age=60").setBody("{\"a\":1}"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json")
+					.setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\"").setBody("{\"b\":2}"));
+			server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().cache(cache).build());
+			RequestSpec fresh = RequestSpec.builder(server.url("/fresh").toString()).query("a=$.a").build();
+			RequestSpec validated = RequestSpec.builder(server.url("/validated").toString()).query("b=$.b").build();
+
+			assertEquals("1", mwq.execute(fresh).get("a"));
+			assertEquals("1", mwq.execute(fresh).get("a"));
+			assertEquals("2", mwq.execute(validated).get("b"));
+			// the 304 is answered with the cached body
+			assertEquals("2", mwq.execute(validated).get("b"));
+
+			assertEquals(3, server.getRequestCount());
+			server.takeRequest();
+			assertNull(server.takeRequest().getHeader("If-None-Match"));
+			assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+			assertEquals(1, cache.hits());
+			assertEquals(1, cache.revalidations());
+			assertEquals(2, cache.misses());
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		File dir = Files.createTempDirectory("mwq-cache").toFile();
+		RequestSpec spec;
+		try (MockWebServer server = new MockWebServer(); ResponseCache cache = ResponseCache.open(dir, 1 << 20, 60)) {
+			// no caching headers, the forced TTL applies
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"a\":1}"));
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().cache(cache).build());
+			spec = RequestSpec.builder(server.url("/reference").toString()).query("a=$.a").build();
+			assertEquals("1", mwq.execute(spec).get("a"));
+			assertEquals("1", mwq.execute(spec).get("a"));
+			assertEquals(1, server.getRequestCount());
+			assertEquals(1, cache.hits());
+
+			// while this one holds it another waits, then goes without
+			long start = System.nanoTime();
+			assertNull(ResponseCache.open(dir, 1 << 20, 0, 300));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+		}
+		// the same cache, once given up
+		try (ResponseCache again = ResponseCache.open(dir, 1 << 20, 0, 300)) {
+			assertEquals(new File(dir, "responses"), again.getDirectory());
+			// with the server gone, answered from what the first run kept
+			MwQuery mwq = new MwQuery(Networking.builder().cache(again).build());
+			assertEquals("1", mwq.execute(spec).get("a"));
+			assertEquals(1, again.hits());
+		}
+	}
+}
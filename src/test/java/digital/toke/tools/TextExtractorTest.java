@@ -0,0 +1,96 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class TextExtractorTest {
+
+	static final String METRICS = "# HELP http_requests_total The total number of HTTP requests.\n"
+			+ "# TYPE http_requests_total counter\n"
+			+ "http_requests_total{method=\"post\",code=\"200\"} 1027\n"
+			+ "http_requests_total{method=\"post\",code=\"400\"}    3\n"
+			+ "\n"
+			+ "status=UP\n"
+			+ "db.pool : 8\n"
+			+ "! a comment\n"
+			+ "uptime 3600\n";
+
+	static Map<String, String> extract(String text, boolean flatten, String... queries) throws Exception {
+		RequestSpec spec = RequestSpec.builder("http://localhost/").flatten(flatten).queries(Arrays.asList(queries)).build();
+		Map<String, String> out = new LinkedHashMap<String, String>();
+		spec.text.extract(new StringReader(text), out::put);
+		return out;
+	}
+
+	@Test
+	public void test0() throws Exception {
+		Map<String, String> f = extract(METRICS, true);
+		assertEquals("1027", f.get("http_requests_total{method=\"post\",code=\"200\"}"));
+		assertEquals("3", f.get("http_requests_total{method=\"post\",code=\"400\"}"));
+		assertEquals("UP", f.get("status"));
+		assertEquals("8", f.get("db.pool"));
+		assertEquals("3600", f.get("uptime"));
+		assertEquals(5, f.size());
+
+		Map<String, String> q = extract(METRICS, false, "status=^status=(\\w+)", "codes=code=\"(\\d+)\"", "up=uptime \\d+");
+		assertEquals("UP", q.get("status"));
+		assertEquals("200", q.get("codes.0"));
+		assertEquals("400", q.get("codes.1"));
+		assertEquals("uptime 3600", q.get("up"));
+		assertEquals(4, q.size());
+
+		// bracketed, a character class here and a column only on CSV
+		Map<String, String> c = extract("a\nb7\n", false, "d=[0-9]");
+		assertEquals("7", c.get("d"));
+		RequestSpec spec = RequestSpec.builder("http://localhost/").query("n=[0-9]").build();
+		assertEquals(Arrays.asList("0-9"), spec.csv.columns);
+		assertEquals(1, spec.text.patterns.size());
+	}
+
+	@Test
+	public void test1() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/plain; version=0.0.4").setBody(METRICS));
+			server.start();
+			RequestSpec spec = RequestSpec.builder(server.url("/metrics").toString()).keepBody(false)
+					.query("requests=^http_requests_total\\{.*code=\"200\"\\} (\\d+)").build();
+			QueryResult r = new MwQuery().execute(spec);
+			assertEquals("1027", r.get("requests"));
+			// read as it arrived, not kept
+			assertNull(r.getBody());
+		}
+	}
+
+	@Test
+	public void test2() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"store\":{\"name\":\"corner\"}}"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/plain").setBody("store name\nup 42\n"));
+			server.start();
+			RequestSpec spec = RequestSpec.builder(server.url("/store").toString()).query("name=store.name")
+					.query("up=^up (\\d+)").build();
+			// no $, still a jsonpath on json
+			QueryResult r = new MwQuery().execute(spec);
+			assertEquals("corner", r.get("name"));
+			assertNull(r.get("up"));
+			// and a regular expression on text
+			r = new MwQuery().execute(spec);
+			assertEquals("store name", r.get("name"));
+			assertEquals("42", r.get("up"));
+		}
+	}
+}
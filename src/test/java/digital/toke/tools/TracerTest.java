@@ -0,0 +1,77 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class TracerTest {
+
+	@Test
+	public void test0() throws Exception {
+		String parent = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+		Tracer tracer = new Tracer(parent);
+		RecordedRequest recorded;
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"a\":{\"b\":1}}"));
+			server.start();
+
+			MwQuery mwq = new MwQuery(Networking.builder().trace(tracer).build());
+			RequestSpec spec = RequestSpec.builder(server.url("/t").toString()).query("b=$.a.b").build();
+			assertEquals("1", mwq.execute(spec).value(0));
+			recorded = server.takeRequest();
+		}
+		assertEquals(null, Tracer.current());
+
+		File file = File.createTempFile("trace", ".json");
+		file.deleteOnExit();
+		tracer.export(file);
+		JSONObject root = new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		JSONArray spans = root.getJSONArray("resourceSpans").getJSONObject(0).getJSONArray("scopeSpans").getJSONObject(0)
+				.getJSONArray("spans");
+		Map<String, JSONObject> byName = new HashMap<String, JSONObject>();
+		for (int i = 0; i < spans.length(); i++) {
+			JSONObject s = spans.getJSONObject(i);
+			assertEquals("0af7651916cd43dd8448eb211c80319c", s.getString("traceId"));
+			byName.put(s.getString("name"), s);
+		}
+
+		JSONObject top = byName.get("mwquery");
+		JSONObject call = byName.get("HTTP GET");
+		assertNotNull(top);
+		assertNotNull(call);
+		assertNotNull(byName.get("parse"));
+		assertNotNull(byName.get("jsonpath"));
+		assertEquals("b7ad6b7169203331", top.getString("parentSpanId"));
+		assertEquals(top.getString("spanId"), call.getString("parentSpanId"));
+		assertEquals(call.getString("spanId"), byName.get("connect").getString("parentSpanId"));
+		assertEquals("00-0af7651916cd43dd8448eb211c80319c-" + call.getString("spanId") + "-01", recorded.getHeader("traceparent"));
+		assertTrue(Long.parseLong(call.getString("endTimeUnixNano")) >= Long.parseLong(call.getString("startTimeUnixNano")));
+	}
+
+	@Test
+	public void test1() {
+		// nothing traced
+		try (Span span = Tracer.child("flatten")) {
+			assertEquals(Span.NOOP, span);
+		}
+		assertTrue(new Tracer("bogus").traceId.matches("[0-9a-f]{32}"));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import digital.toke.tools.twitter.OAuthSigner;
+import digital.toke.tools.twitter.TweetQueue;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class TweetQueueTest {
+
+	static class RecordingQueue extends TweetQueue {
+		final List<Long> pauses = new ArrayList<Long>();
+
+		RecordingQueue(String url, File queueFile) {
+			super(new OkHttpClient(), new OAuthSigner("key", "secret", "token", "tokenSecret"), url, queueFile);
+		}
+
+		@Override
+		protected void pause(long millis) {
+			pauses.add(millis);
+		}
+	}
+
+	@Test
+	public void test0() throws Exception {
+		File queue = File.createTempFile("statuses", ".txt");
+		File checkpoint = new File(queue.getPath() + ".checkpoint");
+		Files.write(queue.toPath(), Arrays.asList("first", "", "second & more", "third"), StandardCharsets.UTF_8);
+
+		String reset = String.valueOf(System.currentTimeMillis() / 1000 + 30);
+		try (MockWebServer server = new MockWebServer()) {
+			// quota runs out after the first, then a 429 on the second which is retried
+			server.enqueue(new MockResponse().setBody("{}").setHeader("x-rate-limit-remaining", "0")
+					.setHeader("x-rate-limit-reset", reset));
+			server.enqueue(new MockResponse().setResponseCode(429).setHeader("x-rate-limit-reset", reset));
+			server.enqueue(new MockResponse().setBody("{}").setHeader("x-rate-limit-remaining", "10"));
+			server.enqueue(new MockResponse().setResponseCode(403).setBody("{\"errors\":[{\"code\":187}]}"));
+			server.start();
+			String url = server.url("/1.1/statuses/update.json").toString();
+
+			RecordingQueue q = new RecordingQueue(url, queue);
+			assertEquals(2, q.run());
+			assertEquals(2, q.pauses.size());
+			assertTrue(q.pauses.get(0) > 20000);
+
+			assertEquals(4, server.getRequestCount());
+			RecordedRequest req = server.takeRequest();
+			assertEquals("/1.1/statuses/update.json?include_entities=true", req.getPath());
+			assertTrue(req.getHeader("Authorization").startsWith("OAuth oauth_consumer_key=\"key\""));
+			assertEquals("status=first", req.getBody().readUtf8());
+			server.takeRequest();
+			assertEquals("status=second%20%26%20more", server.takeRequest().getBody().readUtf8());
+
+			assertEquals("4", new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8));
+
+			// a restart sends nothing, until a status is appended
+			assertEquals(0, new RecordingQueue(url, queue).run());
+			Files.write(queue.toPath(), Arrays.asList("fourth"), StandardCharsets.UTF_8,
+					java.nio.file.StandardOpenOption.APPEND);
+			server.enqueue(new MockResponse().setResponseCode(503));
+			assertThrows(IOException.class, () -> new RecordingQueue(url, queue).run());
+			assertEquals("4", new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8));
+
+			server.enqueue(new MockResponse().setBody("{}"));
+			assertEquals(1, new RecordingQueue(url, queue).run());
+			assertEquals(6, server.getRequestCount());
+		} finally {
+			queue.delete();
+			checkpoint.delete();
+			new File(queue.getPath() + ".lock").delete();
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		File queue = File.createTempFile("statuses", ".txt");
+		File checkpoint = new File(queue.getPath() + ".checkpoint");
+		Files.write(queue.toPath(), Arrays.asList("first", "second"), StandardCharsets.UTF_8);
+
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		try (MockWebServer server = new MockWebServer()) {
+			// the first run is slow, the second starts meanwhile
+			server.enqueue(new MockResponse().setBody("{}").setHeadersDelay(1, TimeUnit.SECONDS));
+			server.enqueue(new MockResponse().setBody("{}"));
+			server.start();
+			String url = server.url("/1.1/statuses/update.json").toString();
+
+			Future<Integer> first = exec.submit(() -> new RecordingQueue(url, queue).run());
+			server.takeRequest();
+			// it leaves the queue to the first, which sends each status once
+			assertEquals(0, new RecordingQueue(url, queue).run());
+			assertEquals(2, first.get().intValue());
+			assertEquals(2, server.getRequestCount());
+			assertEquals("2", new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8));
+
+			// once done the queue is free again
+			Files.write(queue.toPath(), Arrays.asList("third"), StandardCharsets.UTF_8,
+					java.nio.file.StandardOpenOption.APPEND);
+			server.enqueue(new MockResponse().setBody("{}"));
+			assertEquals(1, new RecordingQueue(url, queue).run());
+			assertEquals(3, server.getRequestCount());
+		} finally {
+			exec.shutdownNow();
+			queue.delete();
+			checkpoint.delete();
+			new File(queue.getPath() + ".lock").delete();
+		}
+	}
+}
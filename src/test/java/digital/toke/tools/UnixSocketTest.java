@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+public class UnixSocketTest {
+
+	/**
+	 * Answers every request on the socket with the same json, keeping connections open
+	 */
+	static ServerSocketChannel serve(File path, AtomicInteger accepted) throws Exception {
+		ServerSocketChannel server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+				.invoke(null, UnixDomainSocketFactory.UNIX);
+		server.bind(UnixDomainSocketFactory.address(path));
+		byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+		byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n")
+				.getBytes(StandardCharsets.UTF_8);
+		Thread t = new Thread(() -> {
+			try {
+				while (true) {
+					SocketChannel ch = server.accept();
+					accepted.incrementAndGet();
+					Thread c = new Thread(() -> answer(ch, head, body));
+					c.setDaemon(true);
+					c.start();
+				}
+			} catch (IOException x) {
+				// closed
+			}
+		});
+		t.setDaemon(true);
+		t.start();
+		return server;
+	}
+
+	static void answer(SocketChannel ch, byte[] head, byte[] body) {
+		ByteBuffer in = ByteBuffer.allocate(8192);
+		try {
+			int matched = 0;
+			while (ch.read(in) != -1) {
+				in.flip();
+				while (in.hasRemaining()) {
+					// requests have no body, each ends at a blank line
+					byte b = in.get();
+					matched = (b == '\r' || b == '\n') ? matched + 1 : 0;
+					if (matched == 4) {
+						ch.write(ByteBuffer.wrap(head));
+						ch.write(ByteBuffer.wrap(body));
+						matched = 0;
+					}
+				}
+				in.clear();
+			}
+			ch.close();
+		} catch (IOException x) {
+			// client went away
+		}
+	}
+
+	@Test
+	public void test0() throws Exception {
+		if (!UnixDomainSocketFactory.isSupported()) {
+			assertThrows(UnsupportedOperationException.class, () -> Networking.builder().unixSocket(new File("x.sock")).build());
+			return;
+		}
+
+		File dir = Files.createTempDirectory("mwq").toFile();
+		File path = new File(dir, "svc.sock");
+		AtomicInteger accepted = new AtomicInteger();
+		try (ServerSocketChannel server = serve(path, accepted)) {
+			Networking net = Networking.builder().unixSocket(path).build();
+			MwQuery mwq = new MwQuery(net);
+			RequestSpec spec = RequestSpec.builder("http://svc/v1/status").query("ok=$.ok").build();
+			for (int i = 0; i < 5; i++) {
+				assertEquals("true", mwq.execute(spec).get("ok"));
+			}
+			// before reusing a connection for a POST OkHttp probes it with a 1ms read timeout
+			RequestSpec post = RequestSpec.builder("http://svc/v1/things").method("POST").data("{}").query("ok=$.ok").build();
+			assertEquals("true", mwq.execute(post).get("ok"));
+			assertEquals("true", mwq.execute(post).get("ok"));
+			// one connection, reused
+			assertEquals(1, accepted.get());
+			assertEquals(1, net.getConnectionStats().opened());
+		} finally {
+			path.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		Assumptions.assumeTrue(UnixDomainSocketFactory.isSupported());
+		// nothing listening
+		Networking net = Networking.builder().unixSocket(new File("does-not-exist.sock")).build();
+		assertThrows(IOException.class, () -> net.get("http://svc/", null));
+		assertTrue(net.getConnectionStats().failed() > 0);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class VarStoreTest {
+
+	@Test
+	public void test0() throws Exception {
+		File file = File.createTempFile("mwq-vars", ".bin");
+		file.deleteOnExit();
+		try (VarStore first = VarStore.open(file)) {
+			Map<String, String> values = new HashMap<String, String>();
+			values.put("token", "abc");
+			values.put("id", "42");
+			first.putAll(values);
+		}
+		try (VarStore second = VarStore.open(file)) {
+			assertEquals("abc", second.get("token"));
+			second.putAll(Collections.singletonMap("token", "déf"));
+			assertEquals("déf", second.get("token"));
+			assertEquals("42", second.get("id"));
+			assertEquals("--url https://host/things/42?t=déf",
+					Scenario.substitute("--url https://host/things/${id}?t=${token}", second.read()));
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		File file = File.createTempFile("mwq-vars", ".bin");
+		file.deleteOnExit();
+		// two writers at once, between them well past the first mapping, so it is rewritten and grown
+		try (VarStore a = VarStore.open(file); VarStore b = VarStore.open(file)) {
+			Thread other = new Thread(() -> {
+				try {
+					for (int i = 0; i < 500; i++) b.putAll(Collections.singletonMap("b" + i, String.format("%0100d", i)));
+				} catch (IOException x) {
+					throw new RuntimeException(x);
+				}
+			});
+			other.start();
+			for (int i = 0; i < 500; i++) a.putAll(Collections.singletonMap("a" + (i % 50), String.format("%0200d", i)));
+			other.join();
+
+			Map<String, String> values = a.read();
+			assertEquals(550, values.size());
+			assertEquals(String.format("%0200d", 499), values.get("a49"));
+			assertEquals(String.format("%0100d", 499), values.get("b499"));
+			assertTrue(file.length() > VarStore.INITIAL_SIZE);
+		}
+	}
+
+	@Test
+	public void test2() throws Exception {
+		File file = File.createTempFile("mwq-vars", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "token=abc\n".getBytes(StandardCharsets.UTF_8));
+		assertThrows(IOException.class, () -> VarStore.open(file));
+	}
+
+	@Test
+	public void test3() throws Exception {
+		File file = File.createTempFile("mwq-vars", ".bin");
+		file.deleteOnExit();
+		// the same values rewritten many times over: compacted in turn in front of and behind the
+		// live records, without the file growing each time
+		for (int round = 0; round < 20; round++) {
+			try (VarStore store = VarStore.open(file)) {
+				for (int i = 0; i < 100; i++) {
+					store.putAll(Collections.singletonMap("k" + (i % 20), String.format("%01000d", round * 100 + i)));
+				}
+				Map<String, String> values = store.read();
+				assertEquals(20, values.size());
+				assertEquals(String.format("%01000d", round * 100 + 99), values.get("k19"));
+			}
+		}
+		assertTrue(file.length() <= 2 * VarStore.INITIAL_SIZE);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			raf.seek(VarStore.START);
+			assertTrue(raf.readInt() >= VarStore.HEADER);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.Dns;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WarmupTest {
+
+	@Test
+	public void test0() throws Exception {
+		AtomicInteger lookups = new AtomicInteger();
+		Dns counting = hostname -> {
+			lookups.incrementAndGet();
+			return Collections.singletonList(InetAddress.getLoopbackAddress());
+		};
+
+		CachingDns dns = new CachingDns(counting, 1, TimeUnit.HOURS);
+		dns.lookup("a.example");
+		dns.lookup("a.example");
+		dns.lookup("b.example");
+		assertEquals(2, lookups.get());
+		assertEquals(1, dns.hits());
+		assertEquals(2, dns.misses());
+
+		// expired at once
+		dns = new CachingDns(counting, 0, TimeUnit.SECONDS);
+		dns.lookup("a.example");
+		dns.lookup("a.example");
+		assertEquals(4, lookups.get());
+	}
+
+	@Test
+	public void test1() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().addHeader("Set-Cookie", "warm=1"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"ok\":true}"));
+			server.start();
+
+			Networking net = Networking.builder().dnsTtl(60).build();
+			String url = server.url("/things?id=1").toString();
+			// two urls on one origin, one connection
+			assertEquals(1, net.warmup(Arrays.asList(url, server.url("/other").toString()), 1));
+			assertEquals("HEAD", server.takeRequest().getMethod());
+			assertEquals(1, net.getConnectionStats().opened());
+			// the warm-up's cookies are not kept
+			assertTrue(net.cookieJar.getCookieStore().isEmpty());
+			long setup = net.getConnectionStats().setupNanos();
+
+			QueryResult r = new MwQuery(net).execute(RequestSpec.builder(url).query("ok=$.ok").build());
+			assertEquals("true", r.get("ok"));
+			// the call found the connection ready
+			assertEquals(1, net.getConnectionStats().opened());
+			assertEquals(setup, net.getConnectionStats().setupNanos());
+
+			// replay never uses the network
+			File archive = File.createTempFile("exchanges", ".mwqa");
+			archive.delete();
+			archive.deleteOnExit();
+			ExchangeArchive.Exchange e = new ExchangeArchive.Exchange();
+			e.method = "GET";
+			e.url = url;
+			e.code = 200;
+			e.responseHeaders = new String[0];
+			e.responseBody = new byte[0];
+			ExchangeArchive.append(archive, e);
+			Networking replay = Networking.builder().replay(ExchangeArchive.open(archive), 0).build();
+			assertEquals(0, replay.warmup(Arrays.asList(url), 1));
+			assertEquals(2, server.getRequestCount());
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WatchTest {
+
+	@Test
+	public void test0() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			// the first connection ends after two events, the second resumes from the last id
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/event-stream")
+					.setBody("retry: 10\n\n: comment\nid: 1\ndata: {\"name\":\"a\",\ndata: \"n\":1}\n\nid: 2\nevent: change\ndata: {\"name\":\"b\"}\n\n"));
+			server.enqueue(new MockResponse().setHeader("Content-Type", "text/event-stream")
+					.setBody("id: 3\ndata: {\"name\":\"c\"}\n\ndata: plain\n\n"));
+			server.start();
+
+			Networking net = Networking.builder().readTimeout(0).build();
+			RequestSpec spec = RequestSpec.builder(server.url("/feed").toString()).query("name=$.name").build();
+			Map<String, String> out = new LinkedHashMap<String, String>();
+			long events = new MwQuery(net).watch(spec, 4, out::put);
+
+			assertEquals(4, events);
+			assertEquals("a", out.get("0.name"));
+			assertEquals("b", out.get("1.name"));
+			assertEquals("c", out.get("2.name"));
+			// not json
+			assertEquals("plain", out.get("3.data"));
+			assertNull(server.takeRequest().getHeader("Last-Event-ID"));
+			assertEquals("2", server.takeRequest().getHeader("Last-Event-ID"));
+		}
+	}
+
+	@Test
+	public void test1() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			server.enqueue(new MockResponse().setHeader("Content-Type", "application/x-ndjson")
+					.setBody("{\"id\":1,\"op\":\"insert\"}\n\n{\"id\":2,\"op\":\"delete\"}\n"));
+			server.enqueue(new MockResponse().setResponseCode(204));
+			server.start();
+
+			RequestSpec spec = RequestSpec.builder(server.url("/changes").toString()).flatten(true).build();
+			Map<String, String> out = new LinkedHashMap<String, String>();
+			// the feed ends, the reconnect gets a 204 and the watch stops
+			long events = new MwQuery().watch(spec, 0, out::put);
+			assertEquals(2, events);
+			assertEquals("insert", out.get("0.op"));
+			assertEquals("2", out.get("1.id"));
+			assertEquals(4, out.size());
+		}
+	}
+}
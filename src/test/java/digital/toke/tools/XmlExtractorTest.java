@@ -0,0 +1,119 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright 2019 David R. Smith All Rights Reserved
+ */
+package digital.toke.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class XmlExtractorTest {
+
+	static final String ATOM = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<feed xmlns=\"http://www.w3.org/2005/Atom\">\n"
+			+ "  <title>Example Feed</title>\n"
+			+ "  <entry>\n"
+			+ "    <title>First</title>\n"
+			+ "    <link rel=\"alternate\" href=\"http://example.org/1\"/>\n"
+			+ "    <id>urn:1</id>\n"
+			+ "  </entry>\n"
+			+ "  <entry>\n"
+			+ "    <title><![CDATA[Second & last]]></title>\n"
+			+ "    <link rel=\"edit\" href=\"http://example.org/2/edit\"/>\n"
+			+ "    <link rel=\"alternate\" href=\"http://example.org/2\"/>\n"
+			+ "    <id>urn:2</id>\n"
+			+ "  </entry>\n"
+			+ "</feed>";
+
+	static final String SOAP = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+			+ "<soap:Body><m:GetPriceResponse xmlns:m=\"urn:prices\"><m:Price currency=\"AUD\">34.5</m:Price>"
+			+ "</m:GetPriceResponse></soap:Body></soap:Envelope>";
+
+	static Map<String, String> extract(String xml, boolean flatten, String... queries) throws IOException {
+		RequestSpec spec = RequestSpec.builder("http://localhost/").flatten(flatten).queries(Arrays.asList(queries)).build();
+		Map<String, String> out = new LinkedHashMap<String, String>();
+		spec.xml.extract(new StringReader(xml), out::put);
+		return out;
+	}
+
+	@Test
+	public void test0() throws Exception {
+		Map<String, String> q = extract(ATOM, false, "feed=/feed/title", "titles=//entry/title", "second=/feed/entry[2]/id/text()",
+				"alt=//link[@rel='alternate']/@href", "none=/feed/nothing");
+		assertEquals("Example Feed", q.get("feed"));
+		assertEquals("First", q.get("titles.0"));
+		assertEquals("Second & last", q.get("titles.1"));
+		assertEquals("urn:2", q.get("second"));
+		assertEquals("http://example.org/1", q.get("alt.0"));
+		assertEquals("http://example.org/2", q.get("alt.1"));
+		assertEquals(6, q.size());
+
+		// prefixes are ignored, names match on local name
+		q = extract(SOAP, false, "price=/soap:Envelope/soap:Body/*/Price", "currency=//m:Price/@currency");
+		assertEquals("34.5", q.get("price"));
+		assertEquals("AUD", q.get("currency"));
+	}
+
+	@Test
+	public void test1() throws Exception {
+		Map<String, String> f = extract(ATOM, true);
+		assertEquals("Example Feed", f.get("feed.title"));
+		assertEquals("First", f.get("feed.entry.title"));
+		assertEquals("http://example.org/1", f.get("feed.entry.link.@href"));
+		assertEquals("Second & last", f.get("feed.entry.1.title"));
+		assertEquals("edit", f.get("feed.entry.1.link.@rel"));
+		assertEquals("http://example.org/2", f.get("feed.entry.1.link.1.@href"));
+		assertEquals("urn:2", f.get("feed.entry.1.id"));
+
+		assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("/feed/entry[last()]"));
+		assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("/feed/@id/title"));
+		assertThrows(IOException.class, () -> extract("<feed><title>", true));
+		// no DTDs, so no entity expansion from them
+		assertThrows(IOException.class, () -> extract("<!DOCTYPE x [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><x>&e;</x>", true));
+	}
+
+	@Test
+	public void test2() throws Exception {
+		try (MockWebServer server = new MockWebServer()) {
+			for (int i = 0; i < 2; i++) {
+				server.enqueue(new MockResponse().setHeader("Content-Type", "application/atom+xml").setBody(ATOM));
+			}
+			server.start();
+			MwQuery mwq = new MwQuery(new Networking());
+			RequestSpec.Builder builder = RequestSpec.builder(server.url("/feed").toString()).queries(Collections.singleton("id=/feed/entry[1]/id"));
+
+			// read as it arrived, not kept
+			QueryResult r = mwq.execute(builder.keepBody(false).build());
+			assertEquals("urn:1", r.get("id"));
+			assertNull(r.getBody());
+
+			r = mwq.execute(builder.keepBody(true).build());
+			assertEquals("urn:1", r.get("id"));
+			assertEquals(ATOM, r.getBody());
+		}
+	}
+
+	@Test
+	public void test3() throws Exception {
+		// the indent between children is not text of the parent, real text next to them is
+		Map<String, String> f = extract("<a>\n  <b>1</b>\n  <c>2</c>\n  <p>one <i>two</i> three</p>\n</a>", true);
+		assertEquals("1", f.get("a.b"));
+		assertEquals("2", f.get("a.c"));
+		assertEquals("one  three", f.get("a.p"));
+		assertEquals("two", f.get("a.p.i"));
+		assertNull(f.get("a"));
+	}
+}